@@ -0,0 +1,105 @@
+package native;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the {@link InListStrategy}s end to end, from building the query to reading the last row, 
+ * on an embedded H2 database. Needs the H2 driver on the classpath.
+ * 
+ * H2 has no Oracle collection types, the collection strategy binds a plain array to "field = any(?)".
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class InListStrategyBenchmark {
+
+	private static final int TABLE_ROWS = 100_000;
+	
+	@Param({ "100", "5000", "50000" })
+	public int size;
+	
+	@Param({ "INLINE", "CHUNKED", "COLLECTION", "TEMP_TABLE" })
+	public InListStrategy strategy;
+	
+	private Connection conn;
+	private NativeSqlFactory factory;
+	private List<String> values;
+	
+	@Setup(Level.Trial)
+	public void setup() throws SQLException {
+		conn = DriverManager.getConnection("jdbc:h2:mem:inlist;MODE=Oracle");
+		try(Statement stmt = conn.createStatement()) {
+			stmt.execute("create table tt (id varchar(20) primary key, payload varchar(100))");
+			stmt.execute("insert into tt select 'id' || x, 'payload' || x from system_range(1, " + TABLE_ROWS + ")");
+			stmt.execute("create table in_list_values (set_id bigint, v1 varchar(4000), v2 varchar(4000))");
+			stmt.execute("create index in_list_values_ix on in_list_values (set_id, v1)");
+		}
+		InListPolicy policy = InListPolicy.builder()
+				.collectionTypes("VARCHAR", "NUMERIC")
+				.collectionTemplate("{0} = any({1})")
+				.tempTable("in_list_values", "set_id", "v1", "v2")
+				.build();
+		factory = NativeSqlFactory.builder().useLiterals(false).inListPolicy(policy).build();
+		values = new ArrayList<>(size);
+		for(int i = 0; i < size; i++) {
+			values.add("id" + (i * 2 + 1));
+		}
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() throws SQLException {
+		conn.close();
+	}
+	
+	@Benchmark
+	public int build_and_execute() throws SQLException {
+		NativeSqlBuilder sql = factory.create();
+		sql.select("id", "payload").from("tt").where(sql.in("id", values, strategy));
+		sql.loadTempTables(conn);
+		int rows = 0;
+		try(PreparedStatement stmt = sql.toBoundSql().prepare(conn); ResultSet rs = stmt.executeQuery()) {
+			while(rs.next()) {
+				rows++;
+			}
+		}
+		return rows;
+	}
+	
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder()
+				.include(InListStrategyBenchmark.class.getSimpleName())
+				.addProfiler(GCProfiler.class)
+				.build();
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,174 @@
+package native;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.joda.time.DateTime;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Benchmarks for building, cloning and rendering queries, with the scenarios of {@link NativeSqlBuilderTest}.
+ * 
+ * Run {@link #main(String[])} to get the throughput together with the bytes allocated per operation 
+ * (gc.alloc.rate.norm) of the GC profiler.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NativeSqlBuilderBenchmark {
+
+	@State(Scope.Thread)
+	public static class InListState {
+		
+		@Param({ "10", "1000", "50000" })
+		public int size;
+		
+		public List<String> values;
+		public NativeSqlBuilder large;
+		public ImmutableSqlBuilder immutable;
+		
+		@Setup
+		public void setup() {
+			values = new ArrayList<>(size);
+			for(int i = 0; i < size; i++) {
+				values.add("value" + i);
+			}
+			large = NativeSqlBuilder.create();
+			large.select("tt.field", "jt.other").from("tt").innerJoin("joinTable", "jt").on("tt.id", "jt.id")
+				.where(large.eq("tt.type", "a"), large.in("tt.field", values));
+			immutable = ImmutableSqlBuilder.create().select("tt.field", "jt.other").from("tt").innerJoin("joinTable", "jt").on("tt.id", "jt.id")
+				.where(sql -> sql.and(sql.eq("tt.type", "a"), sql.in("tt.field", values)));
+		}
+	}
+	
+	@State(Scope.Thread)
+	public static class TimestampState {
+		
+		public Timestamp[] timestamps;
+		
+		@Setup
+		public void setup() {
+			timestamps = new Timestamp[1000];
+			long start = Timestamp.valueOf("2018-01-01 00:00:00").getTime();
+			for(int i = 0; i < timestamps.length; i++) {
+				timestamps[i] = new Timestamp(start + i * 60_000L);
+			}
+		}
+	}
+	
+	@Benchmark
+	public String simple_where() {
+		NativeSqlBuilder sql = NativeSqlBuilder.create();
+		sql.select("field").from("tt").where(sql.eq("field", "value"));
+		return sql.toString();
+	}
+	
+	@Benchmark
+	public String joins_with_on() {
+		NativeSqlBuilder sql = NativeSqlBuilder.create();
+		sql.select("field")
+			.from("tt")
+			.innerJoin("joinTable")
+				.on("joinTable.left", "tt.right")
+				.on("joinTable.dbKey", "tt.anotherField")
+			.leftJoin("secondJoin")
+				.on("abc", "def")
+				.on("secondJoin.fff", "tt.fff")
+			.where(sql.eq("tt.field", "value"));
+		return sql.toString();
+	}
+	
+	@Benchmark
+	public String nested_from_subQuery() {
+		NativeSqlBuilder subQ = NativeSqlBuilder.create();
+		subQ.select("a", "b").from("tb").where(subQ.eq("c", 1));
+		NativeSqlBuilder sql = NativeSqlBuilder.create();
+		sql.select("sq.a").from(subQ, "sq").where(sql.eq("sq.b", "value"));
+		return sql.toString();
+	}
+	
+	@Benchmark
+	public String tuple_in_subQuery() {
+		NativeSqlBuilder subQ = NativeSqlBuilder.create();
+		subQ.select("a", "b").from("tb");
+		NativeSqlBuilder sql = NativeSqlBuilder.create();
+		sql.select("a", "b").from("tt").where(sql.in(sql.listFields("x", "y"), subQ));
+		return sql.toString();
+	}
+	
+	@Benchmark
+	public String in_list(InListState state) {
+		NativeSqlBuilder sql = NativeSqlBuilder.create();
+		sql.select("field").from("tt").where(sql.in("field", state.values));
+		return sql.toString();
+	}
+	
+	@Benchmark
+	public NativeSqlBuilder clone_large(InListState state) {
+		return state.large.clone();
+	}
+	
+	@Benchmark
+	public BoundSql branch_clone(InListState state) {
+		NativeSqlBuilder branch = state.large.clone();
+		return branch.limit(10).toBoundSql();
+	}
+	
+	@Benchmark
+	public BoundSql branch_immutable(InListState state) {
+		return state.immutable.limit(10).toBoundSql();
+	}
+	
+	@Benchmark
+	public String toString_cached(InListState state) {
+		return state.large.toString();
+	}
+	
+	@Benchmark
+	public String toString_uncached(InListState state) {
+		return state.large.getSQLQuery().getSQL().getSQL();
+	}
+	
+	@Benchmark
+	@SuppressWarnings("deprecation")
+	public DateTime[] timestamps_joda(TimestampState state) {
+		DateTime[] result = new DateTime[state.timestamps.length];
+		for(int i = 0; i < result.length; i++) {
+			result[i] = NativeSqlBuilder.convertSQLTimeStampToJodaDateTime(state.timestamps[i]);
+		}
+		return result;
+	}
+	
+	@Benchmark
+	public LocalDateTime[] timestamps_batch(TimestampState state) {
+		return NativeSqlBuilder.toLocalDateTimes(state.timestamps);
+	}
+	
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder()
+				.include(NativeSqlBuilderBenchmark.class.getSimpleName())
+				.addProfiler(GCProfiler.class)
+				.build();
+		new Runner(options).run();
+	}
+}
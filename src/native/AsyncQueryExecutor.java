@@ -0,0 +1,265 @@
+package native;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.sql.DataSource;
+
+/**
+ * Runs the queries of builders asynchronously on connections of one DataSource, on virtual threads when the JVM has them.
+ * At most maxConcurrency queries run at the same time, so a burst of queries can't exhaust the connection pool.
+ * Every query has a timeout: it is set as query timeout on the statement, and when it passes the future completes with
+ * a {@link TimeoutException} and the statement is cancelled. Cancelling the future cancels the statement as well.
+ * A builder must not be changed while its query runs.
+ *
+ * <pre>
+ * try(AsyncQueryExecutor async = AsyncQueryExecutor.builder(dataSource).maxConcurrency(8).build()) {
+ *     CompletableFuture&lt;List&lt;String&gt;&gt; names = async.list(sql, rs -&gt; rs.getString(1));
+ *     ...
+ * }
+ * </pre>
+ */
+public final class AsyncQueryExecutor implements AutoCloseable {
+
+	private final DataSource dataSource;
+	private final Semaphore permits;
+	private final Duration timeout;
+	private final ExecutorService executor;
+	private final boolean ownsExecutor;
+	
+	private AsyncQueryExecutor(Builder builder) {
+		this.dataSource = builder.dataSource;
+		this.permits = new Semaphore(builder.maxConcurrency, true);
+		this.timeout = builder.timeout;
+		this.ownsExecutor = builder.executor == null;
+		this.executor = builder.executor != null ? builder.executor : newDefaultExecutor();
+	}
+	
+	/**
+	 * A virtual thread per task on Java 21 and later, looked up by reflection so the library still runs on Java 17,
+	 * and a cached pool of daemon threads before.
+	 */
+	static ExecutorService newDefaultExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			AtomicInteger threads = new AtomicInteger();
+			return Executors.newCachedThreadPool(task -> {
+				Thread thread = new Thread(task, "native-sql-async-" + threads.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+	
+	/**
+	 * Runs the query with the default timeout, see {@link NativeSqlBuilder#list(DataSource, RowMapper)}.
+	 *
+	 * @param sql The query
+	 * @param mapper Maps a row
+	 * @return The rows, when the query has run
+	 */
+	public <T> CompletableFuture<List<T>> list(NativeSqlBuilder sql, RowMapper<T> mapper) {
+		return list(sql, mapper, timeout);
+	}
+	
+	/**
+	 * Runs the query, see {@link NativeSqlBuilder#list(DataSource, RowMapper)}. The timeout includes the time waiting
+	 * for a free slot.
+	 *
+	 * @param sql The query
+	 * @param mapper Maps a row
+	 * @param timeout The timeout of this query
+	 * @return The rows, when the query has run
+	 */
+	public <T> CompletableFuture<List<T>> list(NativeSqlBuilder sql, RowMapper<T> mapper, Duration timeout) {
+		CompletableFuture<List<T>> result = new CompletableFuture<>();
+		AtomicReference<Statement> running = new AtomicReference<>();
+		long deadline = System.nanoTime() + timeout.toNanos();
+		Future<?> task = executor.submit(() -> run(sql, mapper, timeout, deadline, result, running));
+		result.orTimeout(timeout.toNanos(), TimeUnit.NANOSECONDS).whenComplete((rows, failure) -> {
+			if(failure != null) {
+				task.cancel(false);
+				cancel(running.get());
+			}
+		});
+		return result;
+	}
+	
+	private <T> void run(NativeSqlBuilder sql, RowMapper<T> mapper, Duration timeout, long deadline, CompletableFuture<List<T>> result,
+			AtomicReference<Statement> running) {
+		if(result.isDone()) {
+			return;
+		}
+		try {
+			if(!permits.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+				result.completeExceptionally(new TimeoutException("No free slot within " + timeout));
+				return;
+			}
+		} catch (InterruptedException e) {
+			result.cancel(false);
+			return;
+		}
+		// the statement gets the time that is left after waiting in the queue and for the slot
+		long remaining = deadline - System.nanoTime();
+		if(result.isDone() || remaining <= 0) {
+			permits.release();
+			result.completeExceptionally(new TimeoutException("No free slot within " + timeout));
+			return;
+		}
+		List<T> rows = null;
+		Exception failure = null;
+		try {
+			rows = sql.list(dataSource, mapper, NativeSqlBuilder.timeoutSeconds(Duration.ofNanos(remaining)), stmt -> {
+				running.set(stmt);
+				if(result.isDone()) {
+					cancel(stmt);
+				}
+			});
+		} catch (SQLException | RuntimeException e) {
+			failure = e;
+		} finally {
+			// the slot is free before the caller sees the result, and after an Error
+			permits.release();
+		}
+		if(failure != null) {
+			result.completeExceptionally(failure);
+		} else {
+			result.complete(rows);
+		}
+	}
+	
+	private static void cancel(Statement stmt) {
+		if(stmt == null) {
+			return;
+		}
+		try {
+			stmt.cancel();
+		} catch (SQLException e) {
+			// the statement is already closed
+		}
+	}
+	
+	/**
+	 * Runs the queries in parallel with the default timeout. When one of them fails, the others are cancelled.
+	 *
+	 * @param queries The queries
+	 * @param mapper Maps a row of any of the queries
+	 * @return The rows per query, in the order of the queries
+	 */
+	public <T> CompletableFuture<List<List<T>>> listAll(List<NativeSqlBuilder> queries, RowMapper<T> mapper) {
+		List<CompletableFuture<List<T>>> futures = new ArrayList<>(queries.size());
+		for(NativeSqlBuilder sql : queries) {
+			futures.add(list(sql, mapper));
+		}
+		CompletableFuture<List<List<T>>> all = new CompletableFuture<>();
+		for(CompletableFuture<List<T>> future : futures) {
+			future.whenComplete((rows, failure) -> {
+				if(failure != null && all.completeExceptionally(failure instanceof CompletionException ? failure.getCause() : failure)) {
+					futures.forEach(f -> f.cancel(false));
+				}
+			});
+		}
+		CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()])).whenComplete((v, failure) -> {
+			if(failure == null) {
+				List<List<T>> results = new ArrayList<>(futures.size());
+				futures.forEach(f -> results.add(f.join()));
+				all.complete(results);
+			}
+		});
+		return all;
+	}
+	
+	/**
+	 *
+	 * @return The number of queries that can start without waiting
+	 */
+	public int getAvailableSlots() {
+		return permits.availablePermits();
+	}
+	
+	/**
+	 * Shuts down the default executor, running queries are finished. An executor passed to the builder isn't shut down.
+	 */
+	@Override
+	public void close() {
+		if(ownsExecutor) {
+			executor.shutdown();
+		}
+	}
+	
+	/**
+	 *
+	 * @param dataSource The DataSource of the connections
+	 * @return A builder with 10 concurrent queries and a timeout of 30 seconds as defaults
+	 */
+	public static Builder builder(DataSource dataSource) {
+		return new Builder(dataSource);
+	}
+	
+	/**
+	 * Options for an {@link AsyncQueryExecutor}.
+	 */
+	public static final class Builder {
+		
+		private final DataSource dataSource;
+		private int maxConcurrency = 10;
+		private Duration timeout = Duration.ofSeconds(30);
+		private ExecutorService executor;
+		
+		private Builder(DataSource dataSource) {
+			this.dataSource = dataSource;
+		}
+		
+		/**
+		 *
+		 * @param maxConcurrency The maximum number of queries that run at the same time
+		 * @return Builder
+		 */
+		public Builder maxConcurrency(int maxConcurrency) {
+			this.maxConcurrency = maxConcurrency;
+			return this;
+		}
+		
+		/**
+		 *
+		 * @param timeout The default timeout of a query
+		 * @return Builder
+		 */
+		public Builder timeout(Duration timeout) {
+			this.timeout = timeout;
+			return this;
+		}
+		
+		/**
+		 *
+		 * @param executor The executor to run the queries on, instead of virtual threads
+		 * @return Builder
+		 */
+		public Builder executor(ExecutorService executor) {
+			this.executor = executor;
+			return this;
+		}
+		
+		/**
+		 *
+		 * @return AsyncQueryExecutor
+		 */
+		public AsyncQueryExecutor build() {
+			return new AsyncQueryExecutor(this);
+		}
+	}
+}
@@ -0,0 +1,46 @@
+package native;
+
+/**
+ * A single bind variable of a {@link BoundSql}.
+ */
+public final class BindParameter {
+
+	private final int index;
+	private final Object value;
+	private final Class<?> type;
+	
+	BindParameter(int index, Object value, Class<?> type) {
+		this.index = index;
+		this.value = value;
+		this.type = type;
+	}
+	
+	/**
+	 * 
+	 * @return The 1-based position of the parameter in the SQL
+	 */
+	public int getIndex() {
+		return index;
+	}
+	
+	/**
+	 * 
+	 * @return The value to bind, can be null
+	 */
+	public Object getValue() {
+		return value;
+	}
+	
+	/**
+	 * 
+	 * @return The Java type of the value, for example String.class or Long.class
+	 */
+	public Class<?> getType() {
+		return type;
+	}
+	
+	@Override
+	public String toString() {
+		return index + ":" + value;
+	}
+}
@@ -0,0 +1,44 @@
+package native;
+
+/**
+ * The placeholder style used for bind variables in {@link BoundSql}.
+ */
+public enum BindStyle {
+
+	/**
+	 * JDBC positional placeholders.
+	 * 
+	 * <pre>field = ?</pre>
+	 */
+	QUESTION_MARK,
+	
+	/**
+	 * Oracle numbered placeholders.
+	 * 
+	 * <pre>field = :1</pre>
+	 */
+	NUMBERED;
+	
+	/**
+	 * Rewrites the '?' placeholders of the SQL into this style. Question marks inside quoted literals 
+	 * and quoted identifiers are left alone.
+	 * 
+	 * @param sql The SQL with '?' placeholders
+	 * @return the SQL with placeholders in this style
+	 */
+	String apply(String sql) {
+		if(this == QUESTION_MARK || sql.indexOf('?') < 0) {
+			return sql;
+		}
+		StringBuilder sb = new StringBuilder(sql.length() + 16);
+		int index = 0;
+		int start = 0;
+		int pos;
+		while((pos = Placeholders.indexOf(sql, start)) >= 0) {
+			sb.append(sql, start, pos).append(':').append(++index);
+			start = pos + 1;
+		}
+		sb.append(sql, start, sql.length());
+		return sb.toString();
+	}
+}
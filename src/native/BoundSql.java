@@ -0,0 +1,114 @@
+package native;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.querydsl.core.types.ParamExpression;
+import com.querydsl.core.types.ParamNotSetException;
+import com.querydsl.sql.Configuration;
+
+/**
+ * SQL with bind variables and the ordered list of values to bind, produced by {@link NativeSqlBuilder#toBoundSql()}.
+ * 
+ * <pre>
+ * BoundSql bound = sql.toBoundSql();
+ * try(PreparedStatement stmt = bound.prepare(connection)) {
+ *     ...
+ * }
+ * </pre>
+ */
+public final class BoundSql {
+
+	private final Configuration config;
+	private final String sql;
+	private final List<BindParameter> parameters;
+	
+	private BoundSql(Configuration config, String sql, List<BindParameter> parameters) {
+		this.config = config;
+		this.sql = sql;
+		this.parameters = parameters;
+	}
+	
+	static BoundSql of(Configuration config, String sql, List<Object> constants, BindStyle style) {
+		List<BindParameter> parameters = new ArrayList<>(constants.size());
+		for(Object constant : constants) {
+			if(constant instanceof ParamExpression) {
+				throw new ParamNotSetException((ParamExpression<?>) constant);
+			}
+			Class<?> type = constant != null ? constant.getClass() : Object.class;
+			parameters.add(new BindParameter(parameters.size() + 1, constant, type));
+		}
+		return new BoundSql(config, style.apply(sql), Collections.unmodifiableList(parameters));
+	}
+	
+	/**
+	 * 
+	 * @return The SQL with placeholders
+	 */
+	public String getSQL() {
+		return sql;
+	}
+	
+	/**
+	 * 
+	 * @return The parameters in the order of their placeholders
+	 */
+	public List<BindParameter> getParameters() {
+		return parameters;
+	}
+	
+	/**
+	 * Binds all parameters onto the statement, using the JDBC types of the dialect configuration.
+	 * 
+	 * @param stmt A statement prepared with {@link #getSQL()}
+	 * @throws SQLException
+	 */
+	public void bind(PreparedStatement stmt) throws SQLException {
+		for(BindParameter parameter : parameters) {
+			config.set(stmt, null, parameter.getIndex(), parameter.getValue());
+		}
+	}
+	
+	/**
+	 * Prepares the SQL on the connection as a forward-only, read-only cursor and binds all parameters.
+	 * 
+	 * @param conn The connection
+	 * @return PreparedStatement The caller must close the statement
+	 * @throws SQLException
+	 */
+	public PreparedStatement prepare(Connection conn) throws SQLException {
+		return prepare(conn, 0);
+	}
+	
+	/**
+	 * Prepares the SQL on the connection as a forward-only, read-only cursor and binds all parameters.
+	 * 
+	 * @param conn The connection
+	 * @param fetchSize The number of rows to fetch per round trip, 0 for the driver default
+	 * @return PreparedStatement The caller must close the statement
+	 * @throws SQLException
+	 */
+	public PreparedStatement prepare(Connection conn, int fetchSize) throws SQLException {
+		PreparedStatement stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+		try {
+			if(fetchSize > 0) {
+				stmt.setFetchSize(fetchSize);
+			}
+			bind(stmt);
+		} catch (SQLException e) {
+			stmt.close();
+			throw e;
+		}
+		return stmt;
+	}
+	
+	@Override
+	public String toString() {
+		return sql + " " + parameters;
+	}
+}
@@ -0,0 +1,26 @@
+package native;
+
+import com.querydsl.core.types.SubQueryExpressionImpl;
+
+/**
+ * A sub-query that remembers the builder it was created from. The builder a predicate with the sub-query is added to
+ * registers the sub-query, so that changes to it also invalidate the rendered SQL of that builder, see {@link SubQueryCollector}.
+ * It is equal to any other sub-query expression with the same metadata.
+ *
+ * @param <T> The type of the sub-query
+ */
+final class BuilderSubQuery<T> extends SubQueryExpressionImpl<T> {
+
+	private static final long serialVersionUID = 1L;
+	
+	private final transient NativeSqlBuilder builder;
+	
+	BuilderSubQuery(Class<? extends T> type, NativeSqlBuilder builder) {
+		super(type, builder.getSQLQuery().getMetadata());
+		this.builder = builder;
+	}
+	
+	NativeSqlBuilder getBuilder() {
+		return builder;
+	}
+}
@@ -0,0 +1,244 @@
+package native;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Encodes text into a reusable direct buffer and writes it to a file channel when it is full, optionally through a
+ * gzip deflater that reads the direct buffer in place. Nothing is allocated per value, except the digits of numbers
+ * above the range of long.
+ */
+final class ByteSink implements AutoCloseable {
+
+	private static final byte[] DIGITS = { '0', '1', '2', '3', '4', '5', '6', '7', '8', '9' };
+	private static final byte[] HEX = { '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f' };
+	private static final byte[] GZIP_HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff };
+	
+	private final FileChannel channel;
+	private final ByteBuffer buffer;
+	private final ByteBuffer compressed;
+	private final Deflater deflater;
+	private final CRC32 crc;
+	private final byte[] scratch = new byte[20];
+	private long bytes;
+	private boolean closed;
+	
+	/**
+	 *
+	 * @param bufferSize The size of the direct buffer, and of the buffer for the compressed bytes
+	 * @param gzip true to write the gzip format
+	 */
+	ByteSink(FileChannel channel, int bufferSize, boolean gzip) throws IOException {
+		this.channel = channel;
+		this.buffer = ByteBuffer.allocateDirect(bufferSize);
+		if(gzip) {
+			compressed = ByteBuffer.allocateDirect(bufferSize).order(ByteOrder.LITTLE_ENDIAN);
+			deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+			crc = new CRC32();
+			compressed.put(GZIP_HEADER);
+		} else {
+			compressed = null;
+			deflater = null;
+			crc = null;
+		}
+	}
+	
+	/**
+	 * Makes room for at least n bytes, n must not exceed the buffer size.
+	 */
+	void ensure(int n) throws IOException {
+		if(buffer.remaining() < n) {
+			flush();
+		}
+	}
+	
+	void put(byte b) throws IOException {
+		if(!buffer.hasRemaining()) {
+			flush();
+		}
+		buffer.put(b);
+	}
+	
+	void put(byte[] bytes) throws IOException {
+		for(int offset = 0; offset < bytes.length; ) {
+			if(!buffer.hasRemaining()) {
+				flush();
+			}
+			int length = Math.min(buffer.remaining(), bytes.length - offset);
+			buffer.put(bytes, offset, length);
+			offset += length;
+		}
+	}
+	
+	/**
+	 * Writes the text as UTF-8, the caller checks that it doesn't need escaping.
+	 */
+	void putUtf8(CharSequence text) throws IOException {
+		int length = text.length();
+		for(int i = 0; i < length; i++) {
+			char c = text.charAt(i);
+			if(c < 0x80) {
+				put((byte) c);
+			} else {
+				i = putUtf8(text, i, c);
+			}
+		}
+	}
+	
+	/**
+	 * Writes a character of two or more UTF-8 bytes.
+	 *
+	 * @return The index of the last char used, the next one for a surrogate pair
+	 */
+	int putUtf8(CharSequence text, int index, char c) throws IOException {
+		ensure(4);
+		if(c < 0x800) {
+			buffer.put((byte) (0xc0 | c >> 6)).put((byte) (0x80 | c & 0x3f));
+		} else if(Character.isHighSurrogate(c) && index + 1 < text.length() && Character.isLowSurrogate(text.charAt(index + 1))) {
+			int cp = Character.toCodePoint(c, text.charAt(index + 1));
+			buffer.put((byte) (0xf0 | cp >> 18)).put((byte) (0x80 | cp >> 12 & 0x3f))
+				.put((byte) (0x80 | cp >> 6 & 0x3f)).put((byte) (0x80 | cp & 0x3f));
+			return index + 1;
+		} else if(Character.isSurrogate(c)) {
+			buffer.put((byte) '?');
+		} else {
+			buffer.put((byte) (0xe0 | c >> 12)).put((byte) (0x80 | c >> 6 & 0x3f)).put((byte) (0x80 | c & 0x3f));
+		}
+		return index;
+	}
+	
+	/**
+	 * The JSON escape of a control character.
+	 */
+	void putUnicodeEscape(char c) throws IOException {
+		ensure(6);
+		buffer.put((byte) '\\').put((byte) 'u').put(HEX[c >> 12 & 0xf]).put(HEX[c >> 8 & 0xf]).put(HEX[c >> 4 & 0xf]).put(HEX[c & 0xf]);
+	}
+	
+	void putLong(long value) throws IOException {
+		ensure(20);
+		if(value == 0) {
+			buffer.put((byte) '0');
+			return;
+		}
+		// negative, so that Long.MIN_VALUE has no overflow
+		long negative = value < 0 ? value : -value;
+		int position = scratch.length;
+		while(negative != 0) {
+			scratch[--position] = DIGITS[(int) -(negative % 10)];
+			negative /= 10;
+		}
+		if(value < 0) {
+			buffer.put((byte) '-');
+		}
+		buffer.put(scratch, position, scratch.length - position);
+	}
+	
+	/**
+	 * A number with leading zeros.
+	 */
+	void putDigits(int value, int digits) throws IOException {
+		ensure(digits);
+		for(int divisor = pow10(digits - 1); divisor > 0; divisor /= 10) {
+			buffer.put(DIGITS[value / divisor % 10]);
+		}
+	}
+	
+	private static int pow10(int exponent) {
+		int pow = 1;
+		for(int i = 0; i < exponent; i++) {
+			pow *= 10;
+		}
+		return pow;
+	}
+	
+	/**
+	 * Writes the buffer to the channel, through the deflater with gzip.
+	 */
+	private void flush() throws IOException {
+		flush(false);
+	}
+	
+	/**
+	 *
+	 * @param finish true to finish the deflater with the last bytes, it keeps reading its input buffer until then
+	 */
+	private void flush(boolean finish) throws IOException {
+		buffer.flip();
+		bytes += buffer.remaining();
+		if(deflater == null) {
+			write(buffer);
+		} else {
+			int position = buffer.position();
+			crc.update(buffer);
+			buffer.position(position);
+			deflater.setInput(buffer);
+			if(finish) {
+				deflater.finish();
+				while(!deflater.finished()) {
+					deflate();
+				}
+			} else {
+				while(!deflater.needsInput()) {
+					deflate();
+				}
+			}
+		}
+		buffer.clear();
+	}
+	
+	private void deflate() throws IOException {
+		deflater.deflate(compressed);
+		if(!compressed.hasRemaining()) {
+			compressed.flip();
+			write(compressed);
+			compressed.clear();
+		}
+	}
+	
+	private void write(ByteBuffer source) throws IOException {
+		while(source.hasRemaining()) {
+			channel.write(source);
+		}
+	}
+	
+	/**
+	 *
+	 * @return The number of encoded bytes, before compression
+	 */
+	long getBytes() {
+		return bytes + buffer.position();
+	}
+	
+	/**
+	 * Writes the remaining bytes and the gzip trailer. The channel stays open. Can be called more than once.
+	 */
+	@Override
+	public void close() throws IOException {
+		if(closed) {
+			return;
+		}
+		closed = true;
+		if(deflater == null) {
+			flush();
+		} else {
+			try {
+				flush(true);
+				if(compressed.remaining() < 8) {
+					compressed.flip();
+					write(compressed);
+					compressed.clear();
+				}
+				compressed.putInt((int) crc.getValue()).putInt((int) bytes);
+				compressed.flip();
+				write(compressed);
+			} finally {
+				deflater.end();
+			}
+		}
+	}
+}
@@ -0,0 +1,122 @@
+package native;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import com.querydsl.core.JoinExpression;
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.core.types.Constant;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.FactoryExpression;
+import com.querydsl.core.types.Operation;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.ParamExpression;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.SubQueryExpression;
+import com.querydsl.core.types.TemplateExpression;
+import com.querydsl.core.types.Visitor;
+
+/**
+ * Collects the column paths of the clauses of a query, without the tables of the from clause and the joins, and
+ * the aliases given with as. Sub-queries are skipped, their builders are checked on their own.
+ */
+final class ColumnCollector implements Visitor<Void, Void> {
+
+	private final List<Path<?>> columns = new ArrayList<>();
+	private final Set<String> aliases = new HashSet<>();
+	
+	static ColumnCollector collect(QueryMetadata metadata) {
+		ColumnCollector collector = new ColumnCollector();
+		collector.add(metadata.getProjection());
+		for(JoinExpression join : metadata.getJoins()) {
+			collector.add(join.getCondition());
+		}
+		collector.add(metadata.getWhere());
+		for(Expression<?> group : metadata.getGroupBy()) {
+			collector.add(group);
+		}
+		collector.add(metadata.getHaving());
+		for(OrderSpecifier<?> order : metadata.getOrderBy()) {
+			collector.add(order.getTarget());
+		}
+		return collector;
+	}
+	
+	private void add(Expression<?> expr) {
+		if(expr != null) {
+			expr.accept(this, null);
+		}
+	}
+	
+	/**
+	 * 
+	 * @return The paths in the order of the clauses
+	 */
+	List<Path<?>> getColumns() {
+		return columns;
+	}
+	
+	/**
+	 * 
+	 * @return The aliases in lower case
+	 */
+	Set<String> getAliases() {
+		return aliases;
+	}
+	
+	@Override
+	public Void visit(Constant<?> expr, Void context) {
+		return null;
+	}
+	
+	@Override
+	public Void visit(FactoryExpression<?> expr, Void context) {
+		for(Expression<?> arg : expr.getArgs()) {
+			add(arg);
+		}
+		return null;
+	}
+	
+	@Override
+	public Void visit(Operation<?> expr, Void context) {
+		if(expr.getOperator() == Ops.ALIAS) {
+			add(expr.getArg(0));
+			aliases.add(expr.getArg(1).toString().toLowerCase(Locale.ROOT));
+			return null;
+		}
+		for(Expression<?> arg : expr.getArgs()) {
+			add(arg);
+		}
+		return null;
+	}
+	
+	@Override
+	public Void visit(ParamExpression<?> expr, Void context) {
+		return null;
+	}
+	
+	@Override
+	public Void visit(Path<?> expr, Void context) {
+		columns.add(expr);
+		return null;
+	}
+	
+	@Override
+	public Void visit(SubQueryExpression<?> expr, Void context) {
+		return null;
+	}
+	
+	@Override
+	public Void visit(TemplateExpression<?> expr, Void context) {
+		for(Object arg : expr.getArgs()) {
+			if(arg instanceof Expression) {
+				add((Expression<?>) arg);
+			}
+		}
+		return null;
+	}
+}
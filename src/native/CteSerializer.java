@@ -0,0 +1,419 @@
+package native;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.querydsl.core.JoinExpression;
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.core.types.Constant;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.FactoryExpression;
+import com.querydsl.core.types.Operation;
+import com.querydsl.core.types.Operator;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.ParamExpression;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.SubQueryExpression;
+import com.querydsl.core.types.TemplateExpression;
+import com.querydsl.core.types.Visitor;
+import com.querydsl.sql.Configuration;
+import com.querydsl.sql.SQLSerializer;
+
+/**
+ * Serializes a query with a WITH clause for the sub-queries declared with {@link NativeSqlBuilder#with(String, NativeSqlBuilder, Hint...)},
+ * and for the sub-queries that occur more than once with the same structure and values. Every occurrence of such a
+ * sub-query is replaced by the name of its common table expression. Correlated sub-queries, which refer to tables of
+ * the outer query, are not factored out.
+ *
+ * <pre>with cte_1 as (select id from tt where kind = 'odd') select field from tt where id in (select * from cte_1) or parent in (select * from cte_1)</pre>
+ * 
+ * For {@link NativeSqlBuilder#normalizedSql()} it renders every IN list with one bind variable or row, whether it has one value or
+ * is split into chunks, so that queries with the same fingerprint have the same SQL, see {@link QueryHasher#inListTarget(Operator, List)}.
+ * The values of the list aren't visited.
+ */
+final class CteSerializer extends SQLSerializer {
+
+	private static final String AUTO_PREFIX = "cte_";
+	private static final Pattern QUALIFIED = Pattern.compile("([A-Za-z_][\\w$#]*)\\.[A-Za-z_]");
+	
+	/**
+	 * A named sub-query of the WITH clause. The uses of the sub-query are found by its metadata, the body is what
+	 * the WITH clause renders, the same query with the hints of the declaration.
+	 */
+	static final class Cte {
+		
+		private final String name;
+		private final QueryMetadata metadata;
+		private final QueryMetadata body;
+		
+		Cte(String name, QueryMetadata metadata) {
+			this(name, metadata, metadata);
+		}
+		
+		Cte(String name, QueryMetadata metadata, QueryMetadata body) {
+			this.name = name;
+			this.metadata = metadata;
+			this.body = body;
+		}
+		
+		String getName() {
+			return name;
+		}
+		
+		boolean isSameQuery(Cte other) {
+			return metadata.equals(other.metadata) && body.equals(other.body);
+		}
+	}
+	
+	private final List<Cte> ctes;
+	private final boolean normalize;
+	private boolean started;
+	private int defined;
+	private boolean inJoinTarget;
+	
+	CteSerializer(Configuration config, List<Cte> ctes, boolean normalize) {
+		super(config);
+		this.ctes = ctes;
+		this.normalize = normalize;
+	}
+	
+	/**
+	 * Orders the declared and the repeated sub-queries so that a common table expression only refers to the ones before it.
+	 *
+	 * @param declared The sub-queries declared with with, in order of declaration
+	 * @param query The outer query
+	 * @return The common table expressions, empty if there are none
+	 */
+	static List<Cte> plan(List<Cte> declared, QueryMetadata query) {
+		SubQueryCounter counter = new SubQueryCounter();
+		Map<QueryMetadata, Cte> named = new LinkedHashMap<>();
+		for(Cte cte : declared) {
+			named.putIfAbsent(cte.metadata, cte);
+			counter.visit(cte.metadata);
+		}
+		counter.add(query);
+		List<Cte> ctes = new ArrayList<>();
+		for(Map.Entry<QueryMetadata, Integer> subQuery : counter.counts.entrySet()) {
+			Cte cte = named.get(subQuery.getKey());
+			if(cte == null && subQuery.getValue() > 1 && !Scope.isCorrelated(subQuery.getKey())) {
+				cte = new Cte(AUTO_PREFIX + (ctes.size() + 1), subQuery.getKey());
+			}
+			if(cte != null) {
+				ctes.add(cte);
+			}
+		}
+		return ctes;
+	}
+	
+	@Override
+	public void serialize(QueryMetadata metadata, boolean forCountRow) {
+		if(!started) {
+			started = true;
+			if(!ctes.isEmpty()) {
+				append("with ");
+				for(Cte cte : ctes) {
+					if(defined > 0) {
+						append(", ");
+					}
+					append(cte.name).append(" as (");
+					super.serialize(cte.body, false);
+					append(")");
+					defined++;
+				}
+				append("\n");
+			}
+		}
+		super.serialize(metadata, forCountRow);
+	}
+	
+	@Override
+	protected void visitOperation(Class<?> type, Operator operator, List<? extends Expression<?>> args) {
+		if(!normalize) {
+			super.visitOperation(type, operator, args);
+			return;
+		}
+		Expression<?> target = QueryHasher.inListTarget(operator, args);
+		if(target != null) {
+			appendInList(target, " in (");
+			return;
+		}
+		if(operator == Ops.NOT_IN && args.size() == 2 && (QueryHasher.isList(args.get(1)) || QueryHasher.isCollection(args.get(1)))) {
+			appendInList(args.get(0), " not in (");
+			return;
+		}
+		// without the parentheses of the chunks
+		List<Expression<?>> normalized = new ArrayList<>(args.size());
+		for(Expression<?> arg : args) {
+			boolean chunks = arg instanceof Operation && ((Operation<?>) arg).getOperator() == Ops.OR 
+					&& QueryHasher.inListTarget(Ops.OR, ((Operation<?>) arg).getArgs()) != null;
+			normalized.add(chunks ? firstChunk(arg) : arg);
+		}
+		super.visitOperation(type, operator, normalized);
+	}
+	
+	/**
+	 * <pre>field in (?)
+	 * (f1, f2) in ((?, ?))</pre>
+	 */
+	private void appendInList(Expression<?> target, String in) {
+		boolean tuple = QueryHasher.isList(target);
+		if(tuple) {
+			append("(");
+			handle(target);
+			append(")").append(in).append("(");
+			int arity = InValueCounter.listSize(target);
+			for(int i = 0; i < arity; i++) {
+				append(i == 0 ? "?" : ", ?");
+			}
+			append("))");
+		} else {
+			handle(target);
+			append(in).append("?)");
+		}
+	}
+	
+	private static Expression<?> firstChunk(Expression<?> chunks) {
+		while(chunks instanceof Operation && ((Operation<?>) chunks).getOperator() == Ops.OR) {
+			chunks = ((Operation<?>) chunks).getArg(0);
+		}
+		return chunks;
+	}
+	
+	@Override
+	protected void handleJoinTarget(JoinExpression je) {
+		inJoinTarget = true;
+		super.handleJoinTarget(je);
+		inJoinTarget = false;
+	}
+	
+	@Override
+	public Void visit(SubQueryExpression<?> query, Void context) {
+		boolean joinTarget = inJoinTarget;
+		inJoinTarget = false;
+		// the body of a common table expression may only refer to the ones defined before it
+		for(int i = 0; i < defined; i++) {
+			Cte cte = ctes.get(i);
+			if(cte.metadata == query.getMetadata() || cte.metadata.equals(query.getMetadata())) {
+				if(joinTarget) {
+					append(cte.name);
+				} else {
+					append("(select * from ").append(cte.name).append(")");
+				}
+				return null;
+			}
+		}
+		return super.visit(query, context);
+	}
+	
+	/**
+	 * Counts the sub-queries by structure and values, in post-order so inner sub-queries come first.
+	 * A repeated sub-query isn't visited again, so its own sub-queries are only counted once.
+	 */
+	private static final class SubQueryCounter implements Visitor<Void, Void> {
+		
+		private final Map<QueryMetadata, Integer> counts = new LinkedHashMap<>();
+		
+		void visit(QueryMetadata metadata) {
+			Integer count = counts.get(metadata);
+			if(count != null) {
+				counts.put(metadata, count + 1);
+				return;
+			}
+			add(metadata);
+			counts.put(metadata, 1);
+		}
+		
+		void add(QueryMetadata metadata) {
+			add(metadata.getProjection());
+			for(JoinExpression join : metadata.getJoins()) {
+				add(join.getTarget());
+				add(join.getCondition());
+			}
+			add(metadata.getWhere());
+			for(Expression<?> group : metadata.getGroupBy()) {
+				add(group);
+			}
+			add(metadata.getHaving());
+			for(OrderSpecifier<?> order : metadata.getOrderBy()) {
+				add(order.getTarget());
+			}
+		}
+		
+		private void add(Expression<?> expr) {
+			if(expr != null) {
+				expr.accept(this, null);
+			}
+		}
+		
+		@Override
+		public Void visit(Constant<?> expr, Void context) {
+			return null;
+		}
+		
+		@Override
+		public Void visit(FactoryExpression<?> expr, Void context) {
+			for(Expression<?> arg : expr.getArgs()) {
+				add(arg);
+			}
+			return null;
+		}
+		
+		@Override
+		public Void visit(Operation<?> expr, Void context) {
+			if(expr.getOperator() == Ops.LIST) {
+				// the values of an IN list
+				return null;
+			}
+			for(Expression<?> arg : expr.getArgs()) {
+				add(arg);
+			}
+			return null;
+		}
+		
+		@Override
+		public Void visit(ParamExpression<?> expr, Void context) {
+			return null;
+		}
+		
+		@Override
+		public Void visit(Path<?> expr, Void context) {
+			return null;
+		}
+		
+		@Override
+		public Void visit(SubQueryExpression<?> expr, Void context) {
+			visit(expr.getMetadata());
+			return null;
+		}
+		
+		@Override
+		public Void visit(TemplateExpression<?> expr, Void context) {
+			for(Object arg : expr.getArgs()) {
+				if(arg instanceof Expression) {
+					add((Expression<?>) arg);
+				}
+			}
+			return null;
+		}
+	}
+	
+	/**
+	 * The tables and aliases a sub-query declares, and the qualifiers of the columns it uses, also in the text of
+	 * expressions. A qualifier that isn't declared refers to the outer query. Unqualified columns are assumed to be
+	 * columns of the sub-query.
+	 */
+	private static final class Scope implements Visitor<Void, Void> {
+		
+		private final Set<String> declared = new HashSet<>();
+		private final Set<String> qualifiers = new HashSet<>();
+		
+		static boolean isCorrelated(QueryMetadata metadata) {
+			Scope scope = new Scope();
+			scope.add(metadata);
+			return !scope.declared.containsAll(scope.qualifiers);
+		}
+		
+		private static String key(Object name) {
+			return name.toString().toLowerCase(Locale.ROOT);
+		}
+		
+		private void add(QueryMetadata metadata) {
+			add(metadata.getProjection());
+			for(JoinExpression join : metadata.getJoins()) {
+				declare(join.getTarget());
+				add(join.getCondition());
+			}
+			add(metadata.getWhere());
+			for(Expression<?> group : metadata.getGroupBy()) {
+				add(group);
+			}
+			add(metadata.getHaving());
+			for(OrderSpecifier<?> order : metadata.getOrderBy()) {
+				add(order.getTarget());
+			}
+		}
+		
+		private void declare(Expression<?> target) {
+			if(target instanceof Operation && ((Operation<?>) target).getOperator() == Ops.ALIAS) {
+				declared.add(key(((Operation<?>) target).getArg(1)));
+				target = ((Operation<?>) target).getArg(0);
+			}
+			if(target instanceof Path) {
+				Path<?> table = (Path<?>) target;
+				declared.add(key(table));
+				declared.add(key(table.getMetadata().getElement()));
+			} else {
+				add(target);
+			}
+		}
+		
+		private void add(Expression<?> expr) {
+			if(expr != null) {
+				expr.accept(this, null);
+			}
+		}
+		
+		@Override
+		public Void visit(Constant<?> expr, Void context) {
+			return null;
+		}
+		
+		@Override
+		public Void visit(FactoryExpression<?> expr, Void context) {
+			for(Expression<?> arg : expr.getArgs()) {
+				add(arg);
+			}
+			return null;
+		}
+		
+		@Override
+		public Void visit(Operation<?> expr, Void context) {
+			for(Expression<?> arg : expr.getArgs()) {
+				add(arg);
+			}
+			return null;
+		}
+		
+		@Override
+		public Void visit(ParamExpression<?> expr, Void context) {
+			return null;
+		}
+		
+		@Override
+		public Void visit(Path<?> expr, Void context) {
+			if(expr.getMetadata().getParent() != null) {
+				qualifiers.add(key(expr.getMetadata().getParent()));
+			}
+			return null;
+		}
+		
+		@Override
+		public Void visit(SubQueryExpression<?> expr, Void context) {
+			add(expr.getMetadata());
+			return null;
+		}
+		
+		@Override
+		public Void visit(TemplateExpression<?> expr, Void context) {
+			// expressions like expr("tt.id") are plain text
+			Matcher qualified = QUALIFIED.matcher(expr.getTemplate().toString());
+			while(qualified.find()) {
+				qualifiers.add(key(qualified.group(1)));
+			}
+			for(Object arg : expr.getArgs()) {
+				if(arg instanceof Expression) {
+					add((Expression<?>) arg);
+				}
+			}
+			return null;
+		}
+	}
+}
@@ -0,0 +1,90 @@
+package native;
+
+/**
+ * The execution of a query by {@link NativeSqlBuilder#iterate(java.sql.Connection, RowMapper)} or one of the 
+ * stream methods, see {@link QueryListener#executed(ExecutionEvent)}.
+ */
+public final class ExecutionEvent {
+
+	private final NativeSqlBuilder builder;
+	private final String sql;
+	private final long fingerprint;
+	private final long prepareNanos;
+	private final long executeNanos;
+	private long fetchNanos;
+	private long rows;
+	
+	ExecutionEvent(NativeSqlBuilder builder, String sql, long fingerprint, long prepareNanos, long executeNanos) {
+		this.builder = builder;
+		this.sql = sql;
+		this.fingerprint = fingerprint;
+		this.prepareNanos = prepareNanos;
+		this.executeNanos = executeNanos;
+	}
+	
+	/**
+	 * Called by the iterator for every row it reads.
+	 */
+	void fetched(long nanos, boolean row) {
+		fetchNanos += nanos;
+		if(row) {
+			rows++;
+		}
+	}
+	
+	/**
+	 * 
+	 * @return The builder that ran the query
+	 */
+	public NativeSqlBuilder getBuilder() {
+		return builder;
+	}
+	
+	/**
+	 * 
+	 * @return The SQL with bind variables
+	 */
+	public String getSql() {
+		return sql;
+	}
+	
+	/**
+	 * 
+	 * @return The fingerprint of the query when it was run
+	 */
+	public long getFingerprint() {
+		return fingerprint;
+	}
+	
+	/**
+	 * 
+	 * @return The nanoseconds to load the temporary tables, render the SQL, prepare the statement and bind the values
+	 */
+	public long getPrepareNanos() {
+		return prepareNanos;
+	}
+	
+	/**
+	 * 
+	 * @return The nanoseconds of executeQuery
+	 */
+	public long getExecuteNanos() {
+		return executeNanos;
+	}
+	
+	/**
+	 * 
+	 * @return The nanoseconds spent in ResultSet.next(), without the row mapping
+	 */
+	public long getFetchNanos() {
+		return fetchNanos;
+	}
+	
+	/**
+	 * 
+	 * @return The number of rows read
+	 */
+	public long getRows() {
+		return rows;
+	}
+}
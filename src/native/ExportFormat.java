@@ -0,0 +1,24 @@
+package native;
+
+/**
+ * The file formats of {@link ResultExporter}. Both are UTF-8 with one line per row.
+ */
+public enum ExportFormat {
+
+	/**
+	 * Comma separated values as in RFC 4180, with a header line of the column labels. Values with the delimiter,
+	 * a quote or a line break are quoted, nulls are empty.
+	 * 
+	 * <pre>ID,FIELD
+	 * 1,"a ""quoted"", value"</pre>
+	 */
+	CSV,
+	
+	/**
+	 * One JSON object per line, with the column labels as keys. Numbers and booleans are JSON values, dates and 
+	 * timestamps strings.
+	 * 
+	 * <pre>{"ID":1,"FIELD":"value1"}</pre>
+	 */
+	JSON_LINES
+}
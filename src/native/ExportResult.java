@@ -0,0 +1,78 @@
+package native;
+
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * The size and throughput of a {@link ResultExporter#export(NativeSqlBuilder, java.sql.Connection, Path)}.
+ */
+public final class ExportResult {
+
+	private final Path file;
+	private final long rows;
+	private final long bytes;
+	private final long fileBytes;
+	private final long nanos;
+	
+	ExportResult(Path file, long rows, long bytes, long fileBytes, long nanos) {
+		this.file = file;
+		this.rows = rows;
+		this.bytes = bytes;
+		this.fileBytes = fileBytes;
+		this.nanos = nanos;
+	}
+	
+	/**
+	 * 
+	 * @return The written file
+	 */
+	public Path getFile() {
+		return file;
+	}
+	
+	/**
+	 * 
+	 * @return The number of exported rows
+	 */
+	public long getRows() {
+		return rows;
+	}
+	
+	/**
+	 * 
+	 * @return The number of encoded bytes, before compression
+	 */
+	public long getBytes() {
+		return bytes;
+	}
+	
+	/**
+	 * 
+	 * @return The size of the file, smaller than {@link #getBytes()} with gzip
+	 */
+	public long getFileBytes() {
+		return fileBytes;
+	}
+	
+	/**
+	 * 
+	 * @return The time from running the query to closing the file, in nanoseconds
+	 */
+	public long getNanos() {
+		return nanos;
+	}
+	
+	/**
+	 * 
+	 * @return The encoded megabytes (10^6 bytes) per second, including the time the database needed for the rows
+	 */
+	public double getMegabytesPerSecond() {
+		return nanos > 0 ? bytes * 1000.0 / nanos : 0.0;
+	}
+	
+	@Override
+	public String toString() {
+		return String.format(Locale.ROOT, "%s: %d rows, %d bytes, %d bytes written, %.1f ms, %.1f MB/s", 
+				file, rows, bytes, fileBytes, nanos / 1e6, getMegabytesPerSecond());
+	}
+}
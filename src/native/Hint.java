@@ -0,0 +1,183 @@
+package native;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * An optimizer hint, added to a query with {@link NativeSqlBuilder#hint(Hint...)}. The table aliases a hint refers to
+ * are checked against the tables and aliases the builder declares. Aliases and index names must be plain identifiers,
+ * optionally qualified with a schema, as they are rendered into the hint comment as they are. A hint is immutable.
+ *
+ * <pre>Hint.index("t", "tt_field_idx")</pre>
+ */
+public final class Hint {
+
+	private static final Pattern NAME = Pattern.compile("[A-Za-z_][A-Za-z0-9_$#]*(\\.[A-Za-z_][A-Za-z0-9_$#]*)*");
+	
+	private final String text;
+	private final List<String> aliases;
+	
+	private Hint(String text, String... aliases) {
+		this.text = text;
+		this.aliases = Collections.unmodifiableList(Arrays.asList(aliases));
+	}
+	
+	private static Hint withAliases(String name, String... aliases) {
+		if(aliases.length == 0) {
+			throw new IllegalArgumentException(name + " needs at least one table alias");
+		}
+		for(String alias : aliases) {
+			checkName(alias);
+		}
+		return new Hint(name + "(" + String.join(" ", aliases) + ")", aliases.clone());
+	}
+	
+	private static String checkName(String name) {
+		if(name == null || !NAME.matcher(name).matches()) {
+			throw new IllegalArgumentException("Not an identifier: " + name);
+		}
+		return name;
+	}
+	
+	/**
+	 *
+	 * <pre>INDEX(alias indexName)</pre>
+	 *
+	 * @param alias The table name or alias
+	 * @param indexName The index to use
+	 * @return Hint
+	 */
+	public static Hint index(String alias, String indexName) {
+		return new Hint("INDEX(" + checkName(alias) + " " + checkName(indexName) + ")", alias);
+	}
+	
+	/**
+	 *
+	 * <pre>FULL(alias)</pre>
+	 *
+	 * @param alias The table name or alias
+	 * @return Hint
+	 */
+	public static Hint full(String alias) {
+		return withAliases("FULL", alias);
+	}
+	
+	/**
+	 *
+	 * <pre>FIRST_ROWS(10)</pre>
+	 *
+	 * @param rows The number of rows to optimize the response time for
+	 * @return Hint
+	 */
+	public static Hint firstRows(int rows) {
+		return new Hint("FIRST_ROWS(" + rows + ")");
+	}
+	
+	/**
+	 *
+	 * <pre>PARALLEL(alias 8)</pre>
+	 *
+	 * @param alias The table name or alias
+	 * @param degree The degree of parallelism
+	 * @return Hint
+	 */
+	public static Hint parallel(String alias, int degree) {
+		return new Hint("PARALLEL(" + checkName(alias) + " " + degree + ")", alias);
+	}
+	
+	/**
+	 *
+	 * <pre>LEADING(a b c)</pre>
+	 *
+	 * @param aliases The tables or aliases in join order
+	 * @return Hint
+	 */
+	public static Hint leading(String... aliases) {
+		return withAliases("LEADING", aliases);
+	}
+	
+	/**
+	 *
+	 * <pre>USE_HASH(a b)</pre>
+	 *
+	 * @param aliases The tables or aliases to join with a hash join
+	 * @return Hint
+	 */
+	public static Hint useHash(String... aliases) {
+		return withAliases("USE_HASH", aliases);
+	}
+	
+	/**
+	 *
+	 * <pre>USE_NL(a b)</pre>
+	 *
+	 * @param aliases The tables or aliases to join with nested loops
+	 * @return Hint
+	 */
+	public static Hint useNl(String... aliases) {
+		return withAliases("USE_NL", aliases);
+	}
+	
+	/**
+	 * In the select of a sub-query, keeps the optimizer from merging the sub-query into the outer query.
+	 *
+	 * <pre>NO_MERGE</pre>
+	 *
+	 * @return Hint
+	 */
+	public static Hint noMerge() {
+		return new Hint("NO_MERGE");
+	}
+	
+	/**
+	 *
+	 * <pre>NO_MERGE(alias)</pre>
+	 *
+	 * @param alias The alias of a sub-query in the from clause
+	 * @return Hint
+	 */
+	public static Hint noMerge(String alias) {
+		return withAliases("NO_MERGE", alias);
+	}
+	
+	/**
+	 * In a named sub-query, evaluates it once into a temporary table, see {@link NativeSqlBuilder#with(String, NativeSqlBuilder, Hint...)}.
+	 *
+	 * <pre>MATERIALIZE</pre>
+	 *
+	 * @return Hint
+	 */
+	public static Hint materialize() {
+		return new Hint("MATERIALIZE");
+	}
+	
+	/**
+	 * In a named sub-query, merges it into the query at every use instead of evaluating it once.
+	 *
+	 * <pre>INLINE</pre>
+	 *
+	 * @return Hint
+	 */
+	public static Hint inline() {
+		return new Hint("INLINE");
+	}
+	
+	/**
+	 *
+	 * @return The table names or aliases the hint refers to
+	 */
+	public List<String> getAliases() {
+		return aliases;
+	}
+	
+	/**
+	 *
+	 * @return The hint as rendered in the hint comment, for example "INDEX(t tt_field_idx)"
+	 */
+	@Override
+	public String toString() {
+		return text;
+	}
+}
@@ -0,0 +1,538 @@
+package native;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import javax.sql.DataSource;
+
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.StringExpression;
+
+/**
+ * An immutable variant of {@link NativeSqlBuilder}: every call returns a new instance that shares all earlier clauses
+ * with its parent, so branching a base query into variations costs one small object until the variation is used.
+ * Instances are thread-safe and can be kept in constants.
+ *
+ * <pre>
+ * static final ImmutableSqlBuilder CODES = ImmutableSqlBuilder.create().select("code", "name").from("codes");
+ *
+ * ImmutableSqlBuilder active = CODES.where(sql -&gt; sql.eq("status", "active"));
+ * ImmutableSqlBuilder count = active.countAll();
+ * </pre>
+ *
+ * The first time an instance is rendered or run, the clauses of the chain are applied to one new {@link NativeSqlBuilder},
+ * starting from a copy of the nearest ancestor that has been rendered, and the builder is kept by that instance only: 
+ * the instances in between aren't materialized. It isn't changed afterwards, so the rendered SQL and fingerprint are
+ * computed once and shared by all threads. Predicates that need a builder, for example with sub-queries or temporary 
+ * tables, are passed as a function of the builder, see {@link #where(Function)}.
+ */
+public final class ImmutableSqlBuilder {
+
+	private final NativeSqlFactory factory;
+	private final ImmutableSqlBuilder parent;
+	private final Consumer<NativeSqlBuilder> clause;
+	private volatile NativeSqlBuilder builder;
+	
+	private ImmutableSqlBuilder(NativeSqlFactory factory, ImmutableSqlBuilder parent, Consumer<NativeSqlBuilder> clause) {
+		this.factory = factory;
+		this.parent = parent;
+		this.clause = clause;
+	}
+	
+	/**
+	 * Uses the shared configuration of {@link NativeSqlFactory#DEFAULT}.
+	 *
+	 * @return An empty ImmutableSqlBuilder
+	 */
+	public static ImmutableSqlBuilder create() {
+		return create(NativeSqlFactory.DEFAULT);
+	}
+	
+	/**
+	 *
+	 * @param factory The factory with the dialect configuration
+	 * @return An empty ImmutableSqlBuilder
+	 */
+	public static ImmutableSqlBuilder create(NativeSqlFactory factory) {
+		return new ImmutableSqlBuilder(factory, null, null);
+	}
+	
+	private ImmutableSqlBuilder with(Consumer<NativeSqlBuilder> clause) {
+		return new ImmutableSqlBuilder(factory, this, clause);
+	}
+	
+	/**
+	 * The builder with the query of this instance, created once. It is never changed afterwards, callers that change it 
+	 * get a {@link #toBuilder()}.
+	 */
+	private NativeSqlBuilder builder() {
+		NativeSqlBuilder b = builder;
+		if(b == null) {
+			synchronized(this) {
+				b = builder;
+				if(b == null) {
+					b = replay();
+					builder = b;
+				}
+			}
+		}
+		return b;
+	}
+	
+	/**
+	 * Applies the clauses of this instance and its ancestors to one new builder, in the order they were added. The chain
+	 * starts from a copy of the nearest ancestor that has been materialized, or from an empty builder.
+	 */
+	private NativeSqlBuilder replay() {
+		Deque<Consumer<NativeSqlBuilder>> clauses = new ArrayDeque<>();
+		NativeSqlBuilder b = null;
+		for(ImmutableSqlBuilder node = this; node != null && b == null; node = node.parent) {
+			NativeSqlBuilder materialized = node.builder;
+			if(materialized != null) {
+				b = materialized.clone();
+			} else if(node.clause != null) {
+				clauses.push(node.clause);
+			}
+		}
+		if(b == null) {
+			b = factory.create();
+		}
+		for(Consumer<NativeSqlBuilder> c : clauses) {
+			c.accept(b);
+		}
+		return b;
+	}
+	
+	/**
+	 * 
+	 * @return A new mutable builder with the query of this instance, a copy of the builder kept by this instance
+	 */
+	public NativeSqlBuilder toBuilder() {
+		return builder().clone();
+	}
+	
+	/**
+	 * Returns the SQL as String, rendered once per instance.
+	 */
+	@Override
+	public String toString() {
+		return builder().toString();
+	}
+	
+	/**
+	 * See {@link NativeSqlBuilder#appendTo(Appendable)}.
+	 *
+	 * @param out The buffer to append to
+	 * @throws IOException If the Appendable throws
+	 */
+	public void appendTo(Appendable out) throws IOException {
+		builder().appendTo(out);
+	}
+	
+	/**
+	 * See {@link NativeSqlBuilder#normalizedSql()}.
+	 *
+	 * @return The normalized SQL
+	 */
+	public String normalizedSql() {
+		return builder().normalizedSql();
+	}
+	
+	/**
+	 * See {@link NativeSqlBuilder#toBoundSql()}.
+	 *
+	 * @return BoundSql
+	 */
+	public BoundSql toBoundSql() {
+		return builder().toBoundSql();
+	}
+	
+	/**
+	 * See {@link NativeSqlBuilder#compile()}.
+	 *
+	 * @return NativeSqlTemplate
+	 */
+	public NativeSqlTemplate compile() {
+		return builder().compile();
+	}
+	
+	/**
+	 * See {@link NativeSqlBuilder#fingerprint()}.
+	 *
+	 * @return The fingerprint
+	 */
+	public long fingerprint() {
+		return builder().fingerprint();
+	}
+	
+	/**
+	 * See {@link NativeSqlBuilder#getTables()}.
+	 *
+	 * @return The table names in lower case
+	 */
+	public Set<String> getTables() {
+		return builder().getTables();
+	}
+	
+	/**
+	 * See {@link NativeSqlBuilder#iterate(Connection, RowMapper)}.
+	 */
+	public <T> ResultSetIterator<T> iterate(Connection conn, RowMapper<T> mapper) throws SQLException {
+		return builder().iterate(conn, mapper);
+	}
+	
+	/**
+	 * See {@link NativeSqlBuilder#iterate(DataSource, RowMapper)}.
+	 */
+	public <T> ResultSetIterator<T> iterate(DataSource dataSource, RowMapper<T> mapper) throws SQLException {
+		return builder().iterate(dataSource, mapper);
+	}
+	
+	/**
+	 * See {@link NativeSqlBuilder#stream(Connection, RowMapper)}.
+	 */
+	public <T> Stream<T> stream(Connection conn, RowMapper<T> mapper) throws SQLException {
+		return builder().stream(conn, mapper);
+	}
+	
+	/**
+	 * See {@link NativeSqlBuilder#stream(DataSource, RowMapper)}.
+	 */
+	public <T> Stream<T> stream(DataSource dataSource, RowMapper<T> mapper) throws SQLException {
+		return builder().stream(dataSource, mapper);
+	}
+	
+	/**
+	 * See {@link NativeSqlBuilder#list(Connection, RowMapper)}.
+	 */
+	public <T> List<T> list(Connection conn, RowMapper<T> mapper) throws SQLException {
+		return builder().list(conn, mapper);
+	}
+	
+	/**
+	 * See {@link NativeSqlBuilder#list(DataSource, RowMapper)}.
+	 */
+	public <T> List<T> list(DataSource dataSource, RowMapper<T> mapper) throws SQLException {
+		return builder().list(dataSource, mapper);
+	}
+	
+	/**
+	 * See {@link NativeSqlBuilder#select(String...)}.
+	 *
+	 * @return ImmutableSqlBuilder
+	 */
+	public ImmutableSqlBuilder select(String... fieldNames) {
+		String[] fields = fieldNames.clone();
+		return with(b -> b.select(fields));
+	}
+	
+	/**
+	 * See {@link NativeSqlBuilder#select(StringExpression...)}.
+	 *
+	 * @return ImmutableSqlBuilder
+	 */
+	public ImmutableSqlBuilder select(StringExpression... expressions) {
+		StringExpression[] exprs = expressions.clone();
+		return with(b -> b.select(exprs));
+	}
+	
+	/**
+	 * See {@link NativeSqlBuilder#select(StringExpression, String)}.
+	 *
+	 * @return ImmutableSqlBuilder
+	 */
+	public ImmutableSqlBuilder select(StringExpression expr, String aliasName) {
+		return with(b -> b.select(expr, aliasName));
+	}
+	
+	/**
+	 * See {@link NativeSqlBuilder#select(Expression...)}. Aggregates are immutable and don't depend on the builder
+	 * that created them, so they can be shared.
+	 *
+	 * @return ImmutableSqlBuilder
+	 */
+	public ImmutableSqlBuilder select(Expression<?>... expressions) {
+		Expression<?>[] exprs = expressions.clone();
+		return with(b -> b.select(exprs));
+	}
+	
+	/**
+	 * See {@link NativeSqlBuilder#selectAll()}.
+	 *
+	 * @return ImmutableSqlBuilder
+	 */
+	public ImmutableSqlBuilder selectAll() {
+		return with(NativeSqlBuilder::selectAll);
+	}
+	
+	/**
+	 * See {@link NativeSqlBuilder#countAll()}.
+	 *
+	 * @return ImmutableSqlBuilder
+	 */
+	public ImmutableSqlBuilder countAll() {
+		return with(NativeSqlBuilder::countAll);
+	}
+	
+	/**
+	 * See {@link NativeSqlBuilder#countAllAs(String)}.
+	 *
+	 * @return ImmutableSqlBuilder
+	 */
+	public ImmutableSqlBuilder countAllAs(String aliasName) {
+		return with(b -> b.countAllAs(aliasName));
+	}
+	
+	/**
+	 * See {@link NativeSqlBuilder#from(String)}.
+	 *
+	 * @return ImmutableSqlBuilder
+	 */
+	public ImmutableSqlBuilder from(String tableName) {
+		return with(b -> b.from(tableName));
+	}
+	
+	/**
+	 * See {@link NativeSqlBuilder#from(String, String)}.
+	 *
+	 * @return ImmutableSqlBuilder
+	 */
+	public ImmutableSqlBuilder from(String tableName, String aliasName) {
+		return with(b -> b.from(tableName, aliasName));
+	}
+	
+	/**
+	 * See {@link NativeSqlBuilder#from(NativeSqlBuilder, String)}.
+	 *
+	 * @return ImmutableSqlBuilder
+	 */
+	public ImmutableSqlBuilder from(ImmutableSqlBuilder subQuery, String aliasName) {
+		return with(b -> b.from(subQuery.toBuilder(), aliasName));
+	}
+	
+	/**
+	 * See {@link NativeSqlBuilder#with(String, NativeSqlBuilder, Hint...)}. Uses of the same sub-query refer to the name,
+	 * because the builders it creates have the same query.
+	 *
+	 * @return ImmutableSqlBuilder
+	 */
+	public ImmutableSqlBuilder with(String name, ImmutableSqlBuilder subQuery, Hint... hints) {
+		Hint[] shared = hints.clone();
+		return with(b -> b.with(name, subQuery.toBuilder(), shared));
+	}
+	
+	/**
+	 * See {@link NativeSqlBuilder#leftJoin(String)}.
+	 *
+	 * @return ImmutableSqlBuilder
+	 */
+	public ImmutableSqlBuilder leftJoin(String joinTableName) {
+		return with(b -> b.leftJoin(joinTableName));
+	}
+	
+	/**
+	 * See {@link NativeSqlBuilder#leftJoin(String, String)}.
+	 *
+	 * @return ImmutableSqlBuilder
+	 */
+	public ImmutableSqlBuilder leftJoin(String joinTableName, String aliasName) {
+		return with(b -> b.leftJoin(joinTableName, aliasName));
+	}
+	
+	/**
+	 * See {@link NativeSqlBuilder#innerJoin(String)}.
+	 *
+	 * @return ImmutableSqlBuilder
+	 */
+	public ImmutableSqlBuilder innerJoin(String joinTableName) {
+		return with(b -> b.innerJoin(joinTableName));
+	}
+	
+	/**
+	 * See {@link NativeSqlBuilder#innerJoin(String, String)}.
+	 *
+	 * @return ImmutableSqlBuilder
+	 */
+	public ImmutableSqlBuilder innerJoin(String joinTableName, String aliasName) {
+		return with(b -> b.innerJoin(joinTableName, aliasName));
+	}
+	
+	/**
+	 * See {@link NativeSqlBuilder#on(String, String)}.
+	 *
+	 * @return ImmutableSqlBuilder
+	 */
+	public ImmutableSqlBuilder on(String leftFieldName, String rightFieldName) {
+		return with(b -> b.on(leftFieldName, rightFieldName));
+	}
+	
+	/**
+	 * See {@link NativeSqlBuilder#where(Predicate...)}. QueryDSL predicates are immutable, so they can be shared.
+	 *
+	 * @return ImmutableSqlBuilder
+	 */
+	public ImmutableSqlBuilder where(Predicate... predicates) {
+		Predicate[] shared = predicates.clone();
+		return with(b -> b.where(shared));
+	}
+	
+	/**
+	 * A predicate created by the builder the clauses are applied to, for the predicates of {@link NativeSqlBuilder}
+	 * that register sub-queries or temporary tables on it.
+	 *
+	 * <pre>where(sql -&gt; sql.in("field", sub.toBuilder()))</pre>
+	 *
+	 * @param predicate Creates the predicate
+	 * @return ImmutableSqlBuilder
+	 */
+	public ImmutableSqlBuilder where(Function<NativeSqlBuilder, Predicate> predicate) {
+		return with(b -> b.where(predicate.apply(b)));
+	}
+	
+	/**
+	 * See {@link NativeSqlBuilder#groupBy(String...)}.
+	 *
+	 * @return ImmutableSqlBuilder
+	 */
+	public ImmutableSqlBuilder groupBy(String... fieldNames) {
+		String[] fields = fieldNames.clone();
+		return with(b -> b.groupBy(fields));
+	}
+	
+	/**
+	 * See {@link NativeSqlBuilder#groupBy(Expression...)}.
+	 *
+	 * @return ImmutableSqlBuilder
+	 */
+	public ImmutableSqlBuilder groupBy(Expression<?>... expressions) {
+		Expression<?>[] exprs = expressions.clone();
+		return with(b -> b.groupBy(exprs));
+	}
+	
+	/**
+	 * See {@link NativeSqlBuilder#having(Predicate...)}.
+	 *
+	 * @return ImmutableSqlBuilder
+	 */
+	public ImmutableSqlBuilder having(Predicate... predicates) {
+		Predicate[] shared = predicates.clone();
+		return with(b -> b.having(shared));
+	}
+	
+	/**
+	 * A having predicate created by the builder the clauses are applied to, see {@link #where(Function)}.
+	 *
+	 * <pre>having(sql -&gt; sql.sum("amount").gt(100))</pre>
+	 *
+	 * @param predicate Creates the predicate
+	 * @return ImmutableSqlBuilder
+	 */
+	public ImmutableSqlBuilder having(Function<NativeSqlBuilder, Predicate> predicate) {
+		return with(b -> b.having(predicate.apply(b)));
+	}
+	
+	/**
+	 * See {@link NativeSqlBuilder#orderBy(String...)}.
+	 *
+	 * @return ImmutableSqlBuilder
+	 */
+	public ImmutableSqlBuilder orderBy(String... fieldNames) {
+		String[] fields = fieldNames.clone();
+		return with(b -> b.orderBy(fields));
+	}
+	
+	/**
+	 * See {@link NativeSqlBuilder#orderBy(OrderSpecifier...)}.
+	 *
+	 * @return ImmutableSqlBuilder
+	 */
+	public ImmutableSqlBuilder orderBy(OrderSpecifier<?>... orders) {
+		OrderSpecifier<?>[] shared = orders.clone();
+		return with(b -> b.orderBy(shared));
+	}
+	
+	/**
+	 * See {@link NativeSqlBuilder#limit(long)}.
+	 *
+	 * @return ImmutableSqlBuilder
+	 */
+	public ImmutableSqlBuilder limit(long limit) {
+		return with(b -> b.limit(limit));
+	}
+	
+	/**
+	 * See {@link NativeSqlBuilder#offset(long)}.
+	 *
+	 * @return ImmutableSqlBuilder
+	 */
+	public ImmutableSqlBuilder offset(long offset) {
+		return with(b -> b.offset(offset));
+	}
+	
+	/**
+	 * See {@link NativeSqlBuilder#keysetPage(Keyset, Object[], long)}.
+	 *
+	 * @return ImmutableSqlBuilder
+	 */
+	public ImmutableSqlBuilder keysetPage(Keyset keyset, Object[] lastKey, long pageSize) {
+		Object[] key = lastKey != null ? lastKey.clone() : null;
+		return with(b -> b.keysetPage(keyset, key, pageSize));
+	}
+	
+	/**
+	 * See {@link NativeSqlBuilder#hint(Hint...)}. The aliases are checked when the query is rendered.
+	 *
+	 * @return ImmutableSqlBuilder
+	 */
+	public ImmutableSqlBuilder hint(Hint... hints) {
+		Hint[] shared = hints.clone();
+		return with(b -> b.hint(shared));
+	}
+	
+	/**
+	 * See {@link NativeSqlBuilder#fetchSize(int)}.
+	 *
+	 * @return ImmutableSqlBuilder
+	 */
+	public ImmutableSqlBuilder fetchSize(int fetchSize) {
+		return with(b -> b.fetchSize(fetchSize));
+	}
+	
+	/**
+	 * See {@link NativeSqlBuilder#queryTimeout(Duration)}.
+	 *
+	 * @return ImmutableSqlBuilder
+	 */
+	public ImmutableSqlBuilder queryTimeout(Duration timeout) {
+		return with(b -> b.queryTimeout(timeout));
+	}
+	
+	/**
+	 * See {@link NativeSqlBuilder#cache(ResultCache, Duration)}.
+	 *
+	 * @return ImmutableSqlBuilder
+	 */
+	public ImmutableSqlBuilder cache(ResultCache cache, Duration ttl) {
+		return with(b -> b.cache(cache, ttl));
+	}
+	
+	/**
+	 * See {@link NativeSqlBuilder#cache(ResultCache)}.
+	 *
+	 * @return ImmutableSqlBuilder
+	 */
+	public ImmutableSqlBuilder cache(ResultCache cache) {
+		return cache(cache, null);
+	}
+}
@@ -0,0 +1,261 @@
+package native;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The settings of the IN-list strategies of a {@link NativeSqlFactory}. A policy is immutable.
+ * 
+ * <pre>
+ * InListPolicy policy = InListPolicy.builder()
+ *         .chunkSize(1000)
+ *         .tempTable("in_list_values", "set_id", "v1", "v2")
+ *         .tempTableThreshold(20_000)
+ *         .build();
+ * </pre>
+ * 
+ * The temporary table should be a global temporary table with 'on commit preserve rows', so loaded values 
+ * are private to the session and survive an auto-commit.
+ */
+public final class InListPolicy {
+
+	/**
+	 * Oracle defaults: chunks of 1000 values (ORA-01795), SYS.ODCIVARCHAR2LIST and SYS.ODCINUMBERLIST collections 
+	 * and no temporary table.
+	 */
+	public static final InListPolicy DEFAULT = builder().build();
+	
+	private final int chunkSize;
+	private final String stringCollectionType;
+	private final String numberCollectionType;
+	private final String collectionTemplate;
+	private final String tempTableName;
+	private final String tempTableSetIdColumn;
+	private final List<String> tempTableValueColumns;
+	private final int tempTableThreshold;
+	private final int batchSize;
+	
+	private InListPolicy(Builder builder) {
+		this.chunkSize = builder.chunkSize;
+		this.stringCollectionType = builder.stringCollectionType;
+		this.numberCollectionType = builder.numberCollectionType;
+		this.collectionTemplate = builder.collectionTemplate;
+		this.tempTableName = builder.tempTableName;
+		this.tempTableSetIdColumn = builder.tempTableSetIdColumn;
+		this.tempTableValueColumns = builder.tempTableValueColumns;
+		this.tempTableThreshold = builder.tempTableThreshold;
+		this.batchSize = builder.batchSize;
+	}
+	
+	/**
+	 * Chooses the strategy for {@link InListStrategy#AUTO}:
+	 * up to the chunk size inline, from the threshold on the temporary table if there is one, 
+	 * otherwise chunks when rendering literals and a collection when binding.
+	 * 
+	 * @param size The number of values
+	 * @param useLiterals true if the builder renders literals
+	 * @param tuple true for a list of tuples, which can't be bound as a collection
+	 * @return InListStrategy
+	 */
+	InListStrategy choose(int size, boolean useLiterals, boolean tuple) {
+		if(size <= chunkSize) {
+			return InListStrategy.INLINE;
+		}
+		if(hasTempTable() && size >= tempTableThreshold) {
+			return InListStrategy.TEMP_TABLE;
+		}
+		return useLiterals || tuple ? InListStrategy.CHUNKED : InListStrategy.COLLECTION;
+	}
+	
+	/**
+	 * 
+	 * @return The maximum number of values in one list
+	 */
+	public int getChunkSize() {
+		return chunkSize;
+	}
+	
+	/**
+	 * 
+	 * @return The collection type to bind string values to
+	 */
+	public String getStringCollectionType() {
+		return stringCollectionType;
+	}
+	
+	/**
+	 * 
+	 * @return The collection type to bind numbers to
+	 */
+	public String getNumberCollectionType() {
+		return numberCollectionType;
+	}
+	
+	/**
+	 * 
+	 * @return The template of a collection predicate, {0} is the field and {1} the collection
+	 */
+	public String getCollectionTemplate() {
+		return collectionTemplate;
+	}
+	
+	/**
+	 * 
+	 * @return true if a temporary table is configured
+	 */
+	public boolean hasTempTable() {
+		return tempTableName != null;
+	}
+	
+	/**
+	 * 
+	 * @return The name of the temporary table, or null
+	 */
+	public String getTempTableName() {
+		return tempTableName;
+	}
+	
+	/**
+	 * 
+	 * @return The column of the temporary table that separates the lists of different predicates
+	 */
+	public String getTempTableSetIdColumn() {
+		return tempTableSetIdColumn;
+	}
+	
+	/**
+	 * 
+	 * @return The value columns of the temporary table, one per field of a tuple
+	 */
+	public List<String> getTempTableValueColumns() {
+		return tempTableValueColumns;
+	}
+	
+	/**
+	 * 
+	 * @return The list size from which {@link InListStrategy#AUTO} uses the temporary table
+	 */
+	public int getTempTableThreshold() {
+		return tempTableThreshold;
+	}
+	
+	/**
+	 * 
+	 * @return The number of rows per JDBC batch when loading the temporary table
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+	
+	/**
+	 * 
+	 * @return A builder with the Oracle defaults
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+	
+	/**
+	 * Options for an {@link InListPolicy}.
+	 */
+	public static final class Builder {
+		
+		private int chunkSize = 1000;
+		private String stringCollectionType = "SYS.ODCIVARCHAR2LIST";
+		private String numberCollectionType = "SYS.ODCINUMBERLIST";
+		private String collectionTemplate = "{0} in (select column_value from table({1}))";
+		private String tempTableName;
+		private String tempTableSetIdColumn;
+		private List<String> tempTableValueColumns = Collections.emptyList();
+		private int tempTableThreshold = 10_000;
+		private int batchSize = 1000;
+		
+		private Builder() {
+		}
+		
+		/**
+		 * 
+		 * @param chunkSize The maximum number of values in one list
+		 * @return Builder
+		 */
+		public Builder chunkSize(int chunkSize) {
+			if(chunkSize < 1) {
+				throw new IllegalArgumentException("chunkSize must be positive: " + chunkSize);
+			}
+			this.chunkSize = chunkSize;
+			return this;
+		}
+		
+		/**
+		 * 
+		 * @param stringCollectionType The collection type for strings, for example "SYS.ODCIVARCHAR2LIST"
+		 * @param numberCollectionType The collection type for numbers, for example "SYS.ODCINUMBERLIST"
+		 * @return Builder
+		 */
+		public Builder collectionTypes(String stringCollectionType, String numberCollectionType) {
+			this.stringCollectionType = stringCollectionType;
+			this.numberCollectionType = numberCollectionType;
+			return this;
+		}
+		
+		/**
+		 * 
+		 * <pre>{0} member of {1}</pre>
+		 * 
+		 * @param collectionTemplate The template of a collection predicate, {0} is the field and {1} the collection
+		 * @return Builder
+		 */
+		public Builder collectionTemplate(String collectionTemplate) {
+			this.collectionTemplate = collectionTemplate;
+			return this;
+		}
+		
+		/**
+		 * 
+		 * <pre>create global temporary table in_list_values (set_id number, v1 varchar2(4000), v2 varchar2(4000)) on commit preserve rows</pre>
+		 * 
+		 * @param tableName The temporary table
+		 * @param setIdColumn The column that separates the lists of different predicates
+		 * @param valueColumns The value columns, one per field of the widest tuple
+		 * @return Builder
+		 */
+		public Builder tempTable(String tableName, String setIdColumn, String... valueColumns) {
+			if(valueColumns.length == 0) {
+				throw new IllegalArgumentException("The temporary table needs at least one value column");
+			}
+			this.tempTableName = tableName;
+			this.tempTableSetIdColumn = setIdColumn;
+			this.tempTableValueColumns = Collections.unmodifiableList(Arrays.asList(valueColumns.clone()));
+			return this;
+		}
+		
+		/**
+		 * 
+		 * @param tempTableThreshold The list size from which {@link InListStrategy#AUTO} uses the temporary table
+		 * @return Builder
+		 */
+		public Builder tempTableThreshold(int tempTableThreshold) {
+			this.tempTableThreshold = tempTableThreshold;
+			return this;
+		}
+		
+		/**
+		 * 
+		 * @param batchSize The number of rows per JDBC batch when loading the temporary table
+		 * @return Builder
+		 */
+		public Builder batchSize(int batchSize) {
+			this.batchSize = batchSize;
+			return this;
+		}
+		
+		/**
+		 * 
+		 * @return InListPolicy
+		 */
+		public InListPolicy build() {
+			return new InListPolicy(this);
+		}
+	}
+}
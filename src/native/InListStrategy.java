@@ -0,0 +1,41 @@
+package native;
+
+/**
+ * How {@link NativeSqlBuilder#in(String, java.util.List, InListStrategy)} renders a list of values.
+ */
+public enum InListStrategy {
+
+	/**
+	 * Picks one of the other strategies by the size of the list, see {@link InListPolicy}.
+	 */
+	AUTO,
+	
+	/**
+	 * All values in one list, split by the dialect when it exceeds its maximum list size.
+	 * 
+	 * <pre>field in ('a', 'b', 'c')</pre>
+	 */
+	INLINE,
+	
+	/**
+	 * OR-ed lists of at most {@link InListPolicy#getChunkSize()} values.
+	 * 
+	 * <pre>(field in ('a', 'b') or field in ('c'))</pre>
+	 */
+	CHUNKED,
+	
+	/**
+	 * All values bound as one array to a collection type.
+	 * 
+	 * <pre>field in (select column_value from table(?))</pre>
+	 */
+	COLLECTION,
+	
+	/**
+	 * The values are loaded in batches into a temporary table by {@link NativeSqlBuilder#loadTempTables(java.sql.Connection)} 
+	 * and the predicate becomes a semi-join.
+	 * 
+	 * <pre>field in (select v1 from in_list_values where set_id = 42)</pre>
+	 */
+	TEMP_TABLE
+}
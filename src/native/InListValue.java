@@ -0,0 +1,40 @@
+package native;
+
+import com.querydsl.core.types.Constant;
+import com.querydsl.core.types.ExpressionBase;
+import com.querydsl.core.types.Visitor;
+
+/**
+ * The value of an IN list with a single value, which is rendered as <code>field = value</code>. It marks the
+ * comparison as an IN list, so that {@link QueryHasher} gives it the same fingerprint as longer lists.
+ * It is equal to any other constant with the same value.
+ *
+ * @param <T> The type of the value
+ */
+final class InListValue<T> extends ExpressionBase<T> implements Constant<T> {
+
+	private static final long serialVersionUID = 1L;
+	
+	private final T value;
+	
+	@SuppressWarnings("unchecked")
+	InListValue(T value) {
+		super((Class<? extends T>) value.getClass());
+		this.value = value;
+	}
+	
+	@Override
+	public T getConstant() {
+		return value;
+	}
+	
+	@Override
+	public <R, C> R accept(Visitor<R, C> v, C context) {
+		return v.visit(this, context);
+	}
+	
+	@Override
+	public boolean equals(Object o) {
+		return o == this || o instanceof Constant && ((Constant<?>) o).getConstant().equals(value);
+	}
+}
@@ -0,0 +1,115 @@
+package native;
+
+import java.util.Collection;
+
+import com.querydsl.core.JoinExpression;
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.core.types.Constant;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.FactoryExpression;
+import com.querydsl.core.types.Operation;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.ParamExpression;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.SubQueryExpression;
+import com.querydsl.core.types.TemplateExpression;
+import com.querydsl.core.types.Visitor;
+
+/**
+ * Counts the values of the IN lists and collections of a query and its sub-queries, without serializing it.
+ */
+final class InValueCounter implements Visitor<Integer, Void> {
+
+	static final InValueCounter INSTANCE = new InValueCounter();
+	
+	private InValueCounter() {
+	}
+	
+	int count(QueryMetadata metadata) {
+		int count = count(metadata.getWhere()) + count(metadata.getHaving()) + count(metadata.getProjection());
+		for(JoinExpression join : metadata.getJoins()) {
+			count += count(join.getTarget()) + count(join.getCondition());
+		}
+		return count;
+	}
+	
+	private int count(Expression<?> expr) {
+		return expr != null ? expr.accept(this, null) : 0;
+	}
+	
+	@Override
+	public Integer visit(Constant<?> expr, Void context) {
+		Object value = expr.getConstant();
+		if(value instanceof SqlArray) {
+			return ((SqlArray) value).getValues().size();
+		}
+		return 0;
+	}
+	
+	@Override
+	public Integer visit(FactoryExpression<?> expr, Void context) {
+		int count = 0;
+		for(Expression<?> arg : expr.getArgs()) {
+			count += count(arg);
+		}
+		return count;
+	}
+	
+	@Override
+	public Integer visit(Operation<?> expr, Void context) {
+		if((expr.getOperator() == Ops.IN || expr.getOperator() == Ops.NOT_IN) && expr.getArgs().size() == 2) {
+			Expression<?> right = expr.getArg(1);
+			if(right instanceof Constant && ((Constant<?>) right).getConstant() instanceof Collection) {
+				return ((Collection<?>) ((Constant<?>) right).getConstant()).size();
+			}
+			if(right instanceof Operation && ((Operation<?>) right).getOperator() == Ops.LIST) {
+				return listSize(right);
+			}
+		}
+		int count = 0;
+		for(Expression<?> arg : expr.getArgs()) {
+			count += count(arg);
+		}
+		return count;
+	}
+	
+	/**
+	 * Expressions.list() nests the elements into binary LIST operations.
+	 */
+	static int listSize(Expression<?> expr) {
+		if(expr instanceof Operation && ((Operation<?>) expr).getOperator() == Ops.LIST) {
+			int size = 0;
+			for(Expression<?> arg : ((Operation<?>) expr).getArgs()) {
+				size += listSize(arg);
+			}
+			return size;
+		}
+		return 1;
+	}
+	
+	@Override
+	public Integer visit(ParamExpression<?> expr, Void context) {
+		return 0;
+	}
+	
+	@Override
+	public Integer visit(Path<?> expr, Void context) {
+		return 0;
+	}
+	
+	@Override
+	public Integer visit(SubQueryExpression<?> expr, Void context) {
+		return count(expr.getMetadata());
+	}
+	
+	@Override
+	public Integer visit(TemplateExpression<?> expr, Void context) {
+		int count = 0;
+		for(Object arg : expr.getArgs()) {
+			if(arg instanceof Expression) {
+				count += count((Expression<?>) arg);
+			}
+		}
+		return count;
+	}
+}
@@ -0,0 +1,83 @@
+package native;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.querydsl.core.types.Order;
+
+/**
+ * The ordered key columns of a keyset (seek) pagination, see {@link NativeSqlBuilder#keysetPage(Keyset, Object[], long)}.
+ * The key columns must identify a row uniquely, and an index on them in this order lets each page be read 
+ * with one index range scan. A keyset is immutable.
+ * 
+ * <pre>Keyset.of("tt.created", "tt.id")</pre>
+ */
+public final class Keyset {
+
+	private final Order order;
+	private final List<String> columns;
+	
+	private Keyset(Order order, String[] columns) {
+		if(columns.length == 0) {
+			throw new IllegalArgumentException("A keyset needs at least one column");
+		}
+		this.order = order;
+		this.columns = Collections.unmodifiableList(Arrays.asList(columns.clone()));
+	}
+	
+	/**
+	 * 
+	 * @param columns The key columns in ascending order, with optional table names
+	 * @return Keyset
+	 */
+	public static Keyset of(String... columns) {
+		return new Keyset(Order.ASC, columns);
+	}
+	
+	/**
+	 * 
+	 * @param order The direction of all key columns
+	 * @param columns The key columns, with optional table names
+	 * @return Keyset
+	 */
+	public static Keyset of(Order order, String... columns) {
+		return new Keyset(order, columns);
+	}
+	
+	/**
+	 * 
+	 * @return The direction of the key columns
+	 */
+	public Order getOrder() {
+		return order;
+	}
+	
+	/**
+	 * 
+	 * @return The key columns
+	 */
+	public List<String> getColumns() {
+		return columns;
+	}
+	
+	/**
+	 * Reads the key of the current row, to pass as last seen key for the next page. The key columns must be selected, 
+	 * they are read by their name without the table name.
+	 * 
+	 * @param rs The ResultSet, positioned on the last row of a page
+	 * @return The key values
+	 * @throws SQLException
+	 */
+	public Object[] keyOf(ResultSet rs) throws SQLException {
+		Object[] key = new Object[columns.size()];
+		for(int i = 0; i < key.length; i++) {
+			String column = columns.get(i);
+			int dot = PathCache.lastSeparator(column);
+			key[i] = rs.getObject(dot < 0 ? column : column.substring(dot + 1));
+		}
+		return key;
+	}
+}
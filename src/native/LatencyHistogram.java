@@ -0,0 +1,120 @@
+package native;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of durations in nanoseconds. Values are counted in log-linear buckets, 16 per power of two, 
+ * so a percentile is accurate to 1/16 of its value and recording is one atomic increment. Percentiles read while 
+ * values are recorded are approximate.
+ */
+public final class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+	
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+	
+	/**
+	 * 
+	 * @param nanos A duration, negative values are counted as 0
+	 */
+	public void record(long nanos) {
+		long value = Math.max(nanos, 0L);
+		counts.incrementAndGet(bucket(value));
+		count.increment();
+		sum.add(value);
+		long current = max.get();
+		while(value > current && !max.compareAndSet(current, value)) {
+			current = max.get();
+		}
+	}
+	
+	static int bucket(long value) {
+		if(value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+	}
+	
+	/**
+	 * 
+	 * @return The highest value that falls into the bucket
+	 */
+	static long upperBound(int bucket) {
+		if(bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int shift = bucket / SUB_BUCKETS - 1;
+		long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+		return lower + (1L << shift) - 1;
+	}
+	
+	/**
+	 * 
+	 * @param percentile The percentile, for example 99.9
+	 * @return The value in nanoseconds below which the percentage of the recorded values falls, 0 when empty
+	 */
+	public long getPercentile(double percentile) {
+		long total = 0;
+		long[] snapshot = new long[BUCKETS];
+		for(int i = 0; i < BUCKETS; i++) {
+			snapshot[i] = counts.get(i);
+			total += snapshot[i];
+		}
+		if(total == 0) {
+			return 0L;
+		}
+		long rank = Math.max(1L, (long) Math.ceil(total * Math.min(percentile, 100.0) / 100.0));
+		long seen = 0;
+		for(int i = 0; i < BUCKETS; i++) {
+			seen += snapshot[i];
+			if(seen >= rank) {
+				return Math.min(upperBound(i), getMax());
+			}
+		}
+		return getMax();
+	}
+	
+	/**
+	 * 
+	 * @return The number of recorded values
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+	
+	/**
+	 * 
+	 * @return The highest recorded value in nanoseconds
+	 */
+	public long getMax() {
+		return max.get();
+	}
+	
+	/**
+	 * 
+	 * @return The mean of the recorded values in nanoseconds, 0 when empty
+	 */
+	public double getMean() {
+		long n = count.sum();
+		return n == 0 ? 0.0 : (double) sum.sum() / n;
+	}
+	
+	@Override
+	public String toString() {
+		return "count=" + getCount() + " p50=" + micros(getPercentile(50)) + "us p99=" + micros(getPercentile(99)) 
+				+ "us max=" + micros(getMax()) + "us";
+	}
+	
+	private static long micros(long nanos) {
+		return TimeUnit.NANOSECONDS.toMicros(nanos);
+	}
+}
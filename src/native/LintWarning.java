@@ -0,0 +1,136 @@
+package native;
+
+/**
+ * A performance problem of a query found by {@link QueryLinter}: the rule, its severity, the part of the query
+ * it was found in and an explanation. A warning is immutable.
+ */
+public final class LintWarning {
+
+	/**
+	 * How likely a warning is to hurt in production.
+	 */
+	public enum Severity {
+		
+		/**
+		 * Worth a look, but often fine.
+		 */
+		INFO,
+		
+		/**
+		 * Keeps an index from being used, or makes parsing expensive.
+		 */
+		WARNING,
+		
+		/**
+		 * Almost certainly a bug: the query reads far more rows than intended or doesn't run.
+		 */
+		ERROR
+	}
+	
+	/**
+	 * The anti-patterns {@link QueryLinter} checks for.
+	 */
+	public enum Rule {
+		
+		/**
+		 * <pre>field like '%abc'</pre>
+		 */
+		LEADING_WILDCARD(Severity.WARNING),
+		
+		/**
+		 * <pre>upper(field) = 'ABC'</pre>
+		 */
+		FUNCTION_ON_COLUMN(Severity.WARNING),
+		
+		/**
+		 * A character column compared to a number, which converts every value of the column, or a numeric column compared
+		 * to a string. Needs a {@link SchemaCatalog}.
+		 */
+		TYPE_MISMATCH(Severity.WARNING),
+		
+		/**
+		 * 1,000 or more literal values in the IN lists of one column, which are parsed for every distinct list.
+		 */
+		LARGE_IN_LIST(Severity.WARNING),
+		
+		/**
+		 * <pre>where 1 = 1</pre>
+		 */
+		PLACEHOLDER_ONLY(Severity.ERROR),
+		
+		/**
+		 * A join without on, which is a cartesian product.
+		 */
+		JOIN_WITHOUT_ON(Severity.ERROR),
+		
+		/**
+		 * A column the {@link SchemaCatalog} doesn't have, see {@link NativeSqlBuilder#getUnknownColumns()}.
+		 */
+		UNKNOWN_COLUMN(Severity.ERROR);
+		
+		private final Severity severity;
+		
+		private Rule(Severity severity) {
+			this.severity = severity;
+		}
+		
+		/**
+		 * 
+		 * @return The severity of the warnings of this rule
+		 */
+		public Severity getSeverity() {
+			return severity;
+		}
+	}
+	
+	private final Rule rule;
+	private final String target;
+	private final String message;
+	
+	LintWarning(Rule rule, String target, String message) {
+		this.rule = rule;
+		this.target = target;
+		this.message = message;
+	}
+	
+	/**
+	 * 
+	 * @return The rule
+	 */
+	public Rule getRule() {
+		return rule;
+	}
+	
+	/**
+	 * 
+	 * @return The severity of the rule
+	 */
+	public Severity getSeverity() {
+		return rule.getSeverity();
+	}
+	
+	/**
+	 * 
+	 * @return The column, join or expression the warning is about, for example "tt.field"
+	 */
+	public String getTarget() {
+		return target;
+	}
+	
+	/**
+	 * 
+	 * @return The explanation
+	 */
+	public String getMessage() {
+		return message;
+	}
+	
+	/**
+	 * 
+	 * @return For example "WARNING LEADING_WILDCARD tt.field: like '%abc' can't use an index on tt.field"
+	 */
+	@Override
+	public String toString() {
+		return getSeverity() + " " + rule + " " + target + ": " + message;
+	}
+}
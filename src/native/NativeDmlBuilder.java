@@ -0,0 +1,591 @@
+package native;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import javax.sql.DataSource;
+
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.ExpressionUtils;
+import com.querydsl.core.types.Operation;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.sql.Configuration;
+import com.querydsl.sql.SQLSerializer;
+
+/**
+ * Builds INSERT, UPDATE, DELETE and Oracle MERGE statements with the dialect configuration and the predicates of a
+ * {@link NativeSqlBuilder}. Values set with {@link #set(String, Object)} and the where clause are part of the statement;
+ * the values of {@link #columns(String...)} and {@link #keys(String...)} are bound per row and sent in JDBC batches,
+ * which the Oracle driver transfers as arrays, so loading many rows costs one round trip per batch instead of per row.
+ *
+ * <pre>
+ * NativeDmlBuilder.insertInto("tt").columns("id", "field").executeBatch(conn, rows);
+ * NativeDmlBuilder.update("tt").set("kind", "odd").where(sql -&gt; sql.in("id", ids, InListStrategy.COLLECTION)).execute(conn);
+ * NativeDmlBuilder.mergeInto("tt").keys("id").columns("field", "kind").executeBatch(conn, rows);
+ * </pre>
+ *
+ * A builder is not thread-safe. Transactions are left to the caller.
+ */
+public final class NativeDmlBuilder {
+
+	private static final int DEFAULT_BATCH_SIZE = 1000;
+	
+	private enum Kind {
+		INSERT, UPDATE, DELETE, MERGE
+	}
+	
+	private final NativeSqlFactory factory;
+	private final Configuration config;
+	private final Kind kind;
+	private final String tableName;
+	private final NativeSqlBuilder conditions;
+	private final Map<String, Expression<?>> values = new LinkedHashMap<>();
+	private final List<String> columns = new ArrayList<>();
+	private final List<String> keys = new ArrayList<>();
+	private final List<Predicate> where = new ArrayList<>();
+	private int batchSize = DEFAULT_BATCH_SIZE;
+	
+	private NativeDmlBuilder(NativeSqlFactory factory, Kind kind, String tableName) {
+		this.factory = factory;
+		this.config = factory.getConfiguration();
+		this.kind = kind;
+		this.tableName = tableName;
+		this.conditions = factory.create();
+	}
+	
+	/**
+	 * Uses the shared configuration of {@link NativeSqlFactory#DEFAULT}.
+	 *
+	 * <pre>insert into tableName (field1, field2) values (?, ?)</pre>
+	 *
+	 * @param tableName The table name with optional schema
+	 * @return NativeDmlBuilder
+	 */
+	public static NativeDmlBuilder insertInto(String tableName) {
+		return insertInto(NativeSqlFactory.DEFAULT, tableName);
+	}
+	
+	/**
+	 *
+	 * @param factory The factory with the dialect configuration
+	 * @param tableName The table name with optional schema
+	 * @return NativeDmlBuilder
+	 */
+	public static NativeDmlBuilder insertInto(NativeSqlFactory factory, String tableName) {
+		return new NativeDmlBuilder(factory, Kind.INSERT, tableName);
+	}
+	
+	/**
+	 * Uses the shared configuration of {@link NativeSqlFactory#DEFAULT}.
+	 *
+	 * <pre>update tableName set field1 = ? where key = ?</pre>
+	 *
+	 * @param tableName The table name with optional schema
+	 * @return NativeDmlBuilder
+	 */
+	public static NativeDmlBuilder update(String tableName) {
+		return update(NativeSqlFactory.DEFAULT, tableName);
+	}
+	
+	/**
+	 *
+	 * @param factory The factory with the dialect configuration
+	 * @param tableName The table name with optional schema
+	 * @return NativeDmlBuilder
+	 */
+	public static NativeDmlBuilder update(NativeSqlFactory factory, String tableName) {
+		return new NativeDmlBuilder(factory, Kind.UPDATE, tableName);
+	}
+	
+	/**
+	 * Uses the shared configuration of {@link NativeSqlFactory#DEFAULT}.
+	 *
+	 * <pre>delete from tableName where key = ?</pre>
+	 *
+	 * @param tableName The table name with optional schema
+	 * @return NativeDmlBuilder
+	 */
+	public static NativeDmlBuilder deleteFrom(String tableName) {
+		return deleteFrom(NativeSqlFactory.DEFAULT, tableName);
+	}
+	
+	/**
+	 *
+	 * @param factory The factory with the dialect configuration
+	 * @param tableName The table name with optional schema
+	 * @return NativeDmlBuilder
+	 */
+	public static NativeDmlBuilder deleteFrom(NativeSqlFactory factory, String tableName) {
+		return new NativeDmlBuilder(factory, Kind.DELETE, tableName);
+	}
+	
+	/**
+	 * An upsert in Oracle syntax, which H2 accepts as well: rows with existing keys are updated, the others inserted.
+	 * Uses the shared configuration of {@link NativeSqlFactory#DEFAULT}.
+	 *
+	 * The values of a row are bound where they are used, so the statement needs no typed source query.
+	 *
+	 * <pre>
+	 * merge into tableName t using dual on (t.key = ?)
+	 * when matched then update set t.field = ?
+	 * when not matched then insert (field, key) values (?, ?)
+	 * </pre>
+	 *
+	 * @param tableName The table name with optional schema
+	 * @return NativeDmlBuilder
+	 */
+	public static NativeDmlBuilder mergeInto(String tableName) {
+		return mergeInto(NativeSqlFactory.DEFAULT, tableName);
+	}
+	
+	/**
+	 *
+	 * @param factory The factory with the dialect configuration
+	 * @param tableName The table name with optional schema
+	 * @return NativeDmlBuilder
+	 */
+	public static NativeDmlBuilder mergeInto(NativeSqlFactory factory, String tableName) {
+		return new NativeDmlBuilder(factory, Kind.MERGE, tableName);
+	}
+	
+	/**
+	 * A value that is the same for all rows, rendered as literal or bound like the values of the factory's queries.
+	 *
+	 * <pre>set field = 'value'</pre>
+	 *
+	 * @param fieldName The column
+	 * @param value The value, null sets the column to null
+	 * @return NativeDmlBuilder
+	 */
+	public NativeDmlBuilder set(String fieldName, Object value) {
+		return set(fieldName, value != null ? Expressions.constant(value) : null);
+	}
+	
+	/**
+	 *
+	 * <pre>set field = sysdate</pre>
+	 *
+	 * @param fieldName The column
+	 * @param expr The expression, for example {@link NativeSqlBuilder#expr(String)}, null sets the column to null
+	 * @return NativeDmlBuilder
+	 */
+	public NativeDmlBuilder set(String fieldName, Expression<?> expr) {
+		if(kind == Kind.DELETE || kind == Kind.MERGE) {
+			throw new IllegalStateException("A delete or merge statement has no set values, use columns");
+		}
+		values.put(fieldName, expr != null ? expr : Expressions.nullExpression());
+		return this;
+	}
+	
+	/**
+	 * The columns bound per row: inserted, updated, or merged.
+	 *
+	 * @param fieldNames The columns in the order of the row values
+	 * @return NativeDmlBuilder
+	 */
+	public NativeDmlBuilder columns(String... fieldNames) {
+		if(kind == Kind.DELETE) {
+			throw new IllegalStateException("A delete statement has no columns, use keys");
+		}
+		columns.addAll(Arrays.asList(fieldNames));
+		return this;
+	}
+	
+	/**
+	 * The key columns bound per row, which identify the rows to update, delete or merge. The key values follow the
+	 * values of the {@link #columns(String...)} in a row.
+	 *
+	 * <pre>where key1 = ? and key2 = ?</pre>
+	 *
+	 * @param fieldNames The key columns
+	 * @return NativeDmlBuilder
+	 */
+	public NativeDmlBuilder keys(String... fieldNames) {
+		if(kind == Kind.INSERT) {
+			throw new IllegalStateException("An insert statement has no keys, use columns");
+		}
+		keys.addAll(Arrays.asList(fieldNames));
+		return this;
+	}
+	
+	/**
+	 * Restricts an update or delete, in addition to the keys.
+	 *
+	 * @param predicates A varargs array of predicates, for example of {@link NativeSqlBuilder#eq(String, String)}
+	 * @return NativeDmlBuilder
+	 */
+	public NativeDmlBuilder where(Predicate... predicates) {
+		if(kind == Kind.INSERT || kind == Kind.MERGE) {
+			throw new IllegalStateException("An insert or merge statement has no where clause");
+		}
+		conditions.register(predicates);
+		where.addAll(Arrays.asList(predicates));
+		return this;
+	}
+	
+	/**
+	 * A predicate created by the builder of this statement, for the predicates that register sub-queries or
+	 * temporary tables, which are loaded before the statement runs.
+	 *
+	 * <pre>where(sql -&gt; sql.in("id", ids, InListStrategy.TEMP_TABLE))</pre>
+	 *
+	 * @param predicate Creates the predicate
+	 * @return NativeDmlBuilder
+	 */
+	public NativeDmlBuilder where(Function<NativeSqlBuilder, Predicate> predicate) {
+		return where(predicate.apply(conditions));
+	}
+	
+	/**
+	 *
+	 * @param batchSize The number of rows sent per executeBatch, 1000 by default
+	 * @return NativeDmlBuilder
+	 */
+	public NativeDmlBuilder batchSize(int batchSize) {
+		if(batchSize < 1) {
+			throw new IllegalArgumentException("The batch size must be positive");
+		}
+		this.batchSize = batchSize;
+		return this;
+	}
+	
+	/**
+	 *
+	 * @return The columns bound per row
+	 */
+	public List<String> getColumns() {
+		return Collections.unmodifiableList(columns);
+	}
+	
+	/**
+	 *
+	 * @return The key columns bound per row
+	 */
+	public List<String> getKeys() {
+		return Collections.unmodifiableList(keys);
+	}
+	
+	/**
+	 * Returns the statement with the values of {@link #set(String, Object)} and the where clause as literals when the
+	 * factory renders literals. The values bound per row are always placeholders.
+	 */
+	@Override
+	public String toString() {
+		return render(config.getUseLiterals()).sql;
+	}
+	
+	/**
+	 *
+	 * @return The statement with placeholders for all values, as it is prepared
+	 */
+	public String getSQL() {
+		return render(false).sql;
+	}
+	
+	/**
+	 * Runs the statement once, for statements without values bound per row.
+	 *
+	 * @param conn The connection, it stays open
+	 * @return The number of rows inserted, updated or deleted
+	 * @throws SQLException
+	 */
+	public long execute(Connection conn) throws SQLException {
+		if(width() > 0) {
+			throw new IllegalStateException("The statement has values bound per row, use executeBatch");
+		}
+		Rendered statement = render(false);
+		conditions.loadTempTables(conn);
+		try(PreparedStatement stmt = conn.prepareStatement(statement.sql)) {
+			statement.bind(stmt, null);
+			return stmt.executeUpdate();
+		} finally {
+			conditions.clearTempTables(conn);
+		}
+	}
+	
+	/**
+	 * Like {@link #execute(Connection)}, on a connection of the DataSource.
+	 *
+	 * @param dataSource The DataSource
+	 * @return The number of rows inserted, updated or deleted
+	 * @throws SQLException
+	 */
+	public long execute(DataSource dataSource) throws SQLException {
+		try(Connection conn = dataSource.getConnection()) {
+			return execute(conn);
+		}
+	}
+	
+	/**
+	 * Prepares the statement once and sends the rows in batches of {@link #batchSize(int)}.
+	 *
+	 * @param conn The connection, it stays open
+	 * @param rows Per row the values of the {@link #columns(String...)}, followed by the values of the {@link #keys(String...)}
+	 * @return The number of affected rows the driver reported; rows reported as {@link Statement#SUCCESS_NO_INFO} are not counted
+	 * @throws SQLException
+	 */
+	public long executeBatch(Connection conn, Iterable<Object[]> rows) throws SQLException {
+		int width = width();
+		if(width == 0) {
+			throw new IllegalStateException("The statement has no values bound per row, use execute");
+		}
+		Rendered statement = render(false);
+		conditions.loadTempTables(conn);
+		long count = 0;
+		try(PreparedStatement stmt = conn.prepareStatement(statement.sql)) {
+			int batched = 0;
+			for(Object[] row : rows) {
+				if(row.length != width) {
+					throw new IllegalArgumentException("The row has " + row.length + " values, the statement " + width + " columns and keys");
+				}
+				statement.bind(stmt, row);
+				stmt.addBatch();
+				if(++batched == batchSize) {
+					count += sum(stmt.executeBatch());
+					batched = 0;
+				}
+			}
+			if(batched > 0) {
+				count += sum(stmt.executeBatch());
+			}
+		} finally {
+			conditions.clearTempTables(conn);
+		}
+		return count;
+	}
+	
+	/**
+	 * Like {@link #executeBatch(Connection, Iterable)}, on a connection of the DataSource.
+	 *
+	 * @param dataSource The DataSource
+	 * @param rows Per row the values of the columns, followed by the values of the keys
+	 * @return The number of affected rows the driver reported
+	 * @throws SQLException
+	 */
+	public long executeBatch(DataSource dataSource, Iterable<Object[]> rows) throws SQLException {
+		try(Connection conn = dataSource.getConnection()) {
+			return executeBatch(conn, rows);
+		}
+	}
+	
+	private static long sum(int[] counts) {
+		long sum = 0;
+		for(int count : counts) {
+			if(count > 0) {
+				sum += count;
+			}
+		}
+		return sum;
+	}
+	
+	private int width() {
+		return columns.size() + keys.size();
+	}
+	
+	private Rendered render(boolean useLiterals) {
+		Rendered statement = new Rendered(useLiterals);
+		switch(kind) {
+			case INSERT:
+				renderInsert(statement);
+				break;
+			case UPDATE:
+				renderUpdate(statement);
+				break;
+			case DELETE:
+				statement.append("delete from ").append(tableName);
+				renderWhere(statement);
+				break;
+			case MERGE:
+				renderMerge(statement);
+				break;
+		}
+		return statement.done();
+	}
+	
+	private void renderInsert(Rendered statement) {
+		if(width() == 0 && values.isEmpty()) {
+			throw new IllegalStateException("The insert has no columns");
+		}
+		statement.append("insert into ").append(tableName).append(" (");
+		String separator = "";
+		for(String column : columns) {
+			statement.append(separator).append(column);
+			separator = ", ";
+		}
+		for(String column : values.keySet()) {
+			statement.append(separator).append(column);
+			separator = ", ";
+		}
+		statement.append(") values (");
+		separator = "";
+		for(int i = 0; i < columns.size(); i++) {
+			statement.append(separator).placeholder(i, columns.get(i));
+			separator = ", ";
+		}
+		for(Expression<?> value : values.values()) {
+			statement.append(separator).handle(value);
+			separator = ", ";
+		}
+		statement.append(")");
+	}
+	
+	private void renderUpdate(Rendered statement) {
+		if(columns.isEmpty() && values.isEmpty()) {
+			throw new IllegalStateException("The update has no columns");
+		}
+		statement.append("update ").append(tableName).append(" set ");
+		String separator = "";
+		for(int i = 0; i < columns.size(); i++) {
+			statement.append(separator).append(columns.get(i)).append(" = ").placeholder(i, columns.get(i));
+			separator = ", ";
+		}
+		for(Map.Entry<String, Expression<?>> value : values.entrySet()) {
+			statement.append(separator).append(value.getKey()).append(" = ").handle(value.getValue());
+			separator = ", ";
+		}
+		renderWhere(statement);
+	}
+	
+	private void renderWhere(Rendered statement) {
+		Predicate predicate = ExpressionUtils.allOf(where);
+		if(keys.isEmpty() && predicate == null) {
+			return;
+		}
+		statement.append(" where ");
+		String separator = "";
+		for(int i = 0; i < keys.size(); i++) {
+			statement.append(separator).append(keys.get(i)).append(" = ").placeholder(columns.size() + i, keys.get(i));
+			separator = " and ";
+		}
+		if(predicate != null) {
+			boolean or = !keys.isEmpty() && predicate instanceof Operation && ((Operation<?>) predicate).getOperator() == Ops.OR;
+			statement.append(separator).append(or ? "(" : "").handle(predicate).append(or ? ")" : "");
+		}
+	}
+	
+	private void renderMerge(Rendered statement) {
+		if(keys.isEmpty()) {
+			throw new IllegalStateException("The merge has no keys");
+		}
+		statement.append("merge into ").append(tableName).append(" t using dual on (");
+		for(int i = 0; i < keys.size(); i++) {
+			statement.append(i == 0 ? "" : " and ").append("t.").append(keys.get(i)).append(" = ").placeholder(columns.size() + i, keys.get(i));
+		}
+		statement.append(")");
+		if(!columns.isEmpty()) {
+			statement.append(" when matched then update set ");
+			for(int i = 0; i < columns.size(); i++) {
+				statement.append(i == 0 ? "" : ", ").append("t.").append(columns.get(i)).append(" = ").placeholder(i, columns.get(i));
+			}
+		}
+		statement.append(" when not matched then insert (");
+		String separator = "";
+		for(String column : columns) {
+			statement.append(separator).append(column);
+			separator = ", ";
+		}
+		for(String key : keys) {
+			statement.append(separator).append(key);
+			separator = ", ";
+		}
+		statement.append(") values (");
+		for(int i = 0; i < width(); i++) {
+			statement.append(i == 0 ? "" : ", ").placeholder(i, i < columns.size() ? columns.get(i) : keys.get(i - columns.size()));
+		}
+		statement.append(")");
+	}
+	
+	/**
+	 * The JDBC type for a null value bound per row: the type of the column in the catalog of the factory, if it has one.
+	 */
+	private int nullType(String column) {
+		SchemaCatalog catalog = factory.getCatalog();
+		SchemaCatalog.Table table = catalog != null ? catalog.getTable(tableName) : null;
+		SchemaCatalog.Column catalogColumn = table != null ? table.getColumn(column) : null;
+		return catalogColumn != null ? catalogColumn.getJdbcType() : Types.NULL;
+	}
+	
+	/**
+	 * The statement and the order of its placeholders: the values of the statement are rendered by a serializer of the
+	 * factory's configuration, which collects their constants, and the values bound per row are placeholders in between.
+	 */
+	private final class Rendered {
+		
+		private final SQLSerializer serializer;
+		private final List<int[]> rowSlots = new ArrayList<>();
+		private final List<String> slotColumns = new ArrayList<>();
+		private String sql;
+		private List<Object> constants;
+		/**
+		 * Per placeholder the index of the row value, or -1 - the index of the constant.
+		 */
+		private int[] plan;
+		private int[] nullTypes;
+		
+		Rendered(boolean useLiterals) {
+			serializer = new SQLSerializer(config);
+			serializer.setUseLiterals(useLiterals);
+		}
+		
+		Rendered append(String text) {
+			serializer.append(text);
+			return this;
+		}
+		
+		Rendered handle(Expression<?> expr) {
+			serializer.handle(expr);
+			return this;
+		}
+		
+		Rendered placeholder(int rowIndex, String column) {
+			rowSlots.add(new int[] { rowIndex, serializer.getConstants().size() });
+			slotColumns.add(column);
+			serializer.append("?");
+			return this;
+		}
+		
+		Rendered done() {
+			sql = serializer.toString();
+			constants = serializer.getConstants();
+			plan = new int[constants.size() + rowSlots.size()];
+			nullTypes = new int[plan.length];
+			int constant = 0;
+			int position = 0;
+			for(int i = 0; i < rowSlots.size(); i++) {
+				int[] slot = rowSlots.get(i);
+				while(constant < slot[1]) {
+					plan[position++] = -1 - constant++;
+				}
+				nullTypes[position] = nullType(slotColumns.get(i));
+				plan[position++] = slot[0];
+			}
+			while(constant < constants.size()) {
+				plan[position++] = -1 - constant++;
+			}
+			return this;
+		}
+		
+		void bind(PreparedStatement stmt, Object[] row) throws SQLException {
+			for(int i = 0; i < plan.length; i++) {
+				Object value = plan[i] >= 0 ? row[plan[i]] : constants.get(-1 - plan[i]);
+				if(value == null) {
+					stmt.setNull(i + 1, nullTypes[i]);
+				} else {
+					config.set(stmt, null, i + 1, value);
+				}
+			}
+		}
+	}
+}
@@ -1,24 +1,68 @@
 package native;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.temporal.Temporal;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.sql.DataSource;
 
 import org.joda.time.DateTime;
 
+import com.querydsl.core.QueryFlag;
+import com.querydsl.core.QueryFlag.Position;
+import com.querydsl.core.QueryMetadata;
 import com.querydsl.core.Tuple;
 import com.querydsl.core.types.Expression;
 import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.Order;
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.PathMetadata;
+import com.querydsl.core.types.PathMetadataFactory;
 import com.querydsl.core.types.Predicate;
 import com.querydsl.core.types.SubQueryExpression;
 import com.querydsl.core.types.SubQueryExpressionImpl;
+import com.querydsl.core.types.Template;
+import com.querydsl.core.types.TemplateFactory;
 import com.querydsl.core.types.dsl.BooleanExpression;
 import com.querydsl.core.types.dsl.BooleanOperation;
+import com.querydsl.core.types.dsl.ComparableExpression;
 import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.core.types.dsl.NumberExpression;
 import com.querydsl.core.types.dsl.NumberPath;
+import com.querydsl.core.types.dsl.Param;
 import com.querydsl.core.types.dsl.PathBuilder;
 import com.querydsl.core.types.dsl.SimpleExpression;
 import com.querydsl.core.types.dsl.StringExpression;
@@ -26,24 +70,114 @@ import com.querydsl.core.types.dsl.StringPath;
 import com.querydsl.core.types.dsl.StringTemplate;
 import com.querydsl.core.types.dsl.Wildcard;
 import com.querydsl.sql.Configuration;
-import com.querydsl.sql.OracleTemplates;
 import com.querydsl.sql.SQLQuery;
-import com.querydsl.sql.SQLTemplates;
+import com.querydsl.sql.SQLSerializer;
 
 public class NativeSqlBuilder {
 
+	private static final String TIMESTAMP_FORMAT = "mm/dd/yyyy hh24:mi:ss.ff3";
+	private static final AtomicLong TEMP_TABLE_SET_IDS = new AtomicLong();
+	private static final ConcurrentMap<Integer, Template> ROW_TEMPLATES = new ConcurrentHashMap<>();
+	private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_$#]*");
+	private static final Set<String> PSEUDO_COLUMNS = new HashSet<>(Arrays.asList("rownum", "rowid", "level", "sysdate", "systimestamp", "user", "null"));
+
+	private final NativeSqlFactory factory;
+	private final Configuration config;
 	private final SQLQuery<?> q;
+	private final List<NativeSqlBuilder> subQueries;
+	private final List<TempTableLoad> tempTableLoads;
+	private final Map<String, String> declaredAliases = new LinkedHashMap<>();
+	private final Set<String> tables = new HashSet<>();
+	private final List<Hint> hints = new ArrayList<>();
+	private final Map<String, NativeSqlBuilder> withQueries = new LinkedHashMap<>();
+	private final Map<String, List<Hint>> withHints = new LinkedHashMap<>();
+	private int subQueryUses;
+	private QueryFlag hintFlag;
+	private int fetchSize;
+	private int queryTimeout;
+	private ResultCache cache;
+	private Duration cacheTtl;
+	private long modCount;
+	// immutable holders, so a builder that no longer changes can be rendered by several threads, see ImmutableSqlBuilder
+	private Memo<String> sql;
+	private Memo<Long> fingerprint;
+	private Memo<String> normalizedSql;
+	private Memo<List<LintWarning>> lintWarnings;
 	
-	private NativeSqlBuilder() {
-		SQLTemplates tpl = new OracleTemplates(false); // Oracle doesn't recommend quoted identifiers
-		Configuration config = new Configuration(tpl);
-		config.setUseLiterals(true);
-		SQLQuery<?> q = new SQLQuery<>(config);
-		this.q = q;
+	NativeSqlBuilder(NativeSqlFactory factory) {
+		this(factory, new SQLQuery<>(factory.getConfiguration()), new ArrayList<>(), new ArrayList<>());
 	}
 	
-	private NativeSqlBuilder(SQLQuery<?> q) {
+	private NativeSqlBuilder(NativeSqlFactory factory, SQLQuery<?> q, List<NativeSqlBuilder> subQueries, List<TempTableLoad> tempTableLoads) {
+		this.factory = factory;
+		this.config = factory.getConfiguration();
 		this.q = q;
+		this.subQueries = subQueries;
+		this.tempTableLoads = tempTableLoads;
+		this.fetchSize = factory.getFetchSize();
+	}
+	
+	/**
+	 * Invalidates the rendered SQL, must be called by every method that modifies the query.
+	 */
+	private NativeSqlBuilder changed() {
+		modCount++;
+		return this;
+	}
+	
+	/**
+	 * Registers a sub-query once, so that changes to it also invalidate the rendered SQL of this builder.
+	 */
+	private SQLQuery<?> use(NativeSqlBuilder subQueryBuilder) {
+		if(!isSubQuery(subQueryBuilder)) {
+			subQueries.add(subQueryBuilder);
+		}
+		subQueryUses++;
+		changed();
+		return subQueryBuilder.getSQLQuery();
+	}
+	
+	private boolean isSubQuery(NativeSqlBuilder subQueryBuilder) {
+		for(NativeSqlBuilder subQuery : subQueries) {
+			if(subQuery == subQueryBuilder) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Registers the sub-queries of expressions that are added to this query. The predicates with a sub-query may
+	 * be created by any builder, for example by the sub-query itself or by an inner query.
+	 */
+	NativeSqlBuilder register(Expression<?>... exprs) {
+		for(NativeSqlBuilder subQuery : SubQueryCollector.collect(exprs)) {
+			use(subQuery);
+		}
+		return this;
+	}
+	
+	private static Expression<?>[] targets(OrderSpecifier<?>[] orders) {
+		Expression<?>[] targets = new Expression<?>[orders.length];
+		for(int i = 0; i < orders.length; i++) {
+			targets[i] = orders[i].getTarget();
+		}
+		return targets;
+	}
+	
+	List<NativeSqlBuilder> getSubQueries() {
+		return subQueries;
+	}
+	
+	/**
+	 * The counters only grow, so the sum changes whenever this builder or one of its sub-queries changes.
+	 */
+	private long version() {
+		long version = modCount;
+		for(NativeSqlBuilder subQuery : subQueries) {
+			version += subQuery.version();
+		}
+		return version;
 	}
 	
 	/**
@@ -52,16 +186,55 @@ public class NativeSqlBuilder {
 	@Override
 	public NativeSqlBuilder clone() {
 		SQLQuery<?> clonedQ = this.q.clone();
-		NativeSqlBuilder clone = new NativeSqlBuilder(clonedQ);
+		NativeSqlBuilder clone = new NativeSqlBuilder(factory, clonedQ, new ArrayList<>(subQueries), new ArrayList<>(tempTableLoads));
+		clone.fetchSize = fetchSize;
+		clone.subQueryUses = subQueryUses;
+		clone.queryTimeout = queryTimeout;
+		clone.declaredAliases.putAll(declaredAliases);
+		clone.tables.addAll(tables);
+		clone.cache = cache;
+		clone.cacheTtl = cacheTtl;
+		clone.hints.addAll(hints);
+		clone.withQueries.putAll(withQueries);
+		clone.withHints.putAll(withHints);
+		clone.hintFlag = hintFlag;
+		QueryListener listener = factory.getListener();
+		if(listener != null) {
+			listener.cloned(this, clone);
+		}
 		return clone;
 	}
 	
 	/**
+	 * Uses the shared configuration of {@link NativeSqlFactory#DEFAULT}.
 	 * 
 	 * @return A NativeSqlBuilder instance
 	 */
 	public static NativeSqlBuilder create() {
-		return new NativeSqlBuilder();
+		return NativeSqlFactory.DEFAULT.create();
+	}
+	
+	/**
+	 * 
+	 * @param factory The factory with the dialect configuration
+	 * @return A NativeSqlBuilder instance
+	 */
+	public static NativeSqlBuilder create(NativeSqlFactory factory) {
+		return factory.create();
+	}
+	
+	/**
+	 * Uses the shared configuration of {@link NativeSqlFactory#of(SqlDialect)}.
+	 * 
+	 * @param dialect The dialect, for example {@link StandardDialect#ORACLE_12}
+	 * @return A NativeSqlBuilder instance
+	 */
+	public static NativeSqlBuilder create(SqlDialect dialect) {
+		return NativeSqlFactory.of(dialect).create();
+	}
+	
+	NativeSqlFactory getFactory() {
+		return factory;
 	}
 	
 	protected SQLQuery<?> getSQLQuery() {
@@ -69,275 +242,1540 @@ public class NativeSqlBuilder {
 	}
 
 	/**
-	 * Returns the SQL as String.
+	 * Returns the SQL as String. The result is cached until the builder or one of its sub-queries is changed.
 	 */
 	@Override
 	public String toString() {
-		return q.getSQL().getSQL().replace('\n', ' ');
+		long version = version();
+		Memo<String> memo = sql;
+		if(memo == null || memo.version != version) {
+			QueryListener listener = factory.getListener();
+			long start = listener != null ? System.nanoTime() : 0L;
+			// replace() returns the same instance when the templates already render a single line
+			memo = new Memo<>(version, serialize(config.getUseLiterals()).toString().replace('\n', ' '));
+			sql = memo;
+			if(listener != null) {
+				rendered(listener, memo.value, start);
+			}
+		}
+		return memo.value;
+	}
+	
+	private void rendered(QueryListener listener, String sql, long start) {
+		long nanos = System.nanoTime() - start;
+		listener.rendered(new RenderEvent(this, sql, nanos, InValueCounter.INSTANCE.count(q.getMetadata()), subQueryDepth(), fingerprint()));
+	}
+	
+	private int subQueryDepth() {
+		int depth = 0;
+		for(NativeSqlBuilder subQuery : subQueries) {
+			depth = Math.max(depth, subQuery.subQueryDepth() + 1);
+		}
+		return depth;
+	}
+	
+	private SQLSerializer serialize(boolean useLiterals) {
+		return serialize(useLiterals, false);
+	}
+	
+	private SQLSerializer serialize(boolean useLiterals, boolean normalize) {
+		SQLSerializer serializer;
+		if(withQueries.isEmpty() && countSubQueries() < 2 && !hasWithQueries()) {
+			serializer = normalize ? new CteSerializer(config, Collections.emptyList(), true) : new SQLSerializer(config);
+		} else {
+			List<CteSerializer.Cte> declared = new ArrayList<>();
+			collectWithQueries(declared);
+			serializer = new CteSerializer(config, CteSerializer.plan(declared, q.getMetadata()), normalize);
+		}
+		serializer.setUseLiterals(useLiterals);
+		serializer.serialize(q.getMetadata(), false);
+		return serializer;
 	}
 	
 	/**
-	 * 
-	 *  <pre>left join joinTableName</pre>
-	 * 
-	 * @param joinTableName The table name to join
-	 * @return NativeSqlBuilder
+	 * Counts every use, a sub-query that is used twice is factored out into the WITH clause.
 	 */
-	public NativeSqlBuilder leftJoin(String joinTableName) {
-		PathBuilder<String> join = new PathBuilder<>(String.class, joinTableName);
-		q.leftJoin(join);
-		return this;
+	private int countSubQueries() {
+		int count = subQueryUses;
+		for(NativeSqlBuilder subQuery : subQueries) {
+			count += subQuery.countSubQueries();
+		}
+		return count;
+	}
+	
+	private boolean hasWithQueries() {
+		for(NativeSqlBuilder subQuery : subQueries) {
+			if(!subQuery.withQueries.isEmpty() || subQuery.hasWithQueries()) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * The WITH clause is always rendered by the outermost query, so the named sub-queries of sub-queries move up.
+	 * A name declared by several of them must name the same query.
+	 */
+	private void collectWithQueries(List<CteSerializer.Cte> declared) {
+		for(NativeSqlBuilder subQuery : subQueries) {
+			subQuery.collectWithQueries(declared);
+		}
+		for(Map.Entry<String, NativeSqlBuilder> with : withQueries.entrySet()) {
+			NativeSqlBuilder subQuery = with.getValue();
+			List<Hint> hints = withHints.get(with.getKey());
+			QueryMetadata metadata = subQuery.getSQLQuery().getMetadata();
+			CteSerializer.Cte cte = new CteSerializer.Cte(with.getKey(), metadata, hints.isEmpty() ? metadata : subQuery.hinted(hints));
+			if(isDeclared(declared, cte)) {
+				continue;
+			}
+			declared.add(cte);
+		}
+	}
+	
+	private static boolean isDeclared(List<CteSerializer.Cte> declared, CteSerializer.Cte cte) {
+		for(CteSerializer.Cte other : declared) {
+			if(other.getName().equalsIgnoreCase(cte.getName())) {
+				if(!other.isSameQuery(cte)) {
+					throw new IllegalStateException("The sub-queries declare " + cte.getName() + " with different queries");
+				}
+				return true;
+			}
+		}
+		return false;
 	}
 	
 	/**
 	 * 
-	 *  <pre>left join joinTableName</pre>
-	 * 
-	 * @param joinTableName The table name to join
-	 * @return NativeSqlBuilder
+	 * @return A copy of the metadata with the hints of this query and the extra hints
 	 */
-	public NativeSqlBuilder leftJoin(String joinTableName, String aliasName) {
-		PathBuilder<String> join = new PathBuilder<>(String.class, joinTableName);
-		StringPath alias = Expressions.stringPath(aliasName);
-		q.leftJoin(join, alias);
-		return this;
+	private QueryMetadata hinted(List<Hint> extra) {
+		QueryMetadata metadata = q.getMetadata().clone();
+		if(hintFlag != null) {
+			metadata.removeFlag(hintFlag);
+		}
+		List<Hint> all = new ArrayList<>(hints);
+		all.addAll(extra);
+		metadata.addFlag(hintFlag(all));
+		return metadata;
+	}
+	
+	private static QueryFlag hintFlag(List<Hint> hints) {
+		return new QueryFlag(Position.AFTER_SELECT, hints.stream().map(Hint::toString).collect(Collectors.joining(" ", "/*+ ", " */ ")));
 	}
 	
 	/**
+	 * Declares a named sub-query in the WITH clause, which is rendered once at the start of the query. The query
+	 * refers to it by name, for example with {@link #from(String, String)}, and every use of the same builder, or of
+	 * a builder with the same query and values, in from, in or exists is rendered as a reference to the name as well.
+	 * Sub-queries that are used more than once are factored out into the WITH clause without a declaration, as cte_1,
+	 * cte_2 and so on, unless they refer to tables of the outer query.
 	 * 
-	 * <pre>on table1.leftFieldName = table2.rightFieldName </pre>
+	 * <pre>with recent as (select /*+ MATERIALIZE *&#47; id from orders where created &gt; date '2018-01-01') select ... from recent r</pre>
 	 * 
-	 * @param leftFieldName The left-hand side field name with optional table name, for example "tableName.fieldName"
-	 * @param rightFieldName The right-hand side field name with optional table name, for example "tableName.fieldName"
+	 * @param name The name of the sub-query
+	 * @param subQueryBuilder The sub-query
+	 * @param hints Hints rendered in the WITH clause, for example {@link Hint#materialize()} or {@link Hint#inline()} 
+	 * to control whether Oracle evaluates it once into a temporary table or merges it into the query at every use. 
+	 * They are kept with the declaration, the builder of the sub-query doesn't change.
 	 * @return NativeSqlBuilder
 	 */
-	public NativeSqlBuilder on(String leftFieldName, String rightFieldName) {
-		BooleanExpression joined = getPath(leftFieldName).eq(getPath(rightFieldName));
-		q.on(joined);
-		return this;
+	public NativeSqlBuilder with(String name, NativeSqlBuilder subQueryBuilder, Hint... hints) {
+		if(isWithQuery(name)) {
+			throw new IllegalArgumentException(name + " is already declared");
+		}
+		subQueryBuilder.checkHints(hints);
+		use(subQueryBuilder);
+		withQueries.put(name, subQueryBuilder);
+		withHints.put(name, Collections.unmodifiableList(new ArrayList<>(Arrays.asList(hints))));
+		return changed();
 	}
 	
-	private NumberPath<Integer> getIntegerPath(String fieldName) {
-		Optional<StringPath> parent = getParent(fieldName);
-		String name = getFieldName(fieldName);
-		NumberPath<Integer> path = parent.isPresent() ? Expressions.numberPath(Integer.class, parent.get(), name) : Expressions.numberPath(Integer.class, name);
-		return path;
+	private boolean isWithQuery(String name) {
+		for(String with : withQueries.keySet()) {
+			if(with.equalsIgnoreCase(name)) {
+				return true;
+			}
+		}
+		return false;
 	}
 	
-	private NumberPath<Long> getLongPath(String fieldName) {
-		Optional<StringPath> parent = getParent(fieldName);
-		String name = getFieldName(fieldName);
-		NumberPath<Long> path = parent.isPresent() ? Expressions.numberPath(Long.class, parent.get(), name) : Expressions.numberPath(Long.class, name);
-		return path;
+	/**
+	 * A stable 64 bit hash of the structure of the query and its sub-queries, without their values. Queries that only 
+	 * differ in their values or IN-list lengths have the same fingerprint, so it can be used to group metrics or as 
+	 * a cache key. It is computed from the query metadata without serializing it, and cached until the builder changes.
+	 * 
+	 * @return The fingerprint
+	 */
+	public long fingerprint() {
+		long version = version();
+		Memo<Long> memo = fingerprint;
+		if(memo == null || memo.version != version) {
+			long hash = QueryHasher.hash(q.getMetadata());
+			for(Map.Entry<String, NativeSqlBuilder> with : withQueries.entrySet()) {
+				hash = hash * 31 + with.getKey().hashCode() * 17 + with.getValue().fingerprint();
+				hash = hash * 31 + withHints.get(with.getKey()).toString().hashCode();
+			}
+			memo = new Memo<>(version, hash);
+			fingerprint = memo;
+		}
+		return memo.value;
 	}
 	
-	private StringPath getPath(String fieldName) {
-		Optional<StringPath> parent = getParent(fieldName);
-		String name = getFieldName(fieldName);
-		StringPath path = parent.isPresent() ? Expressions.stringPath(parent.get(), name) : Expressions.stringPath(name);
-		return path;
-	}
-	
-	private Optional<StringPath> getParent(String fieldName) {
-		if(fieldName.indexOf(".") > 0) {
-			String[] paths = fieldName.split("\\.");
-			if(paths.length == 2) {
-				StringPath parent = Expressions.stringPath(paths[0]);
-				return Optional.of(parent);
-			}
+	/**
+	 * The SQL with bind variables, and IN lists collapsed to one bind variable. Queries with the same 
+	 * {@link #fingerprint()} have the same normalized SQL. The values of the IN lists aren't serialized, and the 
+	 * result is cached until the builder changes.
+	 * 
+	 * <pre>select field from tt where kind = ? and field in (?)</pre>
+	 * 
+	 * @return The normalized SQL
+	 */
+	public String normalizedSql() {
+		long version = version();
+		Memo<String> memo = normalizedSql;
+		if(memo == null || memo.version != version) {
+			memo = new Memo<>(version, serialize(false, true).toString().replace('\n', ' '));
+			normalizedSql = memo;
 		}
-		return Optional.empty();
+		return memo.value;
 	}
 	
-	private String getFieldName(String fieldName) {
-		if(fieldName.indexOf(".") > 0) {
-			String[] paths = fieldName.split("\\.");
-			if(paths.length == 2) {
-				return paths[1];
-			}
+	/**
+	 * Appends the SQL to the buffer. SQL that has been rendered before is appended from the cache. Otherwise the query is
+	 * serialized into one String, as QueryDSL only hands it out that way, which is appended line by line: this saves the 
+	 * copy of {@link #toString()} that replaces the line breaks, and the String isn't cached.
+	 * 
+	 * @param out The buffer to append to
+	 * @throws IOException If the Appendable throws
+	 */
+	public void appendTo(Appendable out) throws IOException {
+		Memo<String> memo = sql;
+		if(memo != null && memo.version == version()) {
+			out.append(memo.value);
+			return;
+		}
+		QueryListener listener = factory.getListener();
+		long begin = listener != null ? System.nanoTime() : 0L;
+		String serialized = serialize(config.getUseLiterals()).toString();
+		if(listener != null) {
+			rendered(listener, serialized, begin);
 		}
-		return fieldName;
+		int start = 0;
+		for(int end = serialized.indexOf('\n'); end >= 0; end = serialized.indexOf('\n', start)) {
+			out.append(serialized, start, end).append(' ');
+			start = end + 1;
+		}
+		out.append(serialized, start, serialized.length());
 	}
 	
 	/**
+	 * Appends the SQL to the buffer, see {@link #appendTo(Appendable)}.
 	 * 
-	 * <pre>select field1, field2, table.field3</pre>
+	 * @param out The buffer to append to
+	 */
+	public void appendTo(StringBuilder out) {
+		try {
+			appendTo((Appendable) out);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	/**
+	 * Returns the SQL with bind variables instead of literals, together with the ordered parameters.
 	 * 
-	 * @param fieldNames A varargs arrays of field names with optional table names
-	 * @return NativeSqlBuilder
+	 * <pre>select field from tt where field = ?</pre>
+	 * 
+	 * @return BoundSql
 	 */
-	public NativeSqlBuilder select(String... fieldNames) {
-		List<StringPath> fields = makeFields(Arrays.asList(fieldNames));
-		q.select(fields.toArray(new StringPath[fields.size()]));
-		return this;
+	public BoundSql toBoundSql() {
+		return toBoundSql(BindStyle.QUESTION_MARK);
 	}
 	
 	/**
-	 * Select a list of expressions.
+	 * Returns the SQL with bind variables instead of literals, together with the ordered parameters.
 	 * 
-	 * <pre>select(sql.expr('initcap(columns1)'), sql.expr('lower(column2)'))</pre>
+	 * <pre>select field from tt where field = :1</pre>
 	 * 
-	 * @param expressions The Expressions
-	 * @return NativeSqlBuilder
+	 * @param style The placeholder style
+	 * @return BoundSql
 	 */
-	public NativeSqlBuilder select(StringExpression... expressions) {
-		q.select(expressions);
-		return this;
+	public BoundSql toBoundSql(BindStyle style) {
+		QueryListener listener = factory.getListener();
+		long start = listener != null ? System.nanoTime() : 0L;
+		SQLSerializer serializer = serialize(false);
+		String sql = serializer.toString().replace('\n', ' ');
+		if(listener != null) {
+			rendered(listener, sql, start);
+		}
+		return BoundSql.of(config, sql, serializer.getConstants(), style);
 	}
 	
 	/**
-	 * Select an expression and assign an alias.
-	 * <pre>select(sql.expr('initcap(column)'), 'capitalized')</pre>
+	 * Compiles this builder into an immutable template. Values are passed in through named placeholders 
+	 * created with {@link #param(String)}, {@link #param(String, Class)} or {@link #listParam(String)}.
 	 * 
-	 * @param field The function
-	 * @param aliasName The alias name
-	 * @return NativeSqlBuilder
+	 * <pre>select field from tt where field = :value</pre>
+	 * 
+	 * @return NativeSqlTemplate
 	 */
-	public NativeSqlBuilder select(StringExpression expr, String aliasName) {
-		q.select(expr.as(aliasName));
-		return this;
+	public NativeSqlTemplate compile() {
+		lint();
+		QueryListener listener = factory.getListener();
+		long start = listener != null ? System.nanoTime() : 0L;
+		SQLSerializer serializer = serialize(true);
+		String sql = serializer.toString().replace('\n', ' ');
+		if(listener != null) {
+			rendered(listener, sql, start);
+		}
+		return NativeSqlTemplate.of(config, sql, serializer.getConstants());
 	}
 	
-	private List<StringPath> makeFields(List<String> fieldNames) {
-		List<StringPath> fields = fieldNames.stream().map(f -> getPath(f)).collect(Collectors.toList());
-		return fields;
+	/**
+	 * A named placeholder for a String value, to be used in a {@link #compile()}d template.
+	 * 
+	 * <pre>eq("field", param("value"))</pre>
+	 * 
+	 * @param name The name of the placeholder
+	 * @return Param
+	 */
+	public Param<String> param(String name) {
+		return new Param<>(String.class, name);
 	}
 	
 	/**
+	 * A named placeholder for a typed value, to be used in a {@link #compile()}d template.
 	 * 
-	 * <pre>select *</pre>
+	 * <pre>eq("field", param("value", Integer.class))</pre>
 	 * 
-	 * @return NativeSqlBuilder
+	 * @param name The name of the placeholder
+	 * @param type The type of the value
+	 * @return Param
 	 */
-	public NativeSqlBuilder selectAll() {
-		q.select(Wildcard.all);
-		return this;
+	public <T> Param<T> param(String name, Class<T> type) {
+		return new Param<>(type, name);
 	}
 	
 	/**
+	 * A named placeholder for a list of values, to be used in a {@link #compile()}d template.
 	 * 
-	 * <pre>from tableName</pre>
+	 * <pre>in("field", listParam("values"))</pre>
 	 * 
-	 * @param tableName The table name
+	 * @param name The name of the placeholder
+	 * @return Param
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public Param<Collection<?>> listParam(String name) {
+		return new Param<Collection<?>>((Class) Collection.class, name);
+	}
+	
+	/**
+	 * Sets the number of rows fetched per round trip by {@link #stream(Connection, RowMapper)} and {@link #iterate(Connection, RowMapper)}.
+	 * 
+	 * @param fetchSize The fetch size, 0 for the driver default
 	 * @return NativeSqlBuilder
 	 */
-	public NativeSqlBuilder from(String tableName) {
-		StringPath table = Expressions.stringPath(tableName);
-		q.from(table);
+	public NativeSqlBuilder fetchSize(int fetchSize) {
+		this.fetchSize = fetchSize;
 		return this;
 	}
 	
 	/**
-	 * <pre>from(sql, 'anAlias')</pre>
+	 * Sets the query timeout of the statements run by this builder, see {@link Statement#setQueryTimeout(int)}.
 	 * 
-	 * @param subQueryBuilder The sub-query
-	 * @param aliasName The alias to reference the results of the sub-query
+	 * @param timeout The timeout, rounded up to whole seconds, or {@link Duration#ZERO} for no timeout
 	 * @return NativeSqlBuilder
 	 */
-	public NativeSqlBuilder from(NativeSqlBuilder subQueryBuilder, String aliasName) {
-		SQLQuery<?> subQuery = subQueryBuilder.getSQLQuery();
-		SubQueryExpression<String> subQueryExpression = new SubQueryExpressionImpl<String>(String.class,subQuery.getMetadata());
-		StringPath alias = Expressions.stringPath(aliasName);
-		q.from(subQueryExpression, alias);
+	public NativeSqlBuilder queryTimeout(Duration timeout) {
+		this.queryTimeout = timeoutSeconds(timeout);
 		return this;
 	}
 	
+	static int timeoutSeconds(Duration timeout) {
+		long seconds = timeout.getSeconds() + (timeout.getNano() > 0 ? 1 : 0);
+		return (int) Math.min(seconds, Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * Runs the query with bind variables on a forward-only, read-only cursor and maps the rows lazily while they are pulled.
+	 * The caller must close the iterator, unless it reads it to the end.
+	 * 
+	 * <pre>
+	 * try(ResultSetIterator&lt;String&gt; rows = sql.iterate(connection, rs -&gt; rs.getString(1))) {
+	 *     ...
+	 * }
+	 * </pre>
+	 * 
+	 * @param conn The connection, it stays open
+	 * @param mapper Maps a row
+	 * @return ResultSetIterator
+	 * @throws SQLException
+	 */
+	public <T> ResultSetIterator<T> iterate(Connection conn, RowMapper<T> mapper) throws SQLException {
+		return execute(conn, null, mapper);
+	}
+	
 	/**
+	 * Like {@link #iterate(Connection, RowMapper)}, on a connection of the DataSource that is closed together with the iterator.
 	 * 
-	 * <pre>from tableName alias</pre>
+	 * @param dataSource The DataSource
+	 * @param mapper Maps a row
+	 * @return ResultSetIterator
+	 * @throws SQLException
+	 */
+	public <T> ResultSetIterator<T> iterate(DataSource dataSource, RowMapper<T> mapper) throws SQLException {
+		Connection conn = dataSource.getConnection();
+		try {
+			return execute(conn, conn, mapper);
+		} catch (SQLException | RuntimeException e) {
+			conn.close();
+			throw e;
+		}
+	}
+	
+	/**
+	 * Runs the query like {@link #iterate(Connection, RowMapper)}. The caller must close the stream.
+	 * 
+	 * <pre>
+	 * try(Stream&lt;String&gt; rows = sql.stream(connection, rs -&gt; rs.getString(1))) {
+	 *     ...
+	 * }
+	 * </pre>
+	 * 
+	 * @param conn The connection, it stays open
+	 * @param mapper Maps a row
+	 * @return Stream
+	 * @throws SQLException
+	 */
+	public <T> Stream<T> stream(Connection conn, RowMapper<T> mapper) throws SQLException {
+		return iterate(conn, mapper).stream();
+	}
+	
+	/**
+	 * Runs the query like {@link #iterate(DataSource, RowMapper)}. Closing the stream closes the connection.
 	 * 
-	 * @param tableName The table name
-	 * @param alias The table alias
-	 * @return NativeSqlBuilder
+	 * @param dataSource The DataSource
+	 * @param mapper Maps a row
+	 * @return Stream
+	 * @throws SQLException
 	 */
-	public NativeSqlBuilder from(String tableName, String aliasName) {
-		StringPath table = Expressions.stringPath(tableName);
-		q.from(table.as(aliasName));
-		return this;
+	public <T> Stream<T> stream(DataSource dataSource, RowMapper<T> mapper) throws SQLException {
+		return iterate(dataSource, mapper).stream();
 	}
 	
 	/**
+	 * Caches the results of {@link #list(Connection, RowMapper)} and {@link #list(DataSource, RowMapper)} with the time to 
+	 * live of the cache. The results of the query can be invalidated with {@link ResultCache#invalidate(String)} for 
+	 * the tables of {@link #getTables()}.
 	 * 
-	 * <pre>where field = 'value'</pre>
+	 * @param cache The cache
+	 * @return NativeSqlBuilder
+	 */
+	public NativeSqlBuilder cache(ResultCache cache) {
+		return cache(cache, null);
+	}
+	
+	/**
+	 * Like {@link #cache(ResultCache)}, with the time to live of the results of this query.
 	 * 
-	 * @param predicates A varargs array of predicates for the where clause
+	 * @param cache The cache
+	 * @param ttl The time to live, or null for the default of the cache
 	 * @return NativeSqlBuilder
 	 */
-	public NativeSqlBuilder where(Predicate... predicates) {
-		q.where(predicates);
+	public NativeSqlBuilder cache(ResultCache cache, Duration ttl) {
+		this.cache = cache;
+		this.cacheTtl = ttl;
 		return this;
 	}
 	
 	/**
+	 * Runs the query and reads all rows into an unmodifiable list, or returns the rows from the {@link #cache(ResultCache)}.
+	 * Cached rows are shared between callers, so the mapper should produce immutable rows.
 	 * 
-	 * <pre>tableName.fieldName = 'value'</pre>
+	 * @param conn The connection, it stays open
+	 * @param mapper Maps a row
+	 * @return The rows
+	 * @throws SQLException
+	 */
+	public <T> List<T> list(Connection conn, RowMapper<T> mapper) throws SQLException {
+		return list(conn, null, mapper, queryTimeout, null);
+	}
+	
+	/**
+	 * Like {@link #list(Connection, RowMapper)}, a connection of the DataSource is only taken when the rows aren't cached.
 	 * 
-	 * @param fieldName The field name with optional table name, for example "tableName.fieldName"
-	 * @param value The String value to match
-	 * @return BooleanExpression
+	 * @param dataSource The DataSource
+	 * @param mapper Maps a row
+	 * @return The rows
+	 * @throws SQLException
 	 */
-	public BooleanExpression eq(String fieldName, String value) {
-		return getPath(fieldName).eq(value);
+	public <T> List<T> list(DataSource dataSource, RowMapper<T> mapper) throws SQLException {
+		return list(null, dataSource, mapper, queryTimeout, null);
+	}
+	
+	/**
+	 * Used by {@link AsyncQueryExecutor}, which sets its own timeout and cancels the statement.
+	 * 
+	 * @param onPrepared Receives the statement before it is executed
+	 */
+	<T> List<T> list(DataSource dataSource, RowMapper<T> mapper, int queryTimeout, Consumer<Statement> onPrepared) throws SQLException {
+		return list(null, dataSource, mapper, queryTimeout, onPrepared);
+	}
+	
+	private <T> List<T> list(Connection conn, DataSource dataSource, RowMapper<T> mapper, int queryTimeout, Consumer<Statement> onPrepared) throws SQLException {
+		lint();
+		QueryListener listener = factory.getListener();
+		long start = listener != null ? System.nanoTime() : 0L;
+		BoundSql boundSql = toBoundSql();
+		ResultCache.Key key = null;
+		Set<String> tables = null;
+		long generation = 0L;
+		if(cache != null) {
+			key = new ResultCache.Key(fingerprint(), boundSql, mapper);
+			tables = getTables();
+			generation = cache.generation(tables);
+			List<T> cached = cache.get(key);
+			if(cached != null) {
+				return cached;
+			}
+		}
+		List<T> rows = new ArrayList<>();
+		if(conn != null) {
+			readAll(execute(conn, null, mapper, boundSql, start, queryTimeout, onPrepared), rows);
+		} else {
+			Connection owned = dataSource.getConnection();
+			try {
+				readAll(execute(owned, owned, mapper, boundSql, start, queryTimeout, onPrepared), rows);
+			} catch (SQLException | RuntimeException e) {
+				owned.close();
+				throw e;
+			}
+		}
+		List<T> result = Collections.unmodifiableList(rows);
+		if(key != null) {
+			cache.put(key, result, tables, cacheTtl, generation);
+		}
+		return result;
+	}
+	
+	/**
+	 * In strict mode, fails the query before it runs. The warnings are kept until the query changes.
+	 */
+	private void lint() {
+		LintWarning.Severity severity = factory.getStrictSeverity();
+		if(severity == null) {
+			return;
+		}
+		long version = version();
+		Memo<List<LintWarning>> memo = lintWarnings;
+		if(memo == null || memo.version != version) {
+			memo = new Memo<>(version, QueryLinter.lint(this));
+			lintWarnings = memo;
+		}
+		QueryLinter.check(memo.value, severity);
+	}
+	
+	private static <T> void readAll(ResultSetIterator<T> it, List<T> rows) {
+		try(ResultSetIterator<T> rowIterator = it) {
+			while(rowIterator.hasNext()) {
+				rows.add(rowIterator.next());
+			}
+		}
+	}
+	
+	/**
+	 * The tables this query and its sub-queries read, as declared with from, innerJoin and leftJoin. Tables with a 
+	 * schema are listed with and without the schema.
+	 * 
+	 * @return The table names in lower case
+	 */
+	public Set<String> getTables() {
+		Set<String> all = new HashSet<>(tables);
+		for(NativeSqlBuilder subQuery : subQueries) {
+			all.addAll(subQuery.getTables());
+		}
+		return all;
+	}
+	
+	private <T> ResultSetIterator<T> execute(Connection conn, Connection ownedConnection, RowMapper<T> mapper) throws SQLException {
+		lint();
+		QueryListener listener = factory.getListener();
+		long start = listener != null ? System.nanoTime() : 0L;
+		return execute(conn, ownedConnection, mapper, toBoundSql(), start, queryTimeout, null);
+	}
+	
+	private <T> ResultSetIterator<T> execute(Connection conn, Connection ownedConnection, RowMapper<T> mapper, BoundSql boundSql, long start, 
+			int queryTimeout, Consumer<Statement> onPrepared) throws SQLException {
+		QueryListener listener = factory.getListener();
+		List<TempTableLoad> loads = getTempTableLoads();
+		PreparedStatement stmt;
+		try {
+			TempTableLoad.load(conn, loads);
+			stmt = boundSql.prepare(conn, fetchSize);
+		} catch (SQLException | RuntimeException e) {
+			TempTableLoad.clear(conn, loads, e);
+			throw e;
+		}
+		try {
+			if(queryTimeout > 0) {
+				stmt.setQueryTimeout(queryTimeout);
+			}
+			if(onPrepared != null) {
+				onPrepared.accept(stmt);
+			}
+			if(listener == null) {
+				return new ResultSetIterator<>(config, ownedConnection, stmt, stmt.executeQuery(), mapper, loads);
+			}
+			long prepared = System.nanoTime();
+			ResultSet rs = stmt.executeQuery();
+			long executed = System.nanoTime();
+			ExecutionEvent event = new ExecutionEvent(this, boundSql.getSQL(), fingerprint(), prepared - start, executed - prepared);
+			return new ResultSetIterator<>(config, ownedConnection, stmt, rs, mapper, loads, listener, event);
+		} catch (SQLException | RuntimeException e) {
+			stmt.close();
+			TempTableLoad.clear(conn, loads, e);
+			throw e;
+		}
+	}
+	
+	/**
+	 * 
+	 *  <pre>left join joinTableName</pre>
+	 * 
+	 * @param joinTableName The table name to join
+	 * @return NativeSqlBuilder
+	 */
+	public NativeSqlBuilder leftJoin(String joinTableName) {
+		PathBuilder<String> join = getTable(joinTableName);
+		q.leftJoin(join);
+		declareTable(joinTableName);
+		return changed();
+	}
+	
+	/**
+	 * 
+	 *  <pre>left join joinTableName</pre>
+	 * 
+	 * @param joinTableName The table name to join
+	 * @return NativeSqlBuilder
+	 */
+	public NativeSqlBuilder leftJoin(String joinTableName, String aliasName) {
+		PathBuilder<String> join = getTable(joinTableName);
+		StringPath alias = Expressions.stringPath(aliasName);
+		q.leftJoin(join, alias);
+		recordTable(joinTableName);
+		declareAlias(aliasName, joinTableName);
+		return changed();
+	}
+	
+	/**
+	 * 
+	 * <pre>on table1.leftFieldName = table2.rightFieldName </pre>
+	 * 
+	 * @param leftFieldName The left-hand side field name with optional table name, for example "tableName.fieldName"
+	 * @param rightFieldName The right-hand side field name with optional table name, for example "tableName.fieldName"
+	 * @return NativeSqlBuilder
+	 */
+	public NativeSqlBuilder on(String leftFieldName, String rightFieldName) {
+		BooleanExpression joined = getPath(leftFieldName).eq(getPath(rightFieldName));
+		q.on(joined);
+		return changed();
+	}
+	
+	private NumberPath<Integer> getIntegerPath(String fieldName) {
+		return factory.getPathCache().numberPath(Integer.class, fieldName);
+	}
+	
+	private NumberPath<Long> getLongPath(String fieldName) {
+		return factory.getPathCache().numberPath(Long.class, fieldName);
+	}
+	
+	private StringPath getPath(String fieldName) {
+		return factory.getPathCache().stringPath(fieldName);
+	}
+	
+	/**
+	 * The path renders the same for any type, the type of the values decides how they are rendered or bound.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private SimpleExpression<Object> getObjectPath(String fieldName) {
+		return (SimpleExpression) getPath(fieldName);
+	}
+	
+	private PathBuilder<String> getTable(String tableName) {
+		int dot = PathCache.lastSeparator(tableName);
+		if(dot < 0) {
+			return new PathBuilder<>(String.class, tableName);
+		}
+		PathMetadata metadata = PathMetadataFactory.forProperty(getPath(tableName.substring(0, dot)), tableName.substring(dot + 1));
+		return new PathBuilder<>(String.class, metadata);
+	}
+	
+	/**
+	 * 
+	 * <pre>select field1, field2, table.field3</pre>
+	 * 
+	 * @param fieldNames A varargs arrays of field names with optional table names
+	 * @return NativeSqlBuilder
+	 */
+	public NativeSqlBuilder select(String... fieldNames) {
+		List<StringPath> fields = makeFields(Arrays.asList(fieldNames));
+		q.select(fields.toArray(new StringPath[fields.size()]));
+		return changed();
+	}
+	
+	/**
+	 * Select a list of expressions.
+	 * 
+	 * <pre>select(sql.expr('initcap(columns1)'), sql.expr('lower(column2)'))</pre>
+	 * 
+	 * @param expressions The Expressions
+	 * @return NativeSqlBuilder
+	 */
+	public NativeSqlBuilder select(StringExpression... expressions) {
+		register(expressions);
+		q.select(expressions);
+		return changed();
+	}
+	
+	/**
+	 * Select an expression and assign an alias.
+	 * <pre>select(sql.expr('initcap(column)'), 'capitalized')</pre>
+	 * 
+	 * @param field The function
+	 * @param aliasName The alias name
+	 * @return NativeSqlBuilder
+	 */
+	public NativeSqlBuilder select(StringExpression expr, String aliasName) {
+		register(expr);
+		q.select(expr.as(aliasName));
+		return changed();
+	}
+	
+	/**
+	 * Select columns together with aggregates or other expressions of any type.
+	 * 
+	 * <pre>select(sql.field("kind"), sql.sum("amount").as("total"))</pre>
+	 * 
+	 * @param expressions The Expressions
+	 * @return NativeSqlBuilder
+	 */
+	public NativeSqlBuilder select(Expression<?>... expressions) {
+		register(expressions);
+		q.select(expressions);
+		return changed();
+	}
+	
+	/**
+	 * A column for the select list, group by or order by, next to expressions of other types.
+	 * 
+	 * @param fieldName The field name with optional table name, for example "tableName.fieldName"
+	 * @return StringPath
+	 */
+	public StringPath field(String fieldName) {
+		return getPath(fieldName);
+	}
+	
+	private List<StringPath> makeFields(List<String> fieldNames) {
+		List<StringPath> fields = fieldNames.stream().map(f -> getPath(f)).collect(Collectors.toList());
+		return fields;
+	}
+	
+	/**
+	 * 
+	 * <pre>select *</pre>
+	 * 
+	 * @return NativeSqlBuilder
+	 */
+	public NativeSqlBuilder selectAll() {
+		q.select(Wildcard.all);
+		return changed();
+	}
+	
+	/**
+	 * 
+	 * <pre>from tableName</pre>
+	 * 
+	 * @param tableName The table name
+	 * @return NativeSqlBuilder
+	 */
+	public NativeSqlBuilder from(String tableName) {
+		StringPath table = getPath(tableName);
+		q.from(table);
+		if(isWithQuery(tableName)) {
+			declareAlias(tableName, null);
+		} else {
+			declareTable(tableName);
+		}
+		return changed();
+	}
+	
+	/**
+	 * <pre>from(sql, 'anAlias')</pre>
+	 * 
+	 * @param subQueryBuilder The sub-query
+	 * @param aliasName The alias to reference the results of the sub-query
+	 * @return NativeSqlBuilder
+	 */
+	public NativeSqlBuilder from(NativeSqlBuilder subQueryBuilder, String aliasName) {
+		SQLQuery<?> subQuery = use(subQueryBuilder);
+		SubQueryExpression<String> subQueryExpression = new SubQueryExpressionImpl<String>(String.class,subQuery.getMetadata());
+		StringPath alias = Expressions.stringPath(aliasName);
+		q.from(subQueryExpression, alias);
+		declareAlias(aliasName, null);
+		return changed();
+	}
+	
+	/**
+	 * 
+	 * <pre>from tableName alias</pre>
+	 * 
+	 * @param tableName The table name
+	 * @param alias The table alias
+	 * @return NativeSqlBuilder
+	 */
+	public NativeSqlBuilder from(String tableName, String aliasName) {
+		StringPath table = getPath(tableName);
+		q.from(table.as(aliasName));
+		if(isWithQuery(tableName)) {
+			declareAlias(aliasName, null);
+		} else {
+			recordTable(tableName);
+			declareAlias(aliasName, tableName);
+		}
+		return changed();
+	}
+	
+	/**
+	 * A table without alias is referenced in hints by its name, with or without schema.
+	 */
+	private void declareTable(String tableName) {
+		recordTable(tableName);
+		declareAlias(tableName, tableName);
+		int dot = PathCache.lastSeparator(tableName);
+		if(dot >= 0) {
+			declareAlias(tableName.substring(dot + 1), tableName);
+		}
+	}
+	
+	private void recordTable(String tableName) {
+		tables.add(tableName.toLowerCase(Locale.ROOT));
+		int dot = PathCache.lastSeparator(tableName);
+		if(dot >= 0) {
+			tables.add(tableName.substring(dot + 1).toLowerCase(Locale.ROOT));
+		}
+	}
+	
+	/**
+	 * Unquoted identifiers are case insensitive.
+	 * 
+	 * @param tableName The table the alias refers to, null for a sub-query
+	 */
+	private void declareAlias(String aliasName, String tableName) {
+		declaredAliases.put(aliasName.toLowerCase(Locale.ROOT), tableName);
+	}
+	
+	/**
+	 * Resolves a field name with the catalog of the factory: a qualified name by its table or alias, which may also be
+	 * declared after the field is used, an unqualified name by the first declared table that has the column.
+	 * 
+	 * @return The column, or null if there is no catalog or it doesn't know the column
+	 */
+	SchemaCatalog.Column column(String fieldName) {
+		SchemaCatalog catalog = factory.getCatalog();
+		if(catalog == null) {
+			return null;
+		}
+		int dot = PathCache.lastSeparator(fieldName);
+		if(dot >= 0) {
+			SchemaCatalog.Table table = table(catalog, fieldName.substring(0, dot));
+			return table != null ? table.getColumn(fieldName.substring(dot + 1)) : null;
+		}
+		for(String tableName : declaredAliases.values()) {
+			SchemaCatalog.Table table = tableName != null ? catalog.getTable(tableName) : null;
+			SchemaCatalog.Column column = table != null ? table.getColumn(fieldName) : null;
+			if(column != null) {
+				return column;
+			}
+		}
+		return null;
+	}
+	
+	private SchemaCatalog.Table table(SchemaCatalog catalog, String tableOrAlias) {
+		String key = tableOrAlias.toLowerCase(Locale.ROOT);
+		if(declaredAliases.containsKey(key)) {
+			String tableName = declaredAliases.get(key);
+			return tableName != null ? catalog.getTable(tableName) : null;
+		}
+		return catalog.getTable(tableOrAlias);
+	}
+	
+	/**
+	 * The columns of this query and its sub-queries that the catalog of the factory doesn't have, for example misspelled 
+	 * columns or columns of an older schema. A qualified column is checked when its table is in the catalog, an unqualified
+	 * column when all tables of the query are in the catalog. Expressions, aliases of the select and pseudo columns are
+	 * not checked, nor are columns of the outer query in a correlated sub-query that aren't qualified.
+	 * 
+	 * @return The unknown columns as written in the query, empty if the factory has no catalog
+	 */
+	public List<String> getUnknownColumns() {
+		SchemaCatalog catalog = factory.getCatalog();
+		if(catalog == null) {
+			return Collections.emptyList();
+		}
+		List<String> unknown = new ArrayList<>();
+		ColumnCollector columns = ColumnCollector.collect(q.getMetadata());
+		for(Path<?> path : columns.getColumns()) {
+			PathMetadata metadata = path.getMetadata();
+			String name = String.valueOf(metadata.getElement());
+			if(!IDENTIFIER.matcher(name).matches() || PSEUDO_COLUMNS.contains(name.toLowerCase(Locale.ROOT))) {
+				continue;
+			}
+			String fullName;
+			boolean known;
+			if(metadata.getParent() != null) {
+				fullName = metadata.getParent() + "." + name;
+				SchemaCatalog.Table table = table(catalog, metadata.getParent().toString());
+				known = table == null || table.getColumn(name) != null;
+			} else {
+				fullName = name;
+				known = columns.getAliases().contains(name.toLowerCase(Locale.ROOT)) || declaredAliases.containsKey(name.toLowerCase(Locale.ROOT))
+						|| !isUnknownColumn(catalog, name);
+			}
+			if(!known && !unknown.contains(fullName)) {
+				unknown.add(fullName);
+			}
+		}
+		for(NativeSqlBuilder subQuery : subQueries) {
+			for(String column : subQuery.getUnknownColumns()) {
+				if(!unknown.contains(column)) {
+					unknown.add(column);
+				}
+			}
+		}
+		return unknown;
+	}
+	
+	private boolean isUnknownColumn(SchemaCatalog catalog, String columnName) {
+		if(declaredAliases.isEmpty()) {
+			return false;
+		}
+		for(String tableName : declaredAliases.values()) {
+			SchemaCatalog.Table table = tableName != null ? catalog.getTable(tableName) : null;
+			if(table == null || table.getColumn(columnName) != null) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Adds optimizer hints right after the select of this query. Hints of a sub-query are added on the builder of the sub-query.
+	 * All hints of a builder are rendered in one comment, because the optimizer only reads the first one. The tables and 
+	 * aliases the hints refer to must have been declared before with from, innerJoin or leftJoin.
+	 * 
+	 * <pre>select /*+ LEADING(a b) USE_HASH(b) *&#47; a.field from tt a inner join tt2 b</pre>
+	 * 
+	 * @param hints The hints
+	 * @return NativeSqlBuilder
+	 */
+	public NativeSqlBuilder hint(Hint... hints) {
+		checkHints(hints);
+		this.hints.addAll(Arrays.asList(hints));
+		if(hintFlag != null) {
+			q.getMetadata().removeFlag(hintFlag);
+		}
+		hintFlag = hintFlag(this.hints);
+		q.addFlag(hintFlag);
+		return changed();
+	}
+	
+	private void checkHints(Hint... hints) {
+		for(Hint hint : hints) {
+			for(String alias : hint.getAliases()) {
+				if(!declaredAliases.containsKey(alias.toLowerCase(Locale.ROOT))) {
+					throw new IllegalArgumentException("Hint " + hint + " refers to " + alias + ", which is not a table or alias of the query " + declaredAliases.keySet());
+				}
+			}
+		}
+	}
+	
+	/**
+	 * 
+	 * <pre>where field = 'value'</pre>
+	 * 
+	 * @param predicates A varargs array of predicates for the where clause
+	 * @return NativeSqlBuilder
+	 */
+	public NativeSqlBuilder where(Predicate... predicates) {
+		register(predicates);
+		q.where(predicates);
+		return changed();
+	}
+	
+	/**
+	 * 
+	 * <pre>group by field1, table.field2</pre>
+	 * 
+	 * @param fieldNames A varargs array of field names with optional table names
+	 * @return NativeSqlBuilder
+	 */
+	public NativeSqlBuilder groupBy(String... fieldNames) {
+		List<StringPath> fields = makeFields(Arrays.asList(fieldNames));
+		q.groupBy(fields.toArray(new StringPath[fields.size()]));
+		return changed();
+	}
+	
+	/**
+	 * 
+	 * <pre>group by trunc(created)</pre>
+	 * 
+	 * @param expressions A varargs array of expressions
+	 * @return NativeSqlBuilder
+	 */
+	public NativeSqlBuilder groupBy(Expression<?>... expressions) {
+		register(expressions);
+		q.groupBy(expressions);
+		return changed();
+	}
+	
+	/**
+	 * Filters the groups, typically on aggregates.
+	 * 
+	 * <pre>having sum(amount) > 100</pre>
+	 * 
+	 * @param predicates A varargs array of predicates for the having clause
+	 * @return NativeSqlBuilder
+	 */
+	public NativeSqlBuilder having(Predicate... predicates) {
+		register(predicates);
+		q.having(predicates);
+		return changed();
+	}
+	
+	/**
+	 * 
+	 * <pre>tableName.fieldName = 'value'</pre>
+	 * 
+	 * @param fieldName The field name with optional table name, for example "tableName.fieldName"
+	 * @param value The String value to match
+	 * @return BooleanExpression
+	 */
+	public BooleanExpression eq(String fieldName, String value) {
+		if(factory.getCatalog() != null) {
+			return compare(Ops.EQ, fieldName, value);
+		}
+		return getPath(fieldName).eq(value);
+	}
+	
+	/**
+	 * 
+	 * <pre>tableName.fieldName = 123</pre>
+	 * 
+	 * @param fieldName The field name with optional table name, for example "tableName.fieldName"
+	 * @param value The Integer value to match
+	 * @return BooleanExpression
+	 */
+	public BooleanExpression eq(String fieldName, Integer value) {
+		if(factory.getCatalog() != null) {
+			return compare(Ops.EQ, fieldName, value);
+		}
+		return getIntegerPath(fieldName).eq(value);
+	}
+	
+	/**
+	 * 
+	 * <pre>tableName.fieldName = 123456l</pre>
+	 * 
+	 * @param fieldName The field name with optional table name, for example "tableName.fieldName"
+	 * @param value The Long value to match
+	 * @return BooleanExpression
+	 */
+	public BooleanExpression eq(String fieldName, Long value) {
+		if(factory.getCatalog() != null) {
+			return compare(Ops.EQ, fieldName, value);
+		}
+		return getLongPath(fieldName).eq(value);
+	}
+	
+	/**
+	 * 
+	 * <pre>tableName.fieldName = :value</pre>
+	 * 
+	 * @param fieldName The field name with optional table name, for example "tableName.fieldName"
+	 * @param value A named placeholder for a number, see {@link #param(String, Class)}
+	 * @return BooleanExpression
+	 */
+	public BooleanExpression eq(String fieldName, Param<? extends Number> value) {
+		return Expressions.booleanOperation(Ops.EQ, getPath(fieldName), value);
+	}
+	
+	/**
+	 * The templates of the dialect render the limit, see {@link SqlDialect#createTemplates()}. For the default Oracle 11 dialect:
+	 * <pre>select * from (select * from tableName) where rownum <= limit</pre>
+	 * 
+	 * @param limit The maximum number of rows to return
+	 * @return NativeSqlBuilder
+	 */
+	public NativeSqlBuilder limit(long limit) {
+		q.limit(limit);
+		return changed();
+	}
+	
+	/**
+	 * Orders ascending by the fields, which may be aliases of the select list.
+	 * 
+	 * <pre>order by field1, table.field2</pre>
+	 * 
+	 * @param fieldNames A varargs array of field names with optional table names
+	 * @return NativeSqlBuilder
+	 */
+	public NativeSqlBuilder orderBy(String... fieldNames) {
+		for(String fieldName : fieldNames) {
+			q.orderBy(asc(fieldName));
+		}
+		return changed();
+	}
+	
+	/**
+	 * With a limit the rows are ordered before they are limited, for top-N queries.
+	 * 
+	 * <pre>orderBy(sql.desc("total").nullsLast(), sql.asc("kind"))</pre>
+	 * <pre>order by total desc nulls last, kind asc</pre>
+	 * 
+	 * @param orders A varargs array of orders, see {@link #asc(String)} and {@link #desc(String)}
+	 * @return NativeSqlBuilder
+	 */
+	public NativeSqlBuilder orderBy(OrderSpecifier<?>... orders) {
+		register(targets(orders));
+		q.orderBy(orders);
+		return changed();
+	}
+	
+	/**
+	 * 
+	 * <pre>fieldName asc</pre>
+	 * 
+	 * @param fieldName The field name with optional table name, or an alias of the select list
+	 * @return OrderSpecifier, with nullsFirst() and nullsLast() for the position of nulls
+	 */
+	public OrderSpecifier<String> asc(String fieldName) {
+		return getPath(fieldName).asc();
+	}
+	
+	/**
+	 * 
+	 * <pre>fieldName desc</pre>
+	 * 
+	 * @param fieldName The field name with optional table name, or an alias of the select list
+	 * @return OrderSpecifier, with nullsFirst() and nullsLast() for the position of nulls
+	 */
+	public OrderSpecifier<String> desc(String fieldName) {
+		return getPath(fieldName).desc();
+	}
+	
+	/**
+	 * Skips the first rows, rendered by the dialect together with {@link #limit(long)}. The skipped rows are still read by 
+	 * the database, for deep pages use {@link #keysetPage(Keyset, Object[], long)}.
+	 * 
+	 * <pre>select field from tt offset 20 rows fetch next 10 rows only</pre>
+	 * 
+	 * @param offset The number of rows to skip
+	 * @return NativeSqlBuilder
+	 */
+	public NativeSqlBuilder offset(long offset) {
+		q.offset(offset);
+		return changed();
+	}
+	
+	/**
+	 * Keyset (seek) pagination: the page of rows that follows the last seen key, in key order. Unlike an offset, 
+	 * a page is read with an index range scan that starts at the last seen key, so page N costs the same as page 1.
+	 * 
+	 * <pre>where (k1 >= 'a' and (k1 > 'a' or k1 = 'a' and k2 > 3)) order by k1 asc, k2 asc fetch first n rows</pre>
+	 * 
+	 * @param keyset The ordered key columns
+	 * @param lastKey The key of the last row of the previous page, see {@link Keyset#keyOf(ResultSet)}, or null for the first page
+	 * @param pageSize The maximum number of rows of the page
+	 * @return NativeSqlBuilder
+	 */
+	public NativeSqlBuilder keysetPage(Keyset keyset, Object[] lastKey, long pageSize) {
+		if(lastKey != null) {
+			q.where(seek(keyset, lastKey));
+		}
+		for(String column : keyset.getColumns()) {
+			q.orderBy(new OrderSpecifier<>(keyset.getOrder(), getPath(column)));
+		}
+		q.limit(pageSize);
+		return changed();
+	}
+	
+	/**
+	 * The predicate for the rows after the last seen key in key order. Oracle only compares row values for equality, so 
+	 * there the comparison is expanded; the leading range on the first key column gives the optimizer its index access predicate.
+	 * 
+	 * <pre>(k1, k2) > ('a', 3)</pre>
+	 * <pre>k1 >= 'a' and (k1 > 'a' or k1 = 'a' and k2 > 3)</pre>
+	 * 
+	 * @param keyset The ordered key columns
+	 * @param lastKey The key of the last seen row
+	 * @return BooleanExpression
+	 */
+	public BooleanExpression seek(Keyset keyset, Object... lastKey) {
+		List<String> columns = keyset.getColumns();
+		if(lastKey.length != columns.size()) {
+			throw new IllegalArgumentException("The keyset has " + columns.size() + " columns, the key " + lastKey.length + " values");
+		}
+		boolean asc = keyset.getOrder() == Order.ASC;
+		if(lastKey.length > 1 && factory.getDialect().supportsRowValueComparison()) {
+			Expression<?>[] keys = new Expression<?>[lastKey.length];
+			Expression<?>[] values = new Expression<?>[lastKey.length];
+			for(int i = 0; i < lastKey.length; i++) {
+				keys[i] = getPath(columns.get(i));
+				values[i] = Expressions.constant(lastKey[i]);
+			}
+			return Expressions.booleanOperation(asc ? Ops.GT : Ops.LT, Expressions.list(keys), Expressions.list(values));
+		}
+		BooleanExpression after = null;
+		for(int i = 0; i < lastKey.length; i++) {
+			BooleanExpression next = compare(asc ? Ops.GT : Ops.LT, columns.get(i), lastKey[i]);
+			for(int j = i - 1; j >= 0; j--) {
+				next = compare(Ops.EQ, columns.get(j), lastKey[j]).and(next);
+			}
+			after = after == null ? next : after.or(next);
+		}
+		if(lastKey.length == 1) {
+			return after;
+		}
+		return compare(asc ? Ops.GOE : Ops.LOE, columns.get(0), lastKey[0]).and(after);
+	}
+	
+	private BooleanExpression compare(Ops op, String fieldName, Object value) {
+		return Expressions.booleanOperation(op, getPath(fieldName), constant(fieldName, value));
+	}
+	
+	/**
+	 * A typed constant, rendered by the literal type or bound with the JDBC type of its class. When the catalog knows the
+	 * column, a number is compared to a character column as a string and a string to a numeric column as a number, so the
+	 * database doesn't convert the column.
+	 */
+	private Expression<Object> constant(String fieldName, Object value) {
+		if(value == null) {
+			throw new IllegalArgumentException(fieldName + " can't be compared to null");
+		}
+		SchemaCatalog.Column column = column(fieldName);
+		if(column != null) {
+			if(column.isCharacter() && value instanceof Number) {
+				return Expressions.constant(plainString((Number) value));
+			}
+			if(column.isNumeric() && value instanceof String) {
+				try {
+					return Expressions.constant(new BigDecimal((String) value));
+				} catch (NumberFormatException e) {
+					throw new IllegalArgumentException(fieldName + " is " + column.getTypeName() + ", '" + value + "' is not a number");
+				}
+			}
+		}
+		return Expressions.constant(value);
+	}
+	
+	private static String plainString(Number value) {
+		return value instanceof BigDecimal ? ((BigDecimal) value).toPlainString() : value.toString();
+	}
+	
+	/**
+	 * 
+	 * <pre>fieldName in ('value1', 'value2', 'value3')</pre>
+	 * 
+	 * @param fieldName The field name with optional table name, for example "tableName.fieldName" 
+	 * @param values A list with string values
+	 * @return BooleanExpression
+	 */
+	public BooleanExpression in(String fieldName, String... values) {
+		return in(fieldName, Arrays.asList(values));
+	}
+	
+	/**
+	 * Large lists are rendered with the {@link InListStrategy} the {@link InListPolicy} of the factory chooses for their size.
+	 * 
+	 * <pre>fieldName in ("v1", "v2", "v3")</pre>
+	 * 
+	 * @param fieldName The field name with optional table name, for example "tableName.fieldName" 
+	 * @param values A list with string values
+	 * @return BooleanExpression
+	 */
+	public BooleanExpression in(String fieldName, List<String> values) {
+		return in(fieldName, values, InListStrategy.AUTO);
+	}
+	
+	/**
+	 * 
+	 * <pre>(fieldName in ("v1", "v2") or fieldName in ("v3"))</pre>
+	 * 
+	 * @param fieldName The field name with optional table name, for example "tableName.fieldName" 
+	 * @param values A list with string values
+	 * @param strategy How to render the list
+	 * @return BooleanExpression
+	 */
+	public BooleanExpression in(String fieldName, List<String> values, InListStrategy strategy) {
+		return inList(getPath(fieldName), values, strategy, factory.getInListPolicy().getStringCollectionType());
+	}
+	
+	/**
+	 * 
+	 * <pre>fieldName in (1, 2, 3)</pre>
+	 * 
+	 * @param fieldName The field name with optional table name, for example "tableName.fieldName" 
+	 * @param values The numbers
+	 * @return BooleanExpression
+	 */
+	public BooleanExpression in(String fieldName, Number... values) {
+		return in(fieldName, Arrays.asList(values), InListStrategy.AUTO);
+	}
+	
+	/**
+	 * Large lists are rendered with the {@link InListStrategy} the {@link InListPolicy} of the factory chooses for their size.
+	 * The numbers are rendered as number literals, bound as numbers or as a collection of the number collection type.
+	 * 
+	 * <pre>fieldName in (1, 2, 3)</pre>
+	 * 
+	 * @param fieldName The field name with optional table name, for example "tableName.fieldName" 
+	 * @param values The numbers
+	 * @return BooleanExpression
+	 */
+	public BooleanExpression in(String fieldName, Collection<? extends Number> values) {
+		return in(fieldName, values, InListStrategy.AUTO);
+	}
+	
+	/**
+	 * 
+	 * <pre>(fieldName in (1, 2) or fieldName in (3))</pre>
+	 * 
+	 * @param fieldName The field name with optional table name, for example "tableName.fieldName" 
+	 * @param values The numbers
+	 * @param strategy How to render the list
+	 * @return BooleanExpression
+	 */
+	public BooleanExpression in(String fieldName, Collection<? extends Number> values, InListStrategy strategy) {
+		SchemaCatalog.Column column = column(fieldName);
+		if(column != null && column.isCharacter()) {
+			return in(fieldName, values.stream().map(NativeSqlBuilder::plainString).collect(Collectors.toList()), strategy);
+		}
+		List<Object> list = new ArrayList<>(values);
+		return inList(getObjectPath(fieldName), list, strategy, factory.getInListPolicy().getNumberCollectionType());
+	}
+	
+	/**
+	 * 
+	 * <pre>fieldName in (date '2018-01-01', date '2018-01-02')</pre>
+	 * 
+	 * @param fieldName The field name with optional table name, for example "tableName.fieldName" 
+	 * @param values The dates or timestamps
+	 * @return BooleanExpression
+	 */
+	public BooleanExpression in(String fieldName, Temporal... values) {
+		return in(fieldName, values, InListStrategy.AUTO);
+	}
+	
+	/**
+	 * Dates can't be bound as a collection, {@link InListStrategy#COLLECTION} falls back to {@link InListStrategy#CHUNKED}.
+	 * 
+	 * <pre>(fieldName in (date '2018-01-01', date '2018-01-02') or fieldName = date '2018-01-03')</pre>
+	 * 
+	 * @param fieldName The field name with optional table name, for example "tableName.fieldName" 
+	 * @param values The dates or timestamps
+	 * @param strategy How to render the list
+	 * @return BooleanExpression
+	 */
+	public BooleanExpression in(String fieldName, Temporal[] values, InListStrategy strategy) {
+		if(strategy == InListStrategy.AUTO) {
+			// like tuples there's no collection type to bind them to
+			strategy = factory.getInListPolicy().choose(values.length, factory.isUseLiterals(), true);
+		}
+		if(strategy == InListStrategy.COLLECTION) {
+			strategy = InListStrategy.CHUNKED;
+		}
+		List<Object> list = Arrays.asList((Object[]) values);
+		return inList(getObjectPath(fieldName), list, strategy, null);
+	}
+	
+	/**
+	 * 
+	 * <pre>(f1, f2) in (('a', 1), ('b', 2))</pre>
+	 * 
+	 * @param listFields A list of fields, see {@link #listFields(String...)}
+	 * @param rows The tuples to match, each with a value per field
+	 * @return BooleanExpression
+	 */
+	public BooleanExpression in(SimpleExpression<Tuple> listFields, List<Object[]> rows) {
+		return in(listFields, rows, InListStrategy.AUTO);
+	}
+	
+	/**
+	 * Tuples can't be bound as a collection, {@link InListStrategy#COLLECTION} falls back to {@link InListStrategy#CHUNKED}.
+	 * A tuple must have a value for every field, otherwise an IllegalArgumentException is thrown.
+	 * 
+	 * <pre>(f1, f2) in (select v1, v2 from in_list_values where set_id = 42)</pre>
+	 * 
+	 * @param listFields A list of fields, see {@link #listFields(String...)}
+	 * @param rows The tuples to match, each with a value per field
+	 * @param strategy How to render the list
+	 * @return BooleanExpression
+	 */
+	public BooleanExpression in(SimpleExpression<Tuple> listFields, List<Object[]> rows, InListStrategy strategy) {
+		if(rows.isEmpty()) {
+			return Expressions.booleanTemplate("1 = 2");
+		}
+		int arity = InValueCounter.listSize(listFields);
+		for(Object[] row : rows) {
+			if(row.length != arity) {
+				throw new IllegalArgumentException("The tuple " + Arrays.toString(row) + " has " + row.length + " values, the list " + arity + " fields");
+			}
+		}
+		InListPolicy policy = factory.getInListPolicy();
+		if(strategy == InListStrategy.AUTO) {
+			strategy = policy.choose(rows.size(), factory.isUseLiterals(), true);
+		}
+		switch(strategy) {
+		case TEMP_TABLE:
+			return inTempTable(listFields, rows, arity);
+		case CHUNKED:
+		case COLLECTION:
+			BooleanExpression chunks = null;
+			for(int i = 0; i < rows.size(); i += policy.getChunkSize()) {
+				BooleanExpression chunk = inRows(listFields, rows.subList(i, Math.min(i + policy.getChunkSize(), rows.size())));
+				chunks = chunks == null ? chunk : chunks.or(chunk);
+			}
+			return chunks;
+		default:
+			return inRows(listFields, rows);
+		}
+	}
+	
+	private <T> BooleanExpression inList(SimpleExpression<T> left, List<? extends T> values, InListStrategy strategy, String collectionType) {
+		InListPolicy policy = factory.getInListPolicy();
+		if(strategy == InListStrategy.AUTO) {
+			strategy = policy.choose(values.size(), factory.isUseLiterals(), false);
+		}
+		switch(strategy) {
+		case CHUNKED:
+			BooleanExpression chunks = null;
+			for(int i = 0; i < values.size(); i += policy.getChunkSize()) {
+				BooleanExpression chunk = inValues(left, values.subList(i, Math.min(i + policy.getChunkSize(), values.size())));
+				chunks = chunks == null ? chunk : chunks.or(chunk);
+			}
+			return chunks != null ? chunks : left.in(values);
+		case COLLECTION:
+			return Expressions.booleanTemplate(policy.getCollectionTemplate(), left, Expressions.constant(new SqlArray(collectionType, values)));
+		case TEMP_TABLE:
+			return inTempTable(left, values, 1);
+		default:
+			return inValues(left, values);
+		}
+	}
+	
+	private static <T> BooleanExpression inValues(SimpleExpression<T> left, List<? extends T> values) {
+		if(values.size() == 1) {
+			// rendered as =, but still an IN list for the fingerprint
+			return Expressions.booleanOperation(Ops.EQ, left, new InListValue<T>(values.get(0)));
+		}
+		return left.in(values);
 	}
 	
-	/**
-	 * 
-	 * <pre>tableName.fieldName = 123</pre>
-	 * 
-	 * @param fieldName The field name with optional table name, for example "tableName.fieldName"
-	 * @param value The Integer value to match
-	 * @return BooleanExpression
-	 */
-	public BooleanExpression eq(String fieldName, Integer value) {
-		return getIntegerPath(fieldName).eq(value);
+	private BooleanExpression inRows(SimpleExpression<Tuple> listFields, List<Object[]> rows) {
+		Template rowTemplate = ROW_TEMPLATES.computeIfAbsent(rows.get(0).length, NativeSqlBuilder::rowTemplate);
+		Expression<?>[] tuples = new Expression<?>[rows.size()];
+		for(int i = 0; i < tuples.length; i++) {
+			tuples[i] = Expressions.template(Object.class, rowTemplate, Arrays.asList(rows.get(i)));
+		}
+		if(tuples.length == 1) {
+			return Expressions.booleanOperation(Ops.EQ, listFields, tuples[0]);
+		}
+		return Expressions.booleanOperation(Ops.IN, listFields, Expressions.list(tuples));
+	}
+	
+	private static Template rowTemplate(int arity) {
+		StringBuilder sb = new StringBuilder("(");
+		for(int i = 0; i < arity; i++) {
+			sb.append(i == 0 ? "" : ", ").append('{').append(i).append('}');
+		}
+		return TemplateFactory.DEFAULT.create(sb.append(')').toString());
+	}
+	
+	private BooleanExpression inTempTable(SimpleExpression<?> left, List<?> rows, int arity) {
+		InListPolicy policy = factory.getInListPolicy();
+		if(!policy.hasTempTable()) {
+			throw new IllegalStateException("The InListPolicy of the factory has no temporary table");
+		}
+		List<String> valueColumns = policy.getTempTableValueColumns();
+		if(arity > valueColumns.size()) {
+			throw new IllegalArgumentException("The temporary table has " + valueColumns.size() + " value columns, the tuple " + arity + " fields");
+		}
+		long setId = TEMP_TABLE_SET_IDS.incrementAndGet();
+		NativeSqlBuilder values = factory.create();
+		values.select(valueColumns.subList(0, arity).toArray(new String[arity]))
+			.from(policy.getTempTableName())
+			.where(values.eq(policy.getTempTableSetIdColumn(), setId));
+		// the sub-query loads the values, so they are loaded by any builder the predicate is added to
+		values.tempTableLoads.add(new TempTableLoad(config, policy, setId, rows, arity));
+		SubQueryExpression<Object> subQueryExpression = new BuilderSubQuery<Object>(Object.class, values);
+		return Expressions.booleanOperation(Ops.IN, left, subQueryExpression);
 	}
 	
 	/**
+	 * Loads the values of the {@link InListStrategy#TEMP_TABLE} predicates of this builder and its sub-queries 
+	 * into the temporary table. Must be called on the connection that runs the query, before running it. The queries
+	 * this builder runs itself load the values and remove them again when they finish.
 	 * 
-	 * <pre>tableName.fieldName = 123456l</pre>
-	 * 
-	 * @param fieldName The field name with optional table name, for example "tableName.fieldName"
-	 * @param value The Long value to match
-	 * @return BooleanExpression
+	 * @param conn The connection
+	 * @throws SQLException
+	 * @see #clearTempTables(Connection)
 	 */
-	public BooleanExpression eq(String fieldName, Long value) {
-		return getLongPath(fieldName).eq(value);
+	public void loadTempTables(Connection conn) throws SQLException {
+		TempTableLoad.load(conn, getTempTableLoads());
 	}
 	
 	/**
-	 * Produces Oracle specific limit query.
-	 * <pre>select * from (select * from tableName) where maxRows <= limit</pre>
+	 * Removes the values loaded by {@link #loadTempTables(Connection)} from the temporary table, after the query has run.
+	 * With on commit preserve rows they would otherwise stay until the session of a pooled connection ends.
 	 * 
-	 * @param limit The maximum number of rows to return
-	 * @return NativeSqlBuilder
+	 * @param conn The connection
+	 * @throws SQLException
 	 */
-	public NativeSqlBuilder limit(long limit) {
-		q.limit(limit);
-		return this;
+	public void clearTempTables(Connection conn) throws SQLException {
+		TempTableLoad.clear(conn, getTempTableLoads());
+	}
+	
+	private List<TempTableLoad> getTempTableLoads() {
+		List<TempTableLoad> loads = new ArrayList<>();
+		collectTempTableLoads(loads);
+		return loads;
 	}
 	
 	/**
-	 * 
-	 * <pre>fieldName in ('value1', 'value2', 'value3')</pre>
-	 * 
-	 * @param fieldName The field name with optional table name, for example "tableName.fieldName" 
-	 * @param values A list with string values
-	 * @return BooleanExpression
+	 * A sub-query can be reached through more than one builder, its values are only loaded once.
 	 */
-	public BooleanExpression in(String fieldName, String... values) {
-		return getPath(fieldName).in(values);
+	private void collectTempTableLoads(List<TempTableLoad> loads) {
+		for(TempTableLoad load : tempTableLoads) {
+			if(!loads.contains(load)) {
+				loads.add(load);
+			}
+		}
+		for(NativeSqlBuilder subQuery : subQueries) {
+			subQuery.collectTempTableLoads(loads);
+		}
 	}
 	
 	/**
 	 * 
-	 * <pre>fieldName in ("v1", "v2", "v3")</pre>
+	 * <pre>fieldName in :values</pre>
 	 * 
 	 * @param fieldName The field name with optional table name, for example "tableName.fieldName" 
-	 * @param values A list with string values
+	 * @param values A named placeholder for the list, see {@link #listParam(String)}
 	 * @return BooleanExpression
 	 */
-	public BooleanExpression in(String fieldName, List<String> values) {
-		return getPath(fieldName).in(values);
+	public BooleanExpression in(String fieldName, Param<Collection<?>> values) {
+		return Expressions.booleanOperation(Ops.IN, getPath(fieldName), values);
 	}
 	
 	/**
@@ -349,8 +1787,7 @@ public class NativeSqlBuilder {
 	 * @return BooleanExpression
 	 */
 	public BooleanExpression in(String fieldName, NativeSqlBuilder subQueryBuilder) {
-		SQLQuery<?> subQuery = subQueryBuilder.getSQLQuery();
-		SubQueryExpression<String> subQueryExpression = new SubQueryExpressionImpl<String>(String.class,subQuery.getMetadata());
+		SubQueryExpression<String> subQueryExpression = new BuilderSubQuery<String>(String.class, subQueryBuilder);
 		return getPath(fieldName).in(subQueryExpression);
 	}
 	
@@ -363,8 +1800,7 @@ public class NativeSqlBuilder {
 	 * @return BooleanExpression
 	 */
 	public BooleanExpression in(SimpleExpression<Tuple> listFields, NativeSqlBuilder subQueryBuilder) {
-		SQLQuery<?> subQuery = subQueryBuilder.getSQLQuery();
-		SubQueryExpression<Tuple> subQueryExpression = new SubQueryExpressionImpl<Tuple>(Tuple.class,subQuery.getMetadata());
+		SubQueryExpression<Tuple> subQueryExpression = new BuilderSubQuery<Tuple>(Tuple.class, subQueryBuilder);
 		return listFields.in(subQueryExpression);
 	}
 	
@@ -426,8 +1862,7 @@ public class NativeSqlBuilder {
 	 * @return BooleanExpression
 	 */
 	public BooleanExpression eq(Integer constant, NativeSqlBuilder subQueryBuilder) {
-		SQLQuery<?> subQuery = subQueryBuilder.getSQLQuery();
-		SubQueryExpression<Integer> subQueryExpression = new SubQueryExpressionImpl<Integer>(Integer.class,subQuery.getMetadata());
+		SubQueryExpression<Integer> subQueryExpression = new BuilderSubQuery<Integer>(Integer.class, subQueryBuilder);
 		return Expressions.template(Integer.class, String.valueOf(constant)).eq(subQueryExpression);
 	}
 	
@@ -439,8 +1874,7 @@ public class NativeSqlBuilder {
 	 * @return BooleanOperation
 	 */
 	public BooleanOperation exists(NativeSqlBuilder subQueryBuilder) {
-		SQLQuery<?> subQuery = subQueryBuilder.getSQLQuery();
-		SubQueryExpression<Tuple> subQueryExpression = new SubQueryExpressionImpl<Tuple>(Tuple.class,subQuery.getMetadata());
+		SubQueryExpression<Tuple> subQueryExpression = new BuilderSubQuery<Tuple>(Tuple.class, subQueryBuilder);
 		return Expressions.booleanOperation(Ops.EXISTS, subQueryExpression);
 	}
 	
@@ -451,7 +1885,7 @@ public class NativeSqlBuilder {
 	 */
 	public NativeSqlBuilder countAll() {
 		q.select(Wildcard.count);
-		return this;
+		return changed();
 	}
 	
 	/**
@@ -462,7 +1896,77 @@ public class NativeSqlBuilder {
 	 */
 	public NativeSqlBuilder countAllAs(String aliasName) {
 		q.select(Wildcard.count.as(aliasName));
-		return this;
+		return changed();
+	}
+	
+	/**
+	 * The aggregates are computed by the database, assign an alias with as(aliasName) to order by it in an outer query.
+	 * 
+	 * <pre>sum(fieldName)</pre>
+	 * 
+	 * @param fieldName The field name with optional table name
+	 * @return NumberExpression, with asc(), desc() and the comparisons for having
+	 */
+	public NumberExpression<BigDecimal> sum(String fieldName) {
+		return Expressions.numberOperation(BigDecimal.class, Ops.AggOps.SUM_AGG, getPath(fieldName));
+	}
+	
+	/**
+	 * 
+	 * <pre>avg(fieldName)</pre>
+	 * 
+	 * @param fieldName The field name with optional table name
+	 * @return NumberExpression
+	 */
+	public NumberExpression<BigDecimal> avg(String fieldName) {
+		return Expressions.numberOperation(BigDecimal.class, Ops.AggOps.AVG_AGG, getPath(fieldName));
+	}
+	
+	/**
+	 * 
+	 * <pre>min(fieldName)</pre>
+	 * 
+	 * @param fieldName The field name with optional table name
+	 * @param type The type of the column, for example BigDecimal, String or LocalDateTime
+	 * @return ComparableExpression
+	 */
+	public <T extends Comparable<?>> ComparableExpression<T> min(String fieldName, Class<T> type) {
+		return Expressions.comparableOperation(type, Ops.AggOps.MIN_AGG, getPath(fieldName));
+	}
+	
+	/**
+	 * 
+	 * <pre>max(fieldName)</pre>
+	 * 
+	 * @param fieldName The field name with optional table name
+	 * @param type The type of the column, for example BigDecimal, String or LocalDateTime
+	 * @return ComparableExpression
+	 */
+	public <T extends Comparable<?>> ComparableExpression<T> max(String fieldName, Class<T> type) {
+		return Expressions.comparableOperation(type, Ops.AggOps.MAX_AGG, getPath(fieldName));
+	}
+	
+	/**
+	 * Counts the rows where the field is not null.
+	 * 
+	 * <pre>count(fieldName)</pre>
+	 * 
+	 * @param fieldName The field name with optional table name
+	 * @return NumberExpression
+	 */
+	public NumberExpression<Long> count(String fieldName) {
+		return Expressions.numberOperation(Long.class, Ops.AggOps.COUNT_AGG, getPath(fieldName));
+	}
+	
+	/**
+	 * 
+	 * <pre>count(distinct fieldName)</pre>
+	 * 
+	 * @param fieldName The field name with optional table name
+	 * @return NumberExpression
+	 */
+	public NumberExpression<Long> countDistinct(String fieldName) {
+		return Expressions.numberOperation(Long.class, Ops.AggOps.COUNT_DISTINCT_AGG, getPath(fieldName));
 	}
 	
 	/**
@@ -473,9 +1977,10 @@ public class NativeSqlBuilder {
 	 * @return NativeSqlBuilder
 	 */
 	public NativeSqlBuilder innerJoin(String joinTableName) {
-		PathBuilder<String> join = new PathBuilder<>(String.class, joinTableName);
+		PathBuilder<String> join = getTable(joinTableName);
 		q.innerJoin(join);
-		return this;
+		declareTable(joinTableName);
+		return changed();
 	}
 	
 	/**
@@ -487,10 +1992,12 @@ public class NativeSqlBuilder {
 	 * @return NativeSqlBuilder
 	 */
 	public NativeSqlBuilder innerJoin(String joinTableName, String aliasName) {
-		PathBuilder<String> join = new PathBuilder<>(String.class, joinTableName);
+		PathBuilder<String> join = getTable(joinTableName);
 		StringPath alias = Expressions.stringPath(aliasName);
 		q.innerJoin(join, alias);
-		return this;
+		recordTable(joinTableName);
+		declareAlias(aliasName, joinTableName);
+		return changed();
 	}
 	
 	/**
@@ -519,6 +2026,19 @@ public class NativeSqlBuilder {
 		return getPath(fieldName).like(value);
 	}
 	
+	/**
+	 * The '\' is used as default escape.
+	 * 
+	 * <pre>field like :pattern</pre>
+	 * 
+	 * @param fieldName The field name with optional table name, for example "tableName.fieldName" 
+	 * @param value An expression with the pattern, for example {@link #param(String)}
+	 * @return BooleanExpression
+	 */
+	public BooleanExpression like(String fieldName, Expression<String> value) {
+		return getPath(fieldName).like(value);
+	}
+	
 	/**
 	 * <pre>substr(field, 1, instr(locator, '[') - 1)</pre>
 	 * 
@@ -565,6 +2085,230 @@ public class NativeSqlBuilder {
 		return getPath(fieldName).lt(expr);
 	}
 	
+	/**
+	 * The value is rendered as a number literal or bound as a number, so an index on a NUMBER column can be used.
+	 * 
+	 * <pre>tableName.fieldName > 123</pre>
+	 * 
+	 * @param fieldName The field name with optional table name, for example "tableName.fieldName"
+	 * @param value The lower bound, exclusive
+	 * @return BooleanExpression
+	 */
+	public BooleanExpression gt(String fieldName, Number value) {
+		return compare(Ops.GT, fieldName, value);
+	}
+	
+	/**
+	 * The value is rendered as a date or timestamp literal or bound as a timestamp, instead of a String.
+	 * 
+	 * <pre>tableName.fieldName > timestamp '2018-01-01 10:00:00'</pre>
+	 * 
+	 * @param fieldName The field name with optional table name, for example "tableName.fieldName"
+	 * @param value The lower bound, exclusive, for example a LocalDateTime
+	 * @return BooleanExpression
+	 */
+	public BooleanExpression gt(String fieldName, Temporal value) {
+		return compare(Ops.GT, fieldName, value);
+	}
+	
+	/**
+	 * The value is rendered as a number literal or bound as a number, so an index on a NUMBER column can be used.
+	 * 
+	 * <pre>tableName.fieldName < 123</pre>
+	 * 
+	 * @param fieldName The field name with optional table name, for example "tableName.fieldName"
+	 * @param value The upper bound, exclusive
+	 * @return BooleanExpression
+	 */
+	public BooleanExpression lt(String fieldName, Number value) {
+		return compare(Ops.LT, fieldName, value);
+	}
+	
+	/**
+	 * The value is rendered as a date or timestamp literal or bound as a timestamp, instead of a String.
+	 * 
+	 * <pre>tableName.fieldName < timestamp '2018-01-01 10:00:00'</pre>
+	 * 
+	 * @param fieldName The field name with optional table name, for example "tableName.fieldName"
+	 * @param value The upper bound, exclusive, for example a LocalDateTime
+	 * @return BooleanExpression
+	 */
+	public BooleanExpression lt(String fieldName, Temporal value) {
+		return compare(Ops.LT, fieldName, value);
+	}
+	
+	/**
+	 * The value is rendered as a number literal or bound as a number, so an index on a NUMBER column can be used.
+	 * 
+	 * <pre>tableName.fieldName >= 123</pre>
+	 * 
+	 * @param fieldName The field name with optional table name, for example "tableName.fieldName"
+	 * @param value The lower bound, inclusive
+	 * @return BooleanExpression
+	 */
+	public BooleanExpression goe(String fieldName, Number value) {
+		return compare(Ops.GOE, fieldName, value);
+	}
+	
+	/**
+	 * The value is rendered as a date or timestamp literal or bound as a timestamp, instead of a String.
+	 * 
+	 * <pre>tableName.fieldName >= timestamp '2018-01-01 10:00:00'</pre>
+	 * 
+	 * @param fieldName The field name with optional table name, for example "tableName.fieldName"
+	 * @param value The lower bound, inclusive, for example a LocalDateTime
+	 * @return BooleanExpression
+	 */
+	public BooleanExpression goe(String fieldName, Temporal value) {
+		return compare(Ops.GOE, fieldName, value);
+	}
+	
+	/**
+	 * The value is rendered as a number literal or bound as a number, so an index on a NUMBER column can be used.
+	 * 
+	 * <pre>tableName.fieldName <= 123</pre>
+	 * 
+	 * @param fieldName The field name with optional table name, for example "tableName.fieldName"
+	 * @param value The upper bound, inclusive
+	 * @return BooleanExpression
+	 */
+	public BooleanExpression loe(String fieldName, Number value) {
+		return compare(Ops.LOE, fieldName, value);
+	}
+	
+	/**
+	 * The value is rendered as a date or timestamp literal or bound as a timestamp, instead of a String.
+	 * 
+	 * <pre>tableName.fieldName <= timestamp '2018-01-01 10:00:00'</pre>
+	 * 
+	 * @param fieldName The field name with optional table name, for example "tableName.fieldName"
+	 * @param value The upper bound, inclusive, for example a LocalDateTime
+	 * @return BooleanExpression
+	 */
+	public BooleanExpression loe(String fieldName, Temporal value) {
+		return compare(Ops.LOE, fieldName, value);
+	}
+	
+	/**
+	 * The value is rendered as a number literal or bound as a number, so an index on a NUMBER column can be used.
+	 * 
+	 * <pre>tableName.fieldName != 123</pre>
+	 * 
+	 * @param fieldName The field name with optional table name, for example "tableName.fieldName"
+	 * @param value The value not to match
+	 * @return BooleanExpression
+	 */
+	public BooleanExpression ne(String fieldName, Number value) {
+		return compare(Ops.NE, fieldName, value);
+	}
+	
+	/**
+	 * The value is rendered as a date or timestamp literal or bound as a timestamp, instead of a String.
+	 * 
+	 * <pre>tableName.fieldName != timestamp '2018-01-01 10:00:00'</pre>
+	 * 
+	 * @param fieldName The field name with optional table name, for example "tableName.fieldName"
+	 * @param value The value not to match, for example a LocalDateTime
+	 * @return BooleanExpression
+	 */
+	public BooleanExpression ne(String fieldName, Temporal value) {
+		return compare(Ops.NE, fieldName, value);
+	}
+	
+	/**
+	 * 
+	 * <pre>tableName.fieldName != 'value'</pre>
+	 * 
+	 * @param fieldName The field name with optional table name, for example "tableName.fieldName"
+	 * @param value The String value not to match
+	 * @return BooleanExpression
+	 */
+	public BooleanExpression ne(String fieldName, String value) {
+		if(factory.getCatalog() != null) {
+			return compare(Ops.NE, fieldName, value);
+		}
+		return getPath(fieldName).ne(value);
+	}
+	
+	/**
+	 * 
+	 * <pre>tableName.fieldName between 1 and 10</pre>
+	 * 
+	 * @param fieldName The field name with optional table name, for example "tableName.fieldName"
+	 * @param from The lower bound, inclusive
+	 * @param to The upper bound, inclusive
+	 * @return BooleanExpression
+	 */
+	public BooleanExpression between(String fieldName, Number from, Number to) {
+		return Expressions.booleanOperation(Ops.BETWEEN, getPath(fieldName), constant(fieldName, from), constant(fieldName, to));
+	}
+	
+	/**
+	 * 
+	 * <pre>tableName.fieldName between date '2018-01-01' and date '2018-12-31'</pre>
+	 * 
+	 * @param fieldName The field name with optional table name, for example "tableName.fieldName"
+	 * @param from The lower bound, inclusive
+	 * @param to The upper bound, inclusive
+	 * @return BooleanExpression
+	 */
+	public BooleanExpression between(String fieldName, Temporal from, Temporal to) {
+		return Expressions.booleanOperation(Ops.BETWEEN, getPath(fieldName), constant(fieldName, from), constant(fieldName, to));
+	}
+	
+	/**
+	 * A half-open range, which unlike between doesn't overlap the next range, so consecutive ranges can partition
+	 * a timestamp column without gaps. The bounds are timestamp literals, or timestamp binds in {@link #toBoundSql()},
+	 * with their fractional seconds. The column isn't wrapped in a function, so an index or partition key on it can be used.
+	 * A null bound leaves that side of the range open.
+	 * 
+	 * <pre>tableName.fieldName &gt;= timestamp '2018-01-01 00:00:00' and tableName.fieldName &lt; timestamp '2018-02-01 00:00:00'</pre>
+	 * 
+	 * @param fieldName The field name with optional table name, for example "tableName.fieldName"
+	 * @param from The lower bound, inclusive
+	 * @param to The upper bound, exclusive
+	 * @return BooleanExpression
+	 */
+	public BooleanExpression range(String fieldName, LocalDateTime from, LocalDateTime to) {
+		return halfOpen(fieldName, from, to);
+	}
+	
+	/**
+	 * A half-open range on a timestamp column that holds UTC, see {@link #range(String, LocalDateTime, LocalDateTime)}.
+	 * 
+	 * @param fieldName The field name with optional table name, for example "tableName.fieldName"
+	 * @param from The lower bound, inclusive
+	 * @param to The upper bound, exclusive
+	 * @return BooleanExpression
+	 */
+	public BooleanExpression range(String fieldName, Instant from, Instant to) {
+		return halfOpen(fieldName, from, to);
+	}
+	
+	/**
+	 * The days from the start of the first day up to the start of the last day, see {@link #range(String, LocalDateTime, LocalDateTime)}.
+	 * Use the day after the last day to include it.
+	 * 
+	 * <pre>tableName.fieldName &gt;= timestamp '2018-01-01 00:00:00' and tableName.fieldName &lt; timestamp '2018-01-08 00:00:00'</pre>
+	 * 
+	 * @param fieldName The field name with optional table name, for example "tableName.fieldName"
+	 * @param from The first day, inclusive
+	 * @param to The last day, exclusive
+	 * @return BooleanExpression
+	 */
+	public BooleanExpression range(String fieldName, LocalDate from, LocalDate to) {
+		return halfOpen(fieldName, from != null ? from.atStartOfDay() : null, to != null ? to.atStartOfDay() : null);
+	}
+	
+	private BooleanExpression halfOpen(String fieldName, Temporal from, Temporal to) {
+		if(from == null && to == null) {
+			throw new IllegalArgumentException(fieldName + " needs at least one bound");
+		}
+		BooleanExpression lower = from != null ? compare(Ops.GOE, fieldName, from) : null;
+		BooleanExpression upper = to != null ? compare(Ops.LT, fieldName, to) : null;
+		return lower == null ? upper : upper == null ? lower : lower.and(upper);
+	}
+	
 	/**
 	 * Produces an expression as input for, for example: {@link #eq(String, Expression)}, {@link #gt(String, Expression)} or {@link #lt(String, Expression)}
 	 * 
@@ -574,9 +2318,25 @@ public class NativeSqlBuilder {
 	 * @return StringTemplate
 	 */
 	public StringTemplate to_timestamp(DateTime dateTime) {
-		String format = "mm/dd/yyyy hh24:mi:ss.ff3";
-		String dtAsStr = dateTime.toString("MM/dd/yyyy HH:mm:ss.S");
-		return Expressions.stringTemplate("to_timestamp({0}, {1})", dtAsStr, format);
+		String dtAsStr = formatTimestamp(dateTime);
+		return Expressions.stringTemplate("to_timestamp({0}, {1})", dtAsStr, TIMESTAMP_FORMAT);
+	}
+	
+	/**
+	 * A to_timestamp with a named placeholder, to be used in a {@link #compile()}d template. The DateTime value 
+	 * passed to the template is formatted the same way as in {@link #to_timestamp(DateTime)}.
+	 * 
+	 * <pre>to_timestamp(:dateTime, 'mm/dd/yyyy hh24:mi:ss.ff3')</pre>
+	 * 
+	 * @param dateTime A named placeholder for a DateTime, see {@link #param(String, Class)}
+	 * @return StringTemplate
+	 */
+	public StringTemplate to_timestamp(Param<DateTime> dateTime) {
+		return Expressions.stringTemplate("to_timestamp({0}, {1})", dateTime, TIMESTAMP_FORMAT);
+	}
+	
+	static String formatTimestamp(DateTime dateTime) {
+		return dateTime.toString("MM/dd/yyyy HH:mm:ss.S");
 	}
 	
 	/**
@@ -603,12 +2363,71 @@ public class NativeSqlBuilder {
 	 * Convert a java.sql.Timestamp to an org.joda.time.DateTime object, using the default locale.
 	 * @param ts The time stamp
 	 * @return A DateTime
+	 * @deprecated Use {@link #toLocalDateTimes(Timestamp...)}, which converts a batch of time stamps without Joda
 	 */
+	@Deprecated
 	public static DateTime convertSQLTimeStampToJodaDateTime(Timestamp ts) {
 		LocalDateTime ldt = ts.toLocalDateTime();
 		int millis = ldt.getNano() / 1_000_000;
 		DateTime datetime = new DateTime(ldt.getYear(), ldt.getMonthValue(), ldt.getDayOfMonth(), ldt.getHour(), ldt.getMinute(), ldt.getSecond(), millis);
 		return datetime;
 	}
+	
+	/**
+	 * Converts time stamps read from a result set to the date times they show in the default time zone, the same as
+	 * {@link Timestamp#toLocalDateTime()} but without a calendar per value: the offset of the zone is looked up once
+	 * per daylight saving period.
+	 * 
+	 * @param timestamps The time stamps, may contain nulls
+	 * @return The date times, null where the time stamp is null
+	 */
+	public static LocalDateTime[] toLocalDateTimes(Timestamp... timestamps) {
+		return toLocalDateTimes(ZoneId.systemDefault(), timestamps);
+	}
+	
+	/**
+	 * 
+	 * @param zone The time zone of the date times
+	 * @param timestamps The time stamps, may contain nulls
+	 * @return The date times, null where the time stamp is null
+	 */
+	public static LocalDateTime[] toLocalDateTimes(ZoneId zone, Timestamp... timestamps) {
+		ZoneRules rules = zone.getRules();
+		LocalDateTime[] result = new LocalDateTime[timestamps.length];
+		// the offset is valid from validFrom up to validUntil, in epoch seconds
+		long validFrom = Long.MAX_VALUE;
+		long validUntil = Long.MIN_VALUE;
+		ZoneOffset offset = null;
+		for(int i = 0; i < timestamps.length; i++) {
+			Timestamp ts = timestamps[i];
+			if(ts == null) {
+				continue;
+			}
+			long second = Math.floorDiv(ts.getTime(), 1000L);
+			if(second < validFrom || second >= validUntil) {
+				Instant instant = Instant.ofEpochSecond(second);
+				offset = rules.getOffset(instant);
+				ZoneOffsetTransition previous = rules.previousTransition(instant.plusSeconds(1));
+				ZoneOffsetTransition next = rules.nextTransition(instant);
+				validFrom = previous != null ? previous.toEpochSecond() : Long.MIN_VALUE;
+				validUntil = next != null ? next.toEpochSecond() : Long.MAX_VALUE;
+			}
+			result[i] = LocalDateTime.ofEpochSecond(second, ts.getNanos(), offset);
+		}
+		return result;
+	}
+	
+	/**
+	 * A value computed from the query, valid as long as the {@link #version()} is the same.
+	 */
+	private static final class Memo<T> {
+		
+		private final long version;
+		private final T value;
+		
+		Memo(long version, T value) {
+			this.version = version;
+			this.value = value;
+		}
+	}
 }
-
@@ -0,0 +1,356 @@
+package native;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.joda.time.DateTime;
+
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.sql.Configuration;
+import com.querydsl.sql.SQLQuery;
+import com.querydsl.sql.SQLTemplates;
+
+/**
+ * Creates {@link NativeSqlBuilder} instances that share one immutable dialect configuration. The configuration is 
+ * built and warmed up once, so a builder only costs its own query metadata. QueryDSL resolves the type of a value 
+ * class lazily in an unsynchronized map, so the warm-up resolves every value type the builder binds: a factory can be 
+ * shared between threads, as long as the queries don't bind values of other classes.
+ * 
+ * <pre>
+ * private static final NativeSqlFactory SQL = NativeSqlFactory.builder().useLiterals(false).build();
+ * 
+ * NativeSqlBuilder sql = SQL.create();
+ * </pre>
+ */
+public final class NativeSqlFactory {
+
+	/**
+	 * The Oracle dialect with unquoted identifiers and literals, as used by {@link NativeSqlBuilder#create()}.
+	 */
+	public static final NativeSqlFactory DEFAULT = builder().build();
+	
+	private static final ConcurrentMap<SqlDialect, NativeSqlFactory> BY_DIALECT = new ConcurrentHashMap<>();
+	
+	private final SqlDialect dialect;
+	private final Configuration config;
+	private final PathCache pathCache;
+	private final InListPolicy inListPolicy;
+	private final int fetchSize;
+	private final QueryListener listener;
+	private final SchemaCatalog catalog;
+	private final LintWarning.Severity strictSeverity;
+	
+	private NativeSqlFactory(Builder builder) {
+		this.dialect = builder.dialect;
+		Configuration config = new Configuration(builder.templates != null ? builder.templates : dialect.createTemplates());
+		config.setUseLiterals(builder.useLiterals);
+		config.register(new SqlArrayType(config));
+		config.register(TimestampType.LOCAL_DATE_TIME);
+		config.register(TimestampType.INSTANT);
+		this.config = config;
+		this.pathCache = new PathCache(builder.pathCacheSize);
+		this.inListPolicy = builder.inListPolicy != null ? builder.inListPolicy : dialect.getInListPolicy();
+		this.fetchSize = builder.fetchSize;
+		this.listener = builder.listeners.isEmpty() ? null 
+				: builder.listeners.size() == 1 ? builder.listeners.get(0) : new Listeners(builder.listeners);
+		this.catalog = builder.catalog;
+		this.strictSeverity = builder.strictSeverity;
+		warmUp();
+	}
+	
+	/**
+	 * The value classes the builder binds or renders as literals.
+	 */
+	private static final Class<?>[] VALUE_TYPES = { String.class, Character.class, Boolean.class, 
+			Byte.class, Short.class, Integer.class, Long.class, Float.class, Double.class, BigInteger.class, BigDecimal.class, 
+			java.sql.Date.class, Time.class, Timestamp.class, LocalDate.class, LocalTime.class, LocalDateTime.class, 
+			Instant.class, OffsetDateTime.class, ZonedDateTime.class, DateTime.class, byte[].class, SqlArray.class };
+	
+	/**
+	 * Resolves the types of the values and the templates used by the builder up front, so the first queries 
+	 * don't pay for it, and the lookups of the builders only read the resolved types.
+	 */
+	private void warmUp() {
+		for(Class<?> type : VALUE_TYPES) {
+			config.getType(null, type);
+		}
+		SQLQuery<?> q = new SQLQuery<>(config);
+		q.select(Expressions.stringPath("field")).from(Expressions.stringPath("tt")).where(Expressions.stringPath("field").eq(""));
+		q.getSQL();
+	}
+	
+	/**
+	 * A shared factory with the defaults of the dialect, created once per dialect.
+	 * 
+	 * @param dialect The dialect
+	 * @return NativeSqlFactory
+	 */
+	public static NativeSqlFactory of(SqlDialect dialect) {
+		if(dialect == StandardDialect.ORACLE_11) {
+			return DEFAULT;
+		}
+		NativeSqlFactory factory = BY_DIALECT.get(dialect);
+		if(factory == null) {
+			factory = BY_DIALECT.computeIfAbsent(dialect, d -> builder().dialect(d).build());
+		}
+		return factory;
+	}
+	
+	/**
+	 * 
+	 * @return A new NativeSqlBuilder using the configuration of this factory
+	 */
+	public NativeSqlBuilder create() {
+		NativeSqlBuilder builder = new NativeSqlBuilder(this);
+		if(listener != null) {
+			listener.created(builder);
+		}
+		return builder;
+	}
+	
+	Configuration getConfiguration() {
+		return config;
+	}
+	
+	PathCache getPathCache() {
+		return pathCache;
+	}
+	
+	/**
+	 * 
+	 * @return The listener, or null so that callers can skip measuring
+	 */
+	QueryListener getListener() {
+		return listener;
+	}
+	
+	/**
+	 * 
+	 * @return The schema catalog the builders resolve columns with, or null
+	 */
+	public SchemaCatalog getCatalog() {
+		return catalog;
+	}
+	
+	/**
+	 * 
+	 * @return The lowest severity of lint warnings that fails a query, or null if queries aren't linted
+	 */
+	public LintWarning.Severity getStrictSeverity() {
+		return strictSeverity;
+	}
+	
+	/**
+	 * 
+	 * @return The default fetch size of the builders
+	 */
+	public int getFetchSize() {
+		return fetchSize;
+	}
+	
+	/**
+	 * 
+	 * @return The settings of the IN-list strategies
+	 */
+	public InListPolicy getInListPolicy() {
+		return inListPolicy;
+	}
+	
+	/**
+	 * 
+	 * @return The dialect of this factory
+	 */
+	public SqlDialect getDialect() {
+		return dialect;
+	}
+	
+	/**
+	 * 
+	 * @return true if values are rendered as literals by {@link NativeSqlBuilder#toString()}
+	 */
+	public boolean isUseLiterals() {
+		return config.getUseLiterals();
+	}
+	
+	/**
+	 * 
+	 * @return A builder with the Oracle 11 dialect and literals as defaults
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+	
+	/**
+	 * Options for a {@link NativeSqlFactory}.
+	 */
+	public static final class Builder {
+		
+		private SqlDialect dialect = StandardDialect.ORACLE_11;
+		private SQLTemplates templates;
+		private boolean useLiterals = true;
+		private int pathCacheSize = 10_000;
+		private InListPolicy inListPolicy;
+		private int fetchSize = 500;
+		private final List<QueryListener> listeners = new ArrayList<>();
+		private SchemaCatalog catalog;
+		private LintWarning.Severity strictSeverity;
+		
+		private Builder() {
+		}
+		
+		/**
+		 * 
+		 * @param dialect The dialect, {@link StandardDialect#ORACLE_11} by default
+		 * @return Builder
+		 */
+		public Builder dialect(SqlDialect dialect) {
+			this.dialect = dialect;
+			return this;
+		}
+		
+		/**
+		 * 
+		 * @param templates The QueryDSL templates, instead of the templates of the dialect
+		 * @return Builder
+		 */
+		public Builder templates(SQLTemplates templates) {
+			this.templates = templates;
+			return this;
+		}
+		
+		/**
+		 * 
+		 * @param useLiterals true to render values as literals, false to render bind variables
+		 * @return Builder
+		 */
+		public Builder useLiterals(boolean useLiterals) {
+			this.useLiterals = useLiterals;
+			return this;
+		}
+		
+		/**
+		 * 
+		 * @param pathCacheSize The maximum number of field and table paths kept for reuse by all builders
+		 * @return Builder
+		 */
+		public Builder pathCacheSize(int pathCacheSize) {
+			this.pathCacheSize = pathCacheSize;
+			return this;
+		}
+		
+		/**
+		 * 
+		 * @param inListPolicy The settings of the IN-list strategies, instead of the defaults of the dialect
+		 * @return Builder
+		 */
+		public Builder inListPolicy(InListPolicy inListPolicy) {
+			this.inListPolicy = inListPolicy;
+			return this;
+		}
+		
+		/**
+		 * 
+		 * @param fetchSize The number of rows fetched per round trip when a builder runs its query, 0 for the driver default
+		 * @return Builder
+		 */
+		public Builder fetchSize(int fetchSize) {
+			this.fetchSize = fetchSize;
+			return this;
+		}
+		
+		/**
+		 * Adds a listener for the instrumentation events of the builders, see {@link QueryStatistics}.
+		 * 
+		 * @param listener The listener
+		 * @return Builder
+		 */
+		public Builder listener(QueryListener listener) {
+			this.listeners.add(listener);
+			return this;
+		}
+		
+		/**
+		 * With a catalog, values are compared with the type of their column, so a number compared to a character column
+		 * is rendered as a string instead of converting every value of the column, which keeps an index on it usable.
+		 * 
+		 * @param catalog The tables and columns of the schema, see {@link SchemaCatalog}
+		 * @return Builder
+		 */
+		public Builder catalog(SchemaCatalog catalog) {
+			this.catalog = catalog;
+			return this;
+		}
+		
+		/**
+		 * Strict mode: builders lint their query with {@link QueryLinter} before it runs or is compiled, and throw a
+		 * {@link QueryLintException} if it has warnings of the severity or higher. Rendering with toString isn't checked.
+		 * 
+		 * @param severity The lowest severity that fails a query, for example {@link LintWarning.Severity#ERROR}
+		 * @return Builder
+		 */
+		public Builder strict(LintWarning.Severity severity) {
+			this.strictSeverity = severity;
+			return this;
+		}
+		
+		/**
+		 * 
+		 * @return NativeSqlFactory
+		 */
+		public NativeSqlFactory build() {
+			return new NativeSqlFactory(this);
+		}
+	}
+	
+	/**
+	 * Delivers the events to more than one listener.
+	 */
+	private static final class Listeners implements QueryListener {
+		
+		private final QueryListener[] listeners;
+		
+		Listeners(List<QueryListener> listeners) {
+			this.listeners = listeners.toArray(new QueryListener[listeners.size()]);
+		}
+		
+		@Override
+		public void created(NativeSqlBuilder builder) {
+			for(QueryListener listener : listeners) {
+				listener.created(builder);
+			}
+		}
+		
+		@Override
+		public void cloned(NativeSqlBuilder source, NativeSqlBuilder clone) {
+			for(QueryListener listener : listeners) {
+				listener.cloned(source, clone);
+			}
+		}
+		
+		@Override
+		public void rendered(RenderEvent event) {
+			for(QueryListener listener : listeners) {
+				listener.rendered(event);
+			}
+		}
+		
+		@Override
+		public void executed(ExecutionEvent event) {
+			for(QueryListener listener : listeners) {
+				listener.executed(event);
+			}
+		}
+	}
+}
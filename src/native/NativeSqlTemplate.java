@@ -0,0 +1,192 @@
+package native;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.joda.time.DateTime;
+
+import com.querydsl.core.types.ParamExpression;
+import com.querydsl.core.types.ParamNotSetException;
+import com.querydsl.sql.Configuration;
+
+/**
+ * An immutable, pre-rendered query with named placeholders, produced by {@link NativeSqlBuilder#compile()}.
+ * Executing a template only splices in or binds the values, the query is not built or serialized again.
+ * Instances are thread-safe and meant to be kept in a static field.
+ * 
+ * <pre>
+ * NativeSqlBuilder sql = NativeSqlBuilder.create();
+ * sql.select("field").from("tt").where(sql.eq("field", sql.param("value")), sql.in("other", sql.listParam("others")));
+ * NativeSqlTemplate template = sql.compile();
+ * 
+ * Map&lt;String, Object&gt; values = new HashMap&lt;&gt;();
+ * values.put("value", "a");
+ * values.put("others", Arrays.asList("b", "c"));
+ * template.render(values); // select field from tt where field = 'a' and other in ('b', 'c')
+ * template.bind(values);   // select field from tt where field = ? and other in (?, ?)
+ * </pre>
+ */
+public final class NativeSqlTemplate {
+
+	private final Configuration config;
+	private final String[] fragments;
+	private final ParamExpression<?>[] slots;
+	private final Set<String> parameterNames;
+	private final int fixedLength;
+	
+	private NativeSqlTemplate(Configuration config, String[] fragments, ParamExpression<?>[] slots) {
+		this.config = config;
+		this.fragments = fragments;
+		this.slots = slots;
+		Set<String> names = new LinkedHashSet<>();
+		for(ParamExpression<?> slot : slots) {
+			names.add(slot.getName());
+		}
+		this.parameterNames = Collections.unmodifiableSet(names);
+		int length = 0;
+		for(String fragment : fragments) {
+			length += fragment.length();
+		}
+		this.fixedLength = length;
+	}
+	
+	/**
+	 * 
+	 * @param config The dialect configuration used to render literals and bind values
+	 * @param sql The SQL rendered with literals, with a '?' for every parameter
+	 * @param params The parameters in the order of their placeholders
+	 * @return NativeSqlTemplate
+	 */
+	static NativeSqlTemplate of(Configuration config, String sql, List<Object> params) {
+		String[] fragments = new String[params.size() + 1];
+		ParamExpression<?>[] slots = new ParamExpression<?>[params.size()];
+		int start = 0;
+		for(int i = 0; i < slots.length; i++) {
+			Object param = params.get(i);
+			if(!(param instanceof ParamExpression) || ((ParamExpression<?>) param).isAnon()) {
+				throw new IllegalArgumentException("Only named parameters can be compiled, found: " + param);
+			}
+			int pos = Placeholders.indexOf(sql, start);
+			fragments[i] = sql.substring(start, pos);
+			slots[i] = (ParamExpression<?>) param;
+			start = pos + 1;
+		}
+		fragments[slots.length] = sql.substring(start);
+		return new NativeSqlTemplate(config, fragments, slots);
+	}
+	
+	/**
+	 * 
+	 * @return The names of the placeholders in this template
+	 */
+	public Set<String> getParameterNames() {
+		return parameterNames;
+	}
+	
+	/**
+	 * Splices the values into the SQL as literals.
+	 * 
+	 * @param values The values by placeholder name. Placeholders from {@link NativeSqlBuilder#listParam(String)} take a Collection.
+	 * @return The SQL with literals
+	 */
+	public String render(Map<String, ?> values) {
+		StringBuilder sb = new StringBuilder(fixedLength + slots.length * 16);
+		for(int i = 0; i < slots.length; i++) {
+			sb.append(fragments[i]);
+			Object value = valueOf(slots[i], values);
+			if(value instanceof Collection) {
+				Collection<?> list = (Collection<?>) value;
+				if(list.isEmpty()) {
+					sb.append("(null)");
+					continue;
+				}
+				sb.append('(');
+				boolean first = true;
+				for(Object element : list) {
+					if(!first) {
+						sb.append(", ");
+					}
+					sb.append(config.asLiteral(element));
+					first = false;
+				}
+				sb.append(')');
+			} else {
+				sb.append(config.asLiteral(value));
+			}
+		}
+		sb.append(fragments[slots.length]);
+		return sb.toString();
+	}
+	
+	/**
+	 * Binds the values as '?' parameters.
+	 * 
+	 * @param values The values by placeholder name. Placeholders from {@link NativeSqlBuilder#listParam(String)} take a Collection.
+	 * @return BoundSql
+	 */
+	public BoundSql bind(Map<String, ?> values) {
+		return bind(values, BindStyle.QUESTION_MARK);
+	}
+	
+	/**
+	 * Binds the values as parameters.
+	 * 
+	 * @param values The values by placeholder name. Placeholders from {@link NativeSqlBuilder#listParam(String)} take a Collection.
+	 * @param style The placeholder style
+	 * @return BoundSql
+	 */
+	public BoundSql bind(Map<String, ?> values, BindStyle style) {
+		StringBuilder sb = new StringBuilder(fixedLength + slots.length * 8);
+		List<Object> constants = new ArrayList<>(slots.length);
+		for(int i = 0; i < slots.length; i++) {
+			sb.append(fragments[i]);
+			Object value = valueOf(slots[i], values);
+			if(value instanceof Collection) {
+				Collection<?> list = (Collection<?>) value;
+				if(list.isEmpty()) {
+					sb.append("(null)");
+					continue;
+				}
+				sb.append('(');
+				for(int j = 0; j < list.size(); j++) {
+					sb.append(j == 0 ? "?" : ", ?");
+				}
+				sb.append(')');
+				constants.addAll(list);
+			} else {
+				sb.append('?');
+				constants.add(value);
+			}
+		}
+		sb.append(fragments[slots.length]);
+		return BoundSql.of(config, sb.toString(), constants, style);
+	}
+	
+	private static Object valueOf(ParamExpression<?> slot, Map<String, ?> values) {
+		Object value = values.get(slot.getName());
+		if(value == null && !values.containsKey(slot.getName())) {
+			throw new ParamNotSetException(slot);
+		}
+		if(value instanceof DateTime) {
+			return NativeSqlBuilder.formatTimestamp((DateTime) value);
+		}
+		if(value != null && Collection.class.isAssignableFrom(slot.getType()) != value instanceof Collection) {
+			throw new IllegalArgumentException("Parameter " + slot.getName() + " expects " + slot.getType().getSimpleName() + ", got " + value.getClass().getSimpleName());
+		}
+		return value;
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder(fixedLength + slots.length * 8);
+		for(int i = 0; i < slots.length; i++) {
+			sb.append(fragments[i]).append(':').append(slots[i].getName());
+		}
+		return sb.append(fragments[slots.length]).toString();
+	}
+}
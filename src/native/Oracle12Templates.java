@@ -0,0 +1,37 @@
+package native;
+
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.core.QueryModifiers;
+import com.querydsl.sql.OracleTemplates;
+import com.querydsl.sql.SQLSerializer;
+
+/**
+ * Oracle 12c templates that render a limit and offset with the row-limiting clause instead of a rownum sub-query.
+ * 
+ * <pre>select field from tt order by field asc offset 20 rows fetch next 10 rows only</pre>
+ */
+final class Oracle12Templates extends OracleTemplates {
+
+	Oracle12Templates() {
+		super('\\', false);
+		newLineToSingleSpace();
+	}
+	
+	@Override
+	public void serialize(QueryMetadata metadata, boolean forCountRow, SQLSerializer context) {
+		QueryModifiers modifiers = metadata.getModifiers();
+		if(forCountRow || !modifiers.isRestricting()) {
+			super.serialize(metadata, forCountRow, context);
+			return;
+		}
+		QueryMetadata unrestricted = metadata.clone();
+		unrestricted.setModifiers(QueryModifiers.EMPTY);
+		super.serialize(unrestricted, forCountRow, context);
+		if(modifiers.getOffset() != null) {
+			context.handle(" offset {0} rows", modifiers.getOffset());
+		}
+		if(modifiers.getLimit() != null) {
+			context.handle(modifiers.getOffset() != null ? " fetch next {0} rows only" : " fetch first {0} rows only", modifiers.getLimit());
+		}
+	}
+}
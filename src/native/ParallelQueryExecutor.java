@@ -0,0 +1,391 @@
+package native;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import javax.sql.DataSource;
+
+import com.querydsl.core.types.Predicate;
+import com.querydsl.sql.Configuration;
+
+/**
+ * Runs one large query as disjoint slices in parallel, each slice on its own connection and thread, and merges the
+ * rows into one stream. Every slice has a bounded queue: a slice that is ahead of the reader waits until it takes rows,
+ * so the memory stays at most slices * queueSize rows, however large the result.
+ *
+ * <pre>
+ * try(ParallelQueryExecutor parallel = ParallelQueryExecutor.builder(dataSource).queueSize(10_000).build();
+ *     Stream&lt;Order&gt; orders = parallel.stream(sql, Split.range("id", minId, maxId, 8), Order::of)) {
+ *     orders.forEach(writer::write);
+ * }
+ * </pre>
+ *
+ * The slices don't share a transaction, so rows that change while the query runs may be seen by one slice and not
+ * by another, unlike a serial query. Use a flashback query or a quiet period where that matters.
+ */
+public final class ParallelQueryExecutor implements AutoCloseable {
+
+	private static final Object END = new Object();
+	private static final Object NULL = new Object();
+	
+	private final DataSource dataSource;
+	private final int queueSize;
+	private final ExecutorService executor;
+	private final boolean ownsExecutor;
+	
+	private ParallelQueryExecutor(Builder builder) {
+		this.dataSource = builder.dataSource;
+		this.queueSize = builder.queueSize;
+		this.ownsExecutor = builder.executor == null;
+		this.executor = builder.executor != null ? builder.executor : AsyncQueryExecutor.newDefaultExecutor();
+	}
+	
+	/**
+	 * Streams the rows of all slices in the order they arrive. The caller must close the stream; closing it early
+	 * stops the slices after their current row.
+	 *
+	 * @param sql The query, without limit or offset
+	 * @param split Divides the rows into slices
+	 * @param mapper Maps a row, called on the threads of the slices
+	 * @return Stream
+	 */
+	public <T> Stream<T> stream(NativeSqlBuilder sql, Split split, RowMapper<T> mapper) {
+		return start(sql, split, mapper, null).stream();
+	}
+	
+	/**
+	 * Streams the rows of all slices in order with a k-way merge. Each slice must return its rows in the same order,
+	 * which the order by of the query does, and the comparator must compare the rows in that order.
+	 *
+	 * @param sql The query with an order by, without limit or offset
+	 * @param split Divides the rows into slices
+	 * @param mapper Maps a row, called on the threads of the slices
+	 * @param order The order of the rows of the query
+	 * @return Stream
+	 */
+	public <T> Stream<T> streamOrdered(NativeSqlBuilder sql, Split split, RowMapper<T> mapper, Comparator<? super T> order) {
+		return start(sql, split, mapper, order).stream();
+	}
+	
+	private <T> Merge<T> start(NativeSqlBuilder sql, Split split, RowMapper<T> mapper, Comparator<? super T> order) {
+		if(sql.getSQLQuery().getMetadata().getModifiers().isRestricting()) {
+			throw new IllegalArgumentException("A query with limit or offset can't be split");
+		}
+		Merge<T> merge = new Merge<>(sql.getFactory().getConfiguration(), split.getSlices(), queueSize, order);
+		for(int i = 0; i < split.getSlices(); i++) {
+			NativeSqlBuilder slice = sql.clone();
+			Predicate predicate = split.slice(slice, i);
+			if(predicate != null) {
+				slice.where(predicate);
+			}
+			BlockingQueue<Object> queue = merge.queues.get(i);
+			merge.futures.add(executor.submit(() -> produce(slice, mapper, queue, merge)));
+		}
+		return merge;
+	}
+	
+	private <T> void produce(NativeSqlBuilder slice, RowMapper<T> mapper, BlockingQueue<Object> queue, Merge<?> merge) {
+		try(ResultSetIterator<T> rows = slice.iterate(dataSource, mapper)) {
+			while(rows.hasNext()) {
+				T row = rows.next();
+				if(!merge.put(queue, row != null ? row : NULL)) {
+					return;
+				}
+			}
+		} catch (Throwable e) {
+			// also errors, otherwise the reader would wait for the end of the slice forever
+			merge.put(queue, new Failure(e));
+			return;
+		}
+		merge.put(queue, END);
+	}
+	
+	/**
+	 * Shuts down the default executor. An executor passed to the builder isn't shut down.
+	 */
+	@Override
+	public void close() {
+		if(ownsExecutor) {
+			executor.shutdown();
+		}
+	}
+	
+	/**
+	 * An error of a slice, passed through its queue to the reader.
+	 */
+	private static final class Failure {
+		
+		private final Throwable cause;
+		
+		Failure(Throwable cause) {
+			this.cause = cause;
+		}
+	}
+	
+	/**
+	 * Reads the queues of the slices: round-robin without a comparator, otherwise the smallest head first.
+	 */
+	private static final class Merge<T> implements Iterator<T> {
+		
+		private final Configuration config;
+		private final List<BlockingQueue<Object>> queues;
+		private final List<Future<?>> futures = new ArrayList<>();
+		private final Comparator<? super T> order;
+		private final boolean[] finished;
+		private PriorityQueue<Head> heads;
+		private int live;
+		private int cursor;
+		private Object next;
+		private volatile boolean closed;
+		
+		Merge(Configuration config, int slices, int queueSize, Comparator<? super T> order) {
+			this.config = config;
+			this.queues = new ArrayList<>(slices);
+			for(int i = 0; i < slices; i++) {
+				queues.add(new ArrayBlockingQueue<>(queueSize));
+			}
+			this.order = order;
+			this.finished = new boolean[slices];
+			this.live = slices;
+		}
+		
+		/**
+		 * Waits for space in the queue, until the reader closes the stream.
+		 *
+		 * @return false if the stream is closed
+		 */
+		boolean put(BlockingQueue<Object> queue, Object element) {
+			try {
+				while(!closed) {
+					if(queue.offer(element, 50, TimeUnit.MILLISECONDS)) {
+						return true;
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return false;
+		}
+		
+		Stream<T> stream() {
+			return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, order != null ? Spliterator.ORDERED : 0), false)
+					.onClose(this::close);
+		}
+		
+		@Override
+		public boolean hasNext() {
+			if(next == null && !closed) {
+				next = order == null ? nextArrived() : nextInOrder();
+				if(next == END) {
+					close();
+				}
+			}
+			return next != null && next != END;
+		}
+		
+		@Override
+		@SuppressWarnings("unchecked")
+		public T next() {
+			if(!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			Object row = next;
+			next = null;
+			return row == NULL ? null : (T) row;
+		}
+		
+		private Object nextArrived() {
+			while(live > 0) {
+				for(int n = 0; n < queues.size(); n++) {
+					int slice = cursor;
+					cursor = (cursor + 1) % queues.size();
+					if(finished[slice]) {
+						continue;
+					}
+					Object element = check(queues.get(slice).poll());
+					if(element == END) {
+						finished[slice] = true;
+						live--;
+					} else if(element != null) {
+						return element;
+					}
+				}
+				if(live > 0) {
+					// nothing has arrived, wait for the next slice that is still running
+					while(finished[cursor]) {
+						cursor = (cursor + 1) % queues.size();
+					}
+					Object element = check(poll(queues.get(cursor)));
+					if(element == END) {
+						finished[cursor] = true;
+						live--;
+					} else if(element != null) {
+						return element;
+					}
+				}
+			}
+			return END;
+		}
+		
+		@SuppressWarnings("unchecked")
+		private Object nextInOrder() {
+			if(heads == null) {
+				heads = new PriorityQueue<>(queues.size(), (a, b) -> order.compare((T) a.unwrap(), (T) b.unwrap()));
+				for(int slice = 0; slice < queues.size(); slice++) {
+					take(slice);
+				}
+			}
+			Head head = heads.poll();
+			if(head == null) {
+				return END;
+			}
+			take(head.slice);
+			return head.row;
+		}
+		
+		private void take(int slice) {
+			Object element;
+			try {
+				element = check(queues.get(slice).take());
+			} catch (InterruptedException e) {
+				close();
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while waiting for slice " + slice, e);
+			}
+			if(element != END) {
+				heads.add(new Head(element, slice));
+			}
+		}
+		
+		private Object poll(BlockingQueue<Object> queue) {
+			try {
+				return queue.poll(10, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				close();
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while waiting for rows", e);
+			}
+		}
+		
+		/**
+		 * Closes the stream and throws the error of a slice.
+		 */
+		private Object check(Object element) {
+			if(element instanceof Failure) {
+				close();
+				Throwable cause = ((Failure) element).cause;
+				if(cause instanceof SQLException) {
+					throw config.translate((SQLException) cause);
+				}
+				if(cause instanceof Error) {
+					throw (Error) cause;
+				}
+				throw cause instanceof RuntimeException ? (RuntimeException) cause : new IllegalStateException(cause);
+			}
+			return element;
+		}
+		
+		/**
+		 * Stops the slices after their current row; they close their statements and connections.
+		 */
+		void close() {
+			if(closed) {
+				return;
+			}
+			closed = true;
+			next = null;
+			for(Future<?> future : futures) {
+				future.cancel(false);
+			}
+			for(BlockingQueue<Object> queue : queues) {
+				queue.clear();
+			}
+		}
+	}
+	
+	/**
+	 * The next row of a slice in the k-way merge.
+	 */
+	private static final class Head {
+		
+		private final Object row;
+		private final int slice;
+		
+		Head(Object row, int slice) {
+			this.row = row;
+			this.slice = slice;
+		}
+		
+		Object unwrap() {
+			return row == NULL ? null : row;
+		}
+	}
+	
+	/**
+	 *
+	 * @param dataSource The DataSource of the connections, it needs one free connection per slice
+	 * @return A builder with a queue of 1000 rows per slice as default
+	 */
+	public static Builder builder(DataSource dataSource) {
+		return new Builder(dataSource);
+	}
+	
+	/**
+	 * Options for a {@link ParallelQueryExecutor}.
+	 */
+	public static final class Builder {
+		
+		private final DataSource dataSource;
+		private int queueSize = 1000;
+		private ExecutorService executor;
+		
+		private Builder(DataSource dataSource) {
+			this.dataSource = dataSource;
+		}
+		
+		/**
+		 *
+		 * @param queueSize The maximum number of rows a slice reads ahead of the stream
+		 * @return Builder
+		 */
+		public Builder queueSize(int queueSize) {
+			if(queueSize < 1) {
+				throw new IllegalArgumentException("The queue size must be positive");
+			}
+			this.queueSize = queueSize;
+			return this;
+		}
+		
+		/**
+		 *
+		 * @param executor The executor to run the slices on, instead of virtual threads; it needs a thread per slice
+		 * @return Builder
+		 */
+		public Builder executor(ExecutorService executor) {
+			this.executor = executor;
+			return this;
+		}
+		
+		/**
+		 *
+		 * @return ParallelQueryExecutor
+		 */
+		public ParallelQueryExecutor build() {
+			return new ParallelQueryExecutor(this);
+		}
+	}
+}
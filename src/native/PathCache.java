@@ -0,0 +1,93 @@
+package native;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.core.types.dsl.NumberPath;
+import com.querydsl.core.types.dsl.StringPath;
+
+/**
+ * A bounded, thread-safe cache of path objects by qualified name and type. Paths are immutable, so the same 
+ * instance is shared by all builders of a {@link NativeSqlFactory}.
+ * 
+ * <pre>"schema.table.column" = column with parent "schema.table" with parent "schema"</pre>
+ * 
+ * When the cache is full it is cleared, so one-off names can't pin memory.
+ */
+final class PathCache {
+
+	private final int maxSize;
+	private final AtomicInteger size = new AtomicInteger();
+	private final ConcurrentMap<Class<?>, ConcurrentMap<String, Path<?>>> pathsByType = new ConcurrentHashMap<>();
+	
+	PathCache(int maxSize) {
+		this.maxSize = maxSize;
+	}
+	
+	/**
+	 * 
+	 * @param name The qualified name, for example "tableName.fieldName"
+	 * @return StringPath
+	 */
+	StringPath stringPath(String name) {
+		ConcurrentMap<String, Path<?>> paths = paths(String.class);
+		StringPath path = (StringPath) paths.get(name);
+		if(path == null) {
+			int dot = lastSeparator(name);
+			path = dot < 0 ? Expressions.stringPath(name) : Expressions.stringPath(stringPath(name.substring(0, dot)), name.substring(dot + 1));
+			path = put(paths, name, path);
+		}
+		return path;
+	}
+	
+	/**
+	 * 
+	 * @param type The number type, for example Integer.class
+	 * @param name The qualified name, for example "tableName.fieldName"
+	 * @return NumberPath
+	 */
+	@SuppressWarnings("unchecked")
+	<T extends Number & Comparable<?>> NumberPath<T> numberPath(Class<T> type, String name) {
+		ConcurrentMap<String, Path<?>> paths = paths(type);
+		NumberPath<T> path = (NumberPath<T>) paths.get(name);
+		if(path == null) {
+			int dot = lastSeparator(name);
+			path = dot < 0 ? Expressions.numberPath(type, name) : Expressions.numberPath(type, stringPath(name.substring(0, dot)), name.substring(dot + 1));
+			path = put(paths, name, path);
+		}
+		return path;
+	}
+	
+	private ConcurrentMap<String, Path<?>> paths(Class<?> type) {
+		ConcurrentMap<String, Path<?>> paths = pathsByType.get(type);
+		if(paths == null) {
+			paths = pathsByType.computeIfAbsent(type, t -> new ConcurrentHashMap<>());
+		}
+		return paths;
+	}
+	
+	@SuppressWarnings("unchecked")
+	private <P extends Path<?>> P put(ConcurrentMap<String, Path<?>> paths, String name, P path) {
+		if(size.incrementAndGet() > maxSize) {
+			size.set(0);
+			pathsByType.clear();
+			return path;
+		}
+		Path<?> existing = paths.putIfAbsent(name, path);
+		return existing != null ? (P) existing : path;
+	}
+	
+	/**
+	 * Single pass, non-regex split of a qualified name into its parent and its last part.
+	 * 
+	 * @param name The qualified name
+	 * @return The index of the last '.' that separates two non-empty parts, or -1
+	 */
+	static int lastSeparator(String name) {
+		int dot = name.lastIndexOf('.');
+		return dot > 0 && dot < name.length() - 1 && name.charAt(dot - 1) != '.' ? dot : -1;
+	}
+}
@@ -0,0 +1,33 @@
+package native;
+
+/**
+ * Locates '?' placeholders in rendered SQL, skipping quoted literals and quoted identifiers.
+ */
+final class Placeholders {
+
+	private Placeholders() {
+	}
+	
+	/**
+	 * 
+	 * @param sql The SQL to scan
+	 * @param fromIndex The index to start from, must not be inside a quoted section
+	 * @return The index of the next placeholder, or -1
+	 */
+	static int indexOf(String sql, int fromIndex) {
+		char quote = 0;
+		for(int i = fromIndex; i < sql.length(); i++) {
+			char c = sql.charAt(i);
+			if(quote != 0) {
+				if(c == quote) {
+					quote = 0;
+				}
+			} else if(c == '\'' || c == '"') {
+				quote = c;
+			} else if(c == '?') {
+				return i;
+			}
+		}
+		return -1;
+	}
+}
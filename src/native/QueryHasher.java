@@ -0,0 +1,231 @@
+package native;
+
+import java.util.Collection;
+import java.util.List;
+
+import com.querydsl.core.JoinExpression;
+import com.querydsl.core.QueryFlag;
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.core.QueryModifiers;
+import com.querydsl.core.types.Constant;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.FactoryExpression;
+import com.querydsl.core.types.Operation;
+import com.querydsl.core.types.Operator;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.ParamExpression;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.PathMetadata;
+import com.querydsl.core.types.SubQueryExpression;
+import com.querydsl.core.types.TemplateExpression;
+import com.querydsl.core.types.Visitor;
+
+/**
+ * Computes the fingerprint of a query from its metadata: a 64 bit FNV-1a hash of the clauses, operators, names and
+ * templates, with every value replaced by the same marker. A list of values counts as one value, so queries that
+ * only differ in their values or IN-list lengths get the same fingerprint. That includes the IN lists with one value, 
+ * which are rendered as <code>field = value</code>, and the large lists split into chunks, see {@link #inListTarget(Operator, List)}.
+ * The hash only depends on the query, so it is stable across JVMs.
+ */
+final class QueryHasher implements Visitor<Void, Void> {
+
+	private static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+	private static final long PRIME = 0x100000001b3L;
+	private static final char VALUE = '?';
+	
+	private long hash = OFFSET_BASIS;
+	
+	static long hash(QueryMetadata metadata) {
+		QueryHasher hasher = new QueryHasher();
+		hasher.add(metadata);
+		return hasher.hash;
+	}
+	
+	private void add(char c) {
+		hash ^= c;
+		hash *= PRIME;
+	}
+	
+	private void add(String s) {
+		for(int i = 0; i < s.length(); i++) {
+			add(s.charAt(i));
+		}
+		// separates the adjacent names
+		add('\0');
+	}
+	
+	private void add(Expression<?> expr) {
+		if(expr == null) {
+			add('\1');
+		} else {
+			expr.accept(this, null);
+		}
+	}
+	
+	private void add(QueryMetadata metadata) {
+		add(metadata.isDistinct() ? "select distinct" : "select");
+		add(metadata.getProjection());
+		long flags = 0;
+		for(QueryFlag flag : metadata.getFlags()) {
+			// the order of the flags of a position is the order they were added in, but the set doesn't promise it
+			QueryHasher flagHasher = new QueryHasher();
+			flagHasher.add(flag.getPosition().name());
+			flagHasher.add(flag.getFlag());
+			flags += flagHasher.hash;
+		}
+		add(Long.toHexString(flags));
+		for(JoinExpression join : metadata.getJoins()) {
+			add(join.getType().name());
+			add(join.getTarget());
+			add(join.getCondition());
+		}
+		add("where");
+		add(metadata.getWhere());
+		add("group by");
+		for(Expression<?> group : metadata.getGroupBy()) {
+			add(group);
+		}
+		add("having");
+		add(metadata.getHaving());
+		add("order by");
+		for(OrderSpecifier<?> order : metadata.getOrderBy()) {
+			add(order.getTarget());
+			add(order.getOrder().name());
+			add(order.getNullHandling().name());
+		}
+		QueryModifiers modifiers = metadata.getModifiers();
+		add(modifiers.getLimit() != null ? "limit" : "");
+		add(modifiers.getOffset() != null ? "offset" : "");
+	}
+	
+	@Override
+	public Void visit(Constant<?> expr, Void context) {
+		add(VALUE);
+		return null;
+	}
+	
+	@Override
+	public Void visit(FactoryExpression<?> expr, Void context) {
+		add(expr.getType().getName());
+		for(Expression<?> arg : expr.getArgs()) {
+			add(arg);
+		}
+		return null;
+	}
+	
+	/**
+	 * Recognizes the forms an IN list is rendered in, depending on its length:
+	 * 
+	 * <pre>
+	 * field in (v1, v2)
+	 * field = v1
+	 * (field in (v1, ..., v1000) or field in (v1001, ...))
+	 * </pre>
+	 * 
+	 * @param operator The operator of an operation
+	 * @param args The arguments of the operation
+	 * @return The field or list of fields of the IN list, or null if the operation isn't an IN list
+	 */
+	static Expression<?> inListTarget(Operator operator, List<? extends Expression<?>> args) {
+		if(operator == Ops.IN && args.size() == 2 && (isList(args.get(1)) || isCollection(args.get(1)))) {
+			return args.get(0);
+		}
+		// a single tuple is compared with =
+		if(operator == Ops.EQ && args.size() == 2 && (args.get(1) instanceof InListValue || isList(args.get(0)))) {
+			return args.get(0);
+		}
+		if(operator == Ops.OR && args.size() == 2) {
+			// the chunks are or-ed from left to right, the right one is never a chain
+			Expression<?> right = inListTarget(args.get(1));
+			if(right != null && right.equals(inListTarget(args.get(0)))) {
+				return right;
+			}
+		}
+		return null;
+	}
+	
+	private static Expression<?> inListTarget(Expression<?> expr) {
+		if(expr instanceof Operation) {
+			return inListTarget(((Operation<?>) expr).getOperator(), ((Operation<?>) expr).getArgs());
+		}
+		return null;
+	}
+	
+	static boolean isCollection(Expression<?> expr) {
+		return expr instanceof Constant && ((Constant<?>) expr).getConstant() instanceof Collection;
+	}
+	
+	@Override
+	public Void visit(Operation<?> expr, Void context) {
+		Expression<?> inList = inListTarget(expr.getOperator(), expr.getArgs());
+		if(inList != null) {
+			add(Ops.IN.name());
+			add(inList);
+			add(VALUE);
+			add(')');
+			return null;
+		}
+		add(expr.getOperator().name());
+		if(expr.getOperator() == Ops.NOT_IN && isList(expr.getArg(1))) {
+			// a list of tuples counts as its first tuple
+			add(expr.getArg(0));
+			Expression<?> first = expr.getArg(1);
+			while(isList(first)) {
+				first = ((Operation<?>) first).getArg(0);
+			}
+			add(first);
+			add(')');
+			return null;
+		}
+		for(Expression<?> arg : expr.getArgs()) {
+			add(arg);
+		}
+		add(')');
+		return null;
+	}
+	
+	static boolean isList(Expression<?> expr) {
+		return expr instanceof Operation && ((Operation<?>) expr).getOperator() == Ops.LIST;
+	}
+	
+	@Override
+	public Void visit(ParamExpression<?> expr, Void context) {
+		add(':');
+		add(expr.getName());
+		return null;
+	}
+	
+	@Override
+	public Void visit(Path<?> expr, Void context) {
+		PathMetadata metadata = expr.getMetadata();
+		if(metadata.getParent() != null) {
+			add(metadata.getParent());
+		}
+		add(metadata.getPathType().name());
+		add(String.valueOf(metadata.getElement()));
+		return null;
+	}
+	
+	@Override
+	public Void visit(SubQueryExpression<?> expr, Void context) {
+		add('(');
+		add(expr.getMetadata());
+		add(')');
+		return null;
+	}
+	
+	@Override
+	public Void visit(TemplateExpression<?> expr, Void context) {
+		add(expr.getTemplate().toString());
+		for(Object arg : expr.getArgs()) {
+			if(arg instanceof Expression) {
+				add((Expression<?>) arg);
+			} else {
+				add(VALUE);
+			}
+		}
+		add(')');
+		return null;
+	}
+}
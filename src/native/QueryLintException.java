@@ -0,0 +1,26 @@
+package native;
+
+import java.util.List;
+
+/**
+ * Thrown when a query of a strict factory has lint warnings, see {@link NativeSqlFactory.Builder#strict(LintWarning.Severity)}.
+ */
+public final class QueryLintException extends IllegalStateException {
+
+	private static final long serialVersionUID = 1L;
+	
+	private final transient List<LintWarning> warnings;
+	
+	QueryLintException(List<LintWarning> warnings) {
+		super(QueryLinter.describe(warnings));
+		this.warnings = warnings;
+	}
+	
+	/**
+	 * 
+	 * @return The warnings that made the query fail
+	 */
+	public List<LintWarning> getWarnings() {
+		return warnings;
+	}
+}
@@ -0,0 +1,288 @@
+package native;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import com.querydsl.core.JoinExpression;
+import com.querydsl.core.JoinType;
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.core.types.Constant;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.FactoryExpression;
+import com.querydsl.core.types.Operation;
+import com.querydsl.core.types.Operator;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.ParamExpression;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.PathMetadata;
+import com.querydsl.core.types.SubQueryExpression;
+import com.querydsl.core.types.TemplateExpression;
+import com.querydsl.core.types.Visitor;
+
+/**
+ * Finds the anti-patterns that keep the database from using an index, or that make a query read far more rows than
+ * intended, in the metadata of a builder and its sub-queries, without running or rendering the query. See
+ * {@link LintWarning.Rule} for the checks, the type checks need a {@link SchemaCatalog}.
+ * 
+ * <pre>
+ * QueryLinter.assertClean(sql);
+ * 
+ * for(LintWarning warning : QueryLinter.lint(sql)) {
+ *     log.warn(warning.toString());
+ * }
+ * </pre>
+ * 
+ * A factory in strict mode lints every query before it runs, see {@link NativeSqlFactory.Builder#strict(LintWarning.Severity)}.
+ */
+public final class QueryLinter implements Visitor<Void, Void> {
+
+	/**
+	 * The maximum number of values of an Oracle IN list.
+	 */
+	static final int MAX_IN_LIST = 1000;
+	
+	private static final Set<Ops> PREDICATES = EnumSet.of(Ops.EQ, Ops.NE, Ops.LT, Ops.GT, Ops.LOE, Ops.GOE, Ops.BETWEEN,
+			Ops.IN, Ops.NOT_IN, Ops.LIKE, Ops.LIKE_ESCAPE, Ops.LIKE_IC, Ops.LIKE_ESCAPE_IC, Ops.STARTS_WITH, Ops.STARTS_WITH_IC,
+			Ops.ENDS_WITH, Ops.ENDS_WITH_IC, Ops.STRING_CONTAINS, Ops.STRING_CONTAINS_IC, Ops.EQ_IGNORE_CASE);
+	private static final Set<Ops> WILDCARD_FIRST = EnumSet.of(Ops.ENDS_WITH, Ops.ENDS_WITH_IC, Ops.STRING_CONTAINS, Ops.STRING_CONTAINS_IC);
+	private static final Set<JoinType> CONDITIONAL_JOINS = EnumSet.of(JoinType.JOIN, JoinType.INNERJOIN, JoinType.LEFTJOIN, 
+			JoinType.RIGHTJOIN, JoinType.FULLJOIN);
+	
+	/**
+	 * A function call with a column or a template argument inside, not count(*).
+	 */
+	private static final Pattern FUNCTION = Pattern.compile("[A-Za-z_][\\w$#.]*\\s*\\(.*[A-Za-z_{].*\\)", Pattern.DOTALL);
+	
+	private final NativeSqlBuilder sql;
+	private final List<LintWarning> warnings;
+	private final Set<NativeSqlBuilder> linted;
+	private final Map<String, Integer> inValues = new LinkedHashMap<>();
+	
+	private QueryLinter(NativeSqlBuilder sql, List<LintWarning> warnings, Set<NativeSqlBuilder> linted) {
+		this.sql = sql;
+		this.warnings = warnings;
+		this.linted = linted;
+	}
+	
+	/**
+	 * 
+	 * @param sql The query
+	 * @return The warnings of the query and its sub-queries, empty if there are none
+	 */
+	public static List<LintWarning> lint(NativeSqlBuilder sql) {
+		List<LintWarning> warnings = new ArrayList<>();
+		new QueryLinter(sql, warnings, Collections.newSetFromMap(new IdentityHashMap<>())).lintQuery();
+		for(String column : sql.getUnknownColumns()) {
+			warnings.add(new LintWarning(LintWarning.Rule.UNKNOWN_COLUMN, column, column + " is not a column of the tables in the catalog"));
+		}
+		return Collections.unmodifiableList(warnings);
+	}
+	
+	/**
+	 * For unit tests of the queries of an application.
+	 * 
+	 * @param sql The query
+	 * @throws AssertionError If the query has warnings of any severity
+	 */
+	public static void assertClean(NativeSqlBuilder sql) {
+		List<LintWarning> warnings = lint(sql);
+		if(!warnings.isEmpty()) {
+			throw new AssertionError(describe(warnings));
+		}
+	}
+	
+	/**
+	 * 
+	 * @param sql The query
+	 * @param severity The lowest severity that fails the query
+	 * @throws QueryLintException If the query has warnings of the severity or higher
+	 */
+	public static void check(NativeSqlBuilder sql, LintWarning.Severity severity) {
+		check(lint(sql), severity);
+	}
+	
+	static void check(List<LintWarning> warnings, LintWarning.Severity severity) {
+		List<LintWarning> failed = warnings.stream().filter(w -> w.getSeverity().compareTo(severity) >= 0).collect(Collectors.toList());
+		if(!failed.isEmpty()) {
+			throw new QueryLintException(Collections.unmodifiableList(failed));
+		}
+	}
+	
+	static String describe(List<LintWarning> warnings) {
+		return warnings.size() + " lint warning(s):\n" + warnings.stream().map(LintWarning::toString).collect(Collectors.joining("\n"));
+	}
+	
+	private void lintQuery() {
+		QueryMetadata metadata = sql.getSQLQuery().getMetadata();
+		for(JoinExpression join : metadata.getJoins()) {
+			if(CONDITIONAL_JOINS.contains(join.getType()) && join.getCondition() == null) {
+				warn(LintWarning.Rule.JOIN_WITHOUT_ON, join.getTarget().toString(), "join without on combines every row with every row of the other tables");
+			}
+			add(join.getCondition());
+		}
+		if(isPlaceholder(metadata.getWhere())) {
+			warn(LintWarning.Rule.PLACEHOLDER_ONLY, metadata.getWhere().toString(), "the placeholder is the only predicate, the query reads all rows");
+		}
+		add(metadata.getWhere());
+		add(metadata.getHaving());
+		for(Map.Entry<String, Integer> column : inValues.entrySet()) {
+			if(column.getValue() >= MAX_IN_LIST) {
+				warn(LintWarning.Rule.LARGE_IN_LIST, column.getKey(), column.getValue() + " values in IN lists, use InListStrategy.COLLECTION or TEMP_TABLE");
+			}
+		}
+		// a sub-query used in several places is linted once
+		for(NativeSqlBuilder subQuery : sql.getSubQueries()) {
+			if(linted.add(subQuery)) {
+				new QueryLinter(subQuery, warnings, linted).lintQuery();
+			}
+		}
+	}
+	
+	private void warn(LintWarning.Rule rule, String target, String message) {
+		warnings.add(new LintWarning(rule, target, message));
+	}
+	
+	private void add(Expression<?> expr) {
+		if(expr != null) {
+			expr.accept(this, null);
+		}
+	}
+	
+	/**
+	 * <pre>1 = 1</pre>
+	 */
+	private static boolean isPlaceholder(Expression<?> where) {
+		if(!(where instanceof Operation) || ((Operation<?>) where).getOperator() != Ops.EQ) {
+			return false;
+		}
+		Operation<?> eq = (Operation<?>) where;
+		return eq.getArg(0) instanceof TemplateExpression && "1".equals(((TemplateExpression<?>) eq.getArg(0)).getTemplate().toString())
+				&& eq.getArg(1) instanceof Constant && Integer.valueOf(1).equals(((Constant<?>) eq.getArg(1)).getConstant());
+	}
+	
+	@Override
+	public Void visit(Operation<?> expr, Void context) {
+		Operator op = expr.getOperator();
+		if(op instanceof Ops && PREDICATES.contains(op) && expr.getArgs().size() >= 2) {
+			Expression<?> left = expr.getArg(0);
+			Expression<?> right = expr.getArg(1);
+			if(isFunction(left)) {
+				warn(LintWarning.Rule.FUNCTION_ON_COLUMN, left.toString(), "a function on the column keeps an index on it from being used, "
+						+ "compare the column itself or use a function-based index");
+			}
+			if(WILDCARD_FIRST.contains(op) || (op == Ops.LIKE || op == Ops.LIKE_ESCAPE || op == Ops.LIKE_IC || op == Ops.LIKE_ESCAPE_IC) 
+					&& right instanceof Constant && startsWithWildcard(((Constant<?>) right).getConstant())) {
+				warn(LintWarning.Rule.LEADING_WILDCARD, left.toString(), "like " + right + " starts with a wildcard, so no index on " + left + " can be used");
+			}
+			checkTypes(left, right);
+			if((op == Ops.IN || op == Ops.NOT_IN) && (isList(right) || right instanceof Constant && ((Constant<?>) right).getConstant() instanceof Collection)) {
+				int size = isList(right) ? InValueCounter.listSize(right) : ((Collection<?>) ((Constant<?>) right).getConstant()).size();
+				inValues.merge(left.toString(), size, Integer::sum);
+				return null;
+			}
+		}
+		for(Expression<?> arg : expr.getArgs()) {
+			add(arg);
+		}
+		return null;
+	}
+	
+	private static boolean isList(Expression<?> expr) {
+		return expr instanceof Operation && ((Operation<?>) expr).getOperator() == Ops.LIST;
+	}
+	
+	private static boolean isFunction(Expression<?> expr) {
+		if(expr instanceof TemplateExpression) {
+			return FUNCTION.matcher(((TemplateExpression<?>) expr).getTemplate().toString()).matches();
+		}
+		if(expr instanceof Path) {
+			// a field name like "trunc(tt.created)" is split at the dot into a parent and an element
+			return FUNCTION.matcher(expr.toString()).matches();
+		}
+		return false;
+	}
+	
+	private static boolean startsWithWildcard(Object pattern) {
+		return pattern instanceof String && (((String) pattern).startsWith("%") || ((String) pattern).startsWith("_"));
+	}
+	
+	/**
+	 * A character column compared to a number, or a numeric column to a string or a column of the other kind.
+	 */
+	private void checkTypes(Expression<?> left, Expression<?> right) {
+		SchemaCatalog.Column column = column(left);
+		if(column == null) {
+			return;
+		}
+		while(isList(right)) {
+			right = ((Operation<?>) right).getArg(0);
+		}
+		Object value = right instanceof Constant ? ((Constant<?>) right).getConstant() : null;
+		SchemaCatalog.Column other = column(right);
+		boolean mismatch = column.isCharacter() && (value instanceof Number || other != null && other.isNumeric()) 
+				|| column.isNumeric() && (value instanceof String || other != null && other.isCharacter());
+		if(mismatch) {
+			warn(LintWarning.Rule.TYPE_MISMATCH, left.toString(), left + " is " + column.getTypeName() + " but is compared to " + right 
+					+ ", the implicit conversion can keep an index from being used");
+		}
+	}
+	
+	private SchemaCatalog.Column column(Expression<?> expr) {
+		if(!(expr instanceof Path)) {
+			return null;
+		}
+		PathMetadata metadata = ((Path<?>) expr).getMetadata();
+		String name = String.valueOf(metadata.getElement());
+		return sql.column(metadata.getParent() != null ? metadata.getParent() + "." + name : name);
+	}
+	
+	@Override
+	public Void visit(Constant<?> expr, Void context) {
+		return null;
+	}
+	
+	@Override
+	public Void visit(FactoryExpression<?> expr, Void context) {
+		for(Expression<?> arg : expr.getArgs()) {
+			add(arg);
+		}
+		return null;
+	}
+	
+	@Override
+	public Void visit(ParamExpression<?> expr, Void context) {
+		return null;
+	}
+	
+	@Override
+	public Void visit(Path<?> expr, Void context) {
+		return null;
+	}
+	
+	/**
+	 * The builders of the sub-queries are linted on their own.
+	 */
+	@Override
+	public Void visit(SubQueryExpression<?> expr, Void context) {
+		return null;
+	}
+	
+	@Override
+	public Void visit(TemplateExpression<?> expr, Void context) {
+		for(Object arg : expr.getArgs()) {
+			if(arg instanceof Expression) {
+				add((Expression<?>) arg);
+			}
+		}
+		return null;
+	}
+}
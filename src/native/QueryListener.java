@@ -0,0 +1,46 @@
+package native;
+
+/**
+ * Receives the instrumentation events of the builders of a factory, see {@link NativeSqlFactory.Builder#listener(QueryListener)}.
+ * Events are delivered synchronously on the thread that uses the builder, so a listener must be thread-safe, fast and 
+ * must not throw. Without a listener no events are created and no time is measured.
+ * 
+ * <pre>
+ * QueryStatistics stats = new QueryStatistics();
+ * NativeSqlFactory factory = NativeSqlFactory.builder().listener(stats).build();
+ * </pre>
+ */
+public interface QueryListener {
+
+	/**
+	 * 
+	 * @param builder A new builder of the factory
+	 */
+	default void created(NativeSqlBuilder builder) {
+	}
+	
+	/**
+	 * 
+	 * @param source The cloned builder
+	 * @param clone The clone
+	 */
+	default void cloned(NativeSqlBuilder source, NativeSqlBuilder clone) {
+	}
+	
+	/**
+	 * Called when a builder serializes its query, by {@link NativeSqlBuilder#toString()} when the cached SQL is outdated, 
+	 * {@link NativeSqlBuilder#toBoundSql()} or {@link NativeSqlBuilder#compile()}.
+	 * 
+	 * @param event The rendering
+	 */
+	default void rendered(RenderEvent event) {
+	}
+	
+	/**
+	 * Called when the rows of a query run by the builder have been read, or the iterator is closed early.
+	 * 
+	 * @param event The execution
+	 */
+	default void executed(ExecutionEvent event) {
+	}
+}
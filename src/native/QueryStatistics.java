@@ -0,0 +1,229 @@
+package native;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link QueryListener} that records latency histograms per query fingerprint, so queries that only differ 
+ * in their values are counted together. Recording is lock-free once the fingerprint has been seen.
+ * 
+ * The number of fingerprints is bounded, so queries built from arbitrary text can't pin memory. Once the limit is 
+ * reached, queries with new fingerprints are only counted, see {@link #getDropped()}.
+ */
+public class QueryStatistics implements QueryListener {
+
+	private static final int DEFAULT_MAX_ENTRIES = 10_000;
+	
+	private final int maxEntries;
+	private final AtomicInteger size = new AtomicInteger();
+	private final ConcurrentMap<Long, Entry> entries = new ConcurrentHashMap<>();
+	private final LongAdder created = new LongAdder();
+	private final LongAdder cloned = new LongAdder();
+	private final LongAdder dropped = new LongAdder();
+	
+	public QueryStatistics() {
+		this(DEFAULT_MAX_ENTRIES);
+	}
+	
+	/**
+	 * 
+	 * @param maxEntries The maximum number of fingerprints recorded
+	 */
+	public QueryStatistics(int maxEntries) {
+		if(maxEntries <= 0) {
+			throw new IllegalArgumentException("maxEntries must be positive: " + maxEntries);
+		}
+		this.maxEntries = maxEntries;
+	}
+	
+	@Override
+	public void created(NativeSqlBuilder builder) {
+		created.increment();
+	}
+	
+	@Override
+	public void cloned(NativeSqlBuilder source, NativeSqlBuilder clone) {
+		cloned.increment();
+	}
+	
+	@Override
+	public void rendered(RenderEvent event) {
+		Entry entry = entry(event.getFingerprint(), event.getBuilder());
+		if(entry == null) {
+			return;
+		}
+		entry.render.record(event.getNanos());
+		entry.inValues.record(event.getInValueCount());
+	}
+	
+	@Override
+	public void executed(ExecutionEvent event) {
+		Entry entry = entry(event.getFingerprint(), event.getBuilder());
+		if(entry == null) {
+			return;
+		}
+		entry.prepare.record(event.getPrepareNanos());
+		entry.execute.record(event.getExecuteNanos());
+		entry.fetch.record(event.getFetchNanos());
+		entry.rows.add(event.getRows());
+	}
+	
+	/**
+	 * The entry keeps the normalized SQL, which has no values that could be large or personal data. The SQL is only 
+	 * normalized for a new fingerprint, by its first event: the rendering, when the builder still has that query.
+	 */
+	private Entry entry(long fingerprint, NativeSqlBuilder builder) {
+		Entry entry = entries.get(fingerprint);
+		if(entry == null) {
+			String sql = builder.normalizedSql();
+			entry = entries.computeIfAbsent(fingerprint, f -> size.get() < maxEntries && size.incrementAndGet() <= maxEntries ? new Entry(sql) : null);
+			if(entry == null) {
+				dropped.increment();
+			}
+		}
+		return entry;
+	}
+	
+	/**
+	 * 
+	 * @param fingerprint The fingerprint of a query, see {@link RenderEvent#getFingerprint()}
+	 * @return The statistics of the query, or null if it hasn't been seen
+	 */
+	public Entry get(long fingerprint) {
+		return entries.get(fingerprint);
+	}
+	
+	/**
+	 * 
+	 * @return The statistics by query fingerprint
+	 */
+	public Map<Long, Entry> getEntries() {
+		return Collections.unmodifiableMap(entries);
+	}
+	
+	/**
+	 * 
+	 * @return The number of builders created
+	 */
+	public long getCreated() {
+		return created.sum();
+	}
+	
+	/**
+	 * 
+	 * @return The number of builders cloned
+	 */
+	public long getCloned() {
+		return cloned.sum();
+	}
+	
+	/**
+	 * 
+	 * @return The number of events not recorded because the maximum number of fingerprints was reached
+	 */
+	public long getDropped() {
+		return dropped.sum();
+	}
+	
+	/**
+	 * Removes all statistics.
+	 */
+	public void clear() {
+		entries.clear();
+		size.set(0);
+		created.reset();
+		cloned.reset();
+		dropped.reset();
+	}
+	
+	/**
+	 * The statistics of the queries with one fingerprint.
+	 */
+	public static final class Entry {
+		
+		private final String sql;
+		private final LatencyHistogram render = new LatencyHistogram();
+		private final LatencyHistogram inValues = new LatencyHistogram();
+		private final LatencyHistogram prepare = new LatencyHistogram();
+		private final LatencyHistogram execute = new LatencyHistogram();
+		private final LatencyHistogram fetch = new LatencyHistogram();
+		private final LongAdder rows = new LongAdder();
+		
+		private Entry(String sql) {
+			this.sql = sql;
+		}
+		
+		/**
+		 * 
+		 * @return The normalized SQL of the queries with this fingerprint, see {@link NativeSqlBuilder#normalizedSql()}
+		 */
+		public String getSql() {
+			return sql;
+		}
+		
+		/**
+		 * 
+		 * @return The rendering durations
+		 */
+		public LatencyHistogram getRender() {
+			return render;
+		}
+		
+		/**
+		 * 
+		 * @return The number of IN-list values per rendering, recorded in the same histogram type
+		 */
+		public LatencyHistogram getInValues() {
+			return inValues;
+		}
+		
+		/**
+		 * 
+		 * @return The durations to prepare and bind the statements
+		 */
+		public LatencyHistogram getPrepare() {
+			return prepare;
+		}
+		
+		/**
+		 * 
+		 * @return The durations of executeQuery
+		 */
+		public LatencyHistogram getExecute() {
+			return execute;
+		}
+		
+		/**
+		 * 
+		 * @return The durations to fetch all rows of an execution
+		 */
+		public LatencyHistogram getFetch() {
+			return fetch;
+		}
+		
+		/**
+		 * 
+		 * @return The number of executions
+		 */
+		public long getExecutions() {
+			return execute.getCount();
+		}
+		
+		/**
+		 * 
+		 * @return The total number of rows fetched
+		 */
+		public long getRows() {
+			return rows.sum();
+		}
+		
+		@Override
+		public String toString() {
+			return sql + " render[" + render + "] prepare[" + prepare + "] execute[" + execute + "] fetch[" + fetch + "] rows=" + getRows();
+		}
+	}
+}
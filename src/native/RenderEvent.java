@@ -0,0 +1,79 @@
+package native;
+
+/**
+ * The serialization of a query into SQL, see {@link QueryListener#rendered(RenderEvent)}.
+ */
+public final class RenderEvent {
+
+	private final NativeSqlBuilder builder;
+	private final String sql;
+	private final long nanos;
+	private final int inValueCount;
+	private final int subQueryDepth;
+	private final long fingerprint;
+	
+	RenderEvent(NativeSqlBuilder builder, String sql, long nanos, int inValueCount, int subQueryDepth, long fingerprint) {
+		this.builder = builder;
+		this.sql = sql;
+		this.nanos = nanos;
+		this.inValueCount = inValueCount;
+		this.subQueryDepth = subQueryDepth;
+		this.fingerprint = fingerprint;
+	}
+	
+	/**
+	 * 
+	 * @return The builder that rendered its query, it may have changed since
+	 */
+	public NativeSqlBuilder getBuilder() {
+		return builder;
+	}
+	
+	/**
+	 * 
+	 * @return The rendered SQL
+	 */
+	public String getSql() {
+		return sql;
+	}
+	
+	/**
+	 * 
+	 * @return The duration of the serialization in nanoseconds
+	 */
+	public long getNanos() {
+		return nanos;
+	}
+	
+	/**
+	 * 
+	 * @return The length of the rendered SQL
+	 */
+	public int getSqlLength() {
+		return sql.length();
+	}
+	
+	/**
+	 * 
+	 * @return The number of values of the IN lists and collections in the query and its sub-queries
+	 */
+	public int getInValueCount() {
+		return inValueCount;
+	}
+	
+	/**
+	 * 
+	 * @return The nesting depth of the sub-queries, 0 without sub-queries
+	 */
+	public int getSubQueryDepth() {
+		return subQueryDepth;
+	}
+	
+	/**
+	 * 
+	 * @return The fingerprint of the rendered query, equal for queries that only differ in their values
+	 */
+	public long getFingerprint() {
+		return fingerprint;
+	}
+}
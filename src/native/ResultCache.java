@@ -0,0 +1,385 @@
+package native;
+
+import java.lang.reflect.Array;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An in-process cache of query results, for small lookups that run often and return the same rows. Results are
+ * keyed by the {@link NativeSqlBuilder#fingerprint()} of the query, its SQL, its bound values and the row mapper instance,
+ * so two mappers of the same class, for example lambdas that capture different values, don't share results.
+ * The least recently used results are evicted when the cache exceeds its number of entries or estimated bytes,
+ * and results expire after their time to live. A cache is thread-safe, and lookups don't lock: only storing and 
+ * invalidating results do. The rows of a query that was running while one of its tables was invalidated are not cached,
+ * as they may have been read before the change.
+ *
+ * <pre>
+ * private static final ResultCache CODES = ResultCache.builder().maxEntries(1000).ttl(Duration.ofMinutes(5)).build();
+ *
+ * List&lt;String&gt; names = sql.cache(CODES).list(dataSource, rs -&gt; rs.getString(1));
+ * CODES.invalidate("codes");
+ * </pre>
+ */
+public final class ResultCache {
+
+	private final int maxEntries;
+	private final long maxBytes;
+	private final Duration ttl;
+	private final ConcurrentMap<Key, Entry> entries = new ConcurrentHashMap<>();
+	private long bytes;
+	private final ConcurrentMap<String, AtomicLong> tableGenerations = new ConcurrentHashMap<>();
+	private final AtomicLong generation = new AtomicLong();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final LongAdder expirations = new LongAdder();
+	private final LongAdder invalidations = new LongAdder();
+	
+	private ResultCache(Builder builder) {
+		this.maxEntries = builder.maxEntries;
+		this.maxBytes = builder.maxBytes;
+		this.ttl = builder.ttl;
+	}
+	
+	/**
+	 * The identity of a result: the SQL is compared as well, so a fingerprint collision can't return wrong rows.
+	 */
+	static final class Key {
+		
+		private final long fingerprint;
+		private final String sql;
+		private final List<Object> values;
+		private final RowMapper<?> mapper;
+		
+		Key(long fingerprint, BoundSql boundSql, RowMapper<?> mapper) {
+			this.fingerprint = fingerprint;
+			this.sql = boundSql.getSQL();
+			this.values = new ArrayList<>(boundSql.getParameters().size());
+			for(BindParameter parameter : boundSql.getParameters()) {
+				values.add(parameter.getValue());
+			}
+			this.mapper = mapper;
+		}
+		
+		@Override
+		public int hashCode() {
+			return Long.hashCode(fingerprint) * 31 + values.hashCode();
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if(!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return fingerprint == other.fingerprint && mapper == other.mapper && sql.equals(other.sql) && values.equals(other.values);
+		}
+	}
+	
+	private static final class Entry {
+		
+		private final List<?> rows;
+		private final Set<String> tables;
+		private final long bytes;
+		private final long expiresAt;
+		private volatile long lastAccess;
+		
+		Entry(List<?> rows, Set<String> tables, long bytes, long expiresAt, long lastAccess) {
+			this.rows = rows;
+			this.tables = tables;
+			this.bytes = bytes;
+			this.expiresAt = expiresAt;
+			this.lastAccess = lastAccess;
+		}
+	}
+	
+	/**
+	 * Doesn't lock, the time of the access is kept by the entry for the eviction.
+	 *
+	 * @return The cached rows, or null if there are none or they expired
+	 */
+	@SuppressWarnings("unchecked")
+	<T> List<T> get(Key key) {
+		Entry entry = entries.get(key);
+		if(entry == null) {
+			misses.increment();
+			return null;
+		}
+		long now = System.nanoTime();
+		if(entry.expiresAt - now <= 0) {
+			synchronized(this) {
+				if(entries.remove(key, entry)) {
+					bytes -= entry.bytes;
+					expirations.increment();
+				}
+			}
+			misses.increment();
+			return null;
+		}
+		entry.lastAccess = now;
+		hits.increment();
+		return (List<T>) entry.rows;
+	}
+	
+	/**
+	 * Taken before the query runs and passed to {@link #put(Key, List, Set, Duration, long)}. The counters only grow, so
+	 * their sum changes when any of the tables is invalidated.
+	 *
+	 * @param tables The tables the query reads, in lower case
+	 * @return The number of invalidations of the tables and of the whole cache so far
+	 */
+	long generation(Set<String> tables) {
+		long sum = generation.get();
+		for(String table : tables) {
+			AtomicLong tableGeneration = tableGenerations.get(table);
+			if(tableGeneration != null) {
+				sum += tableGeneration.get();
+			}
+		}
+		return sum;
+	}
+	
+	/**
+	 * Caches the rows, unless they alone exceed the maximum number of bytes or one of the tables was invalidated since
+	 * the query started. Evicting scans the entries for the least recently used, which is cheap next to the query that 
+	 * produced the rows.
+	 *
+	 * @param tables The tables the query reads, in lower case
+	 * @param ttl The time to live, or null for the default of the cache
+	 * @param generation The {@link #generation(Set)} of the tables before the query ran
+	 */
+	synchronized void put(Key key, List<?> rows, Set<String> tables, Duration ttl, long generation) {
+		if(generation != generation(tables)) {
+			return;
+		}
+		long size = estimateBytes(rows);
+		if(size > maxBytes) {
+			return;
+		}
+		long now = System.nanoTime();
+		long expiresAt = now + (ttl != null ? ttl : this.ttl).toNanos();
+		Entry previous = entries.put(key, new Entry(rows, tables, size, expiresAt, now));
+		if(previous != null) {
+			bytes -= previous.bytes;
+		}
+		bytes += size;
+		while(entries.size() > maxEntries || bytes > maxBytes) {
+			Map.Entry<Key, Entry> eldest = null;
+			for(Map.Entry<Key, Entry> e : entries.entrySet()) {
+				if(eldest == null || e.getValue().lastAccess - eldest.getValue().lastAccess < 0) {
+					eldest = e;
+				}
+			}
+			entries.remove(eldest.getKey());
+			bytes -= eldest.getValue().bytes;
+			evictions.increment();
+		}
+	}
+	
+	/**
+	 * Removes the results of all queries that read the table, in the from clause, a join or a sub-query.
+	 *
+	 * @param tableName The table name, with or without schema, compared case insensitive
+	 * @return The number of removed results
+	 */
+	public synchronized int invalidate(String tableName) {
+		String table = tableName.toLowerCase(Locale.ROOT);
+		tableGenerations.computeIfAbsent(table, t -> new AtomicLong()).incrementAndGet();
+		int removed = 0;
+		Iterator<Entry> it = entries.values().iterator();
+		while(it.hasNext()) {
+			Entry entry = it.next();
+			if(entry.tables.contains(table)) {
+				it.remove();
+				bytes -= entry.bytes;
+				removed++;
+			}
+		}
+		invalidations.add(removed);
+		return removed;
+	}
+	
+	/**
+	 * Removes all results.
+	 */
+	public synchronized void invalidateAll() {
+		invalidations.add(entries.size());
+		generation.incrementAndGet();
+		entries.clear();
+		bytes = 0;
+	}
+	
+	/**
+	 * A rough estimate of the heap used by the rows: Strings, numbers, arrays and collections are counted,
+	 * other objects count as a fixed size.
+	 */
+	static long estimateBytes(Object value) {
+		if(value == null) {
+			return 8;
+		}
+		if(value instanceof String) {
+			return 40 + 2L * ((String) value).length();
+		}
+		if(value instanceof Number || value instanceof Boolean || value instanceof Character) {
+			return 24;
+		}
+		if(value instanceof Object[]) {
+			long size = 16;
+			for(Object element : (Object[]) value) {
+				size += 8 + estimateBytes(element);
+			}
+			return size;
+		}
+		if(value.getClass().isArray()) {
+			return 16 + 8L * Array.getLength(value);
+		}
+		if(value instanceof Collection) {
+			long size = 40;
+			for(Object element : (Collection<?>) value) {
+				size += 8 + estimateBytes(element);
+			}
+			return size;
+		}
+		return 64;
+	}
+	
+	/**
+	 *
+	 * @return The number of cached results
+	 */
+	public int size() {
+		return entries.size();
+	}
+	
+	/**
+	 *
+	 * @return The estimated bytes of the cached results
+	 */
+	public synchronized long getBytes() {
+		return bytes;
+	}
+	
+	/**
+	 *
+	 * @return The number of lookups that returned cached rows
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+	
+	/**
+	 *
+	 * @return The number of lookups that ran the query, including expired results
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+	
+	/**
+	 *
+	 * @return The number of results evicted because the cache was full
+	 */
+	public long getEvictions() {
+		return evictions.sum();
+	}
+	
+	/**
+	 *
+	 * @return The number of results removed because their time to live had passed
+	 */
+	public long getExpirations() {
+		return expirations.sum();
+	}
+	
+	/**
+	 *
+	 * @return The number of results removed by {@link #invalidate(String)} and {@link #invalidateAll()}
+	 */
+	public long getInvalidations() {
+		return invalidations.sum();
+	}
+	
+	@Override
+	public String toString() {
+		return "size=" + size() + " bytes=" + getBytes() + " hits=" + getHits() + " misses=" + getMisses()
+				+ " evictions=" + getEvictions() + " expirations=" + getExpirations() + " invalidations=" + getInvalidations();
+	}
+	
+	/**
+	 *
+	 * @return A builder with 1000 entries, 16 MB and a time to live of 1 minute as defaults
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+	
+	/**
+	 * Options for a {@link ResultCache}.
+	 */
+	public static final class Builder {
+		
+		private int maxEntries = 1000;
+		private long maxBytes = 16L * 1024 * 1024;
+		private Duration ttl = Duration.ofMinutes(1);
+		
+		private Builder() {
+		}
+		
+		/**
+		 *
+		 * @param maxEntries The maximum number of cached results
+		 * @return Builder
+		 */
+		public Builder maxEntries(int maxEntries) {
+			if(maxEntries <= 0) {
+				throw new IllegalArgumentException("maxEntries must be positive: " + maxEntries);
+			}
+			this.maxEntries = maxEntries;
+			return this;
+		}
+		
+		/**
+		 *
+		 * @param maxBytes The maximum estimated bytes of all cached results
+		 * @return Builder
+		 */
+		public Builder maxBytes(long maxBytes) {
+			if(maxBytes <= 0) {
+				throw new IllegalArgumentException("maxBytes must be positive: " + maxBytes);
+			}
+			this.maxBytes = maxBytes;
+			return this;
+		}
+		
+		/**
+		 *
+		 * @param ttl The time to live of the results of queries that don't set their own
+		 * @return Builder
+		 */
+		public Builder ttl(Duration ttl) {
+			if(ttl.isZero() || ttl.isNegative()) {
+				throw new IllegalArgumentException("ttl must be positive: " + ttl);
+			}
+			this.ttl = ttl;
+			return this;
+		}
+		
+		/**
+		 *
+		 * @return ResultCache
+		 */
+		public ResultCache build() {
+			return new ResultCache(this);
+		}
+	}
+}
@@ -0,0 +1,476 @@
+package native;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import javax.sql.DataSource;
+
+/**
+ * Runs a query and writes its rows to a CSV or JSON-lines file. The values are read from the ResultSet and encoded
+ * straight into a reusable direct buffer that is written through a FileChannel, optionally gzip compressed, so an
+ * export doesn't build a String per row. Integers, decimals without a fraction, dates and timestamps are written digit
+ * by digit; other decimals and floating point numbers are written from their String form. The fetch size of the builder
+ * decides how many rows a round trip brings.
+ * An exporter is immutable and thread-safe, each export has its own buffers.
+ *
+ * <pre>
+ * ResultExporter exporter = ResultExporter.builder(ExportFormat.CSV).gzip(true).build();
+ * ExportResult result = exporter.export(sql.fetchSize(1000), dataSource, Paths.get("tt.csv.gz"));
+ * log.info(result.toString());
+ * </pre>
+ */
+public final class ResultExporter {
+
+	private static final byte[] NULL = { 'n', 'u', 'l', 'l' };
+	private static final byte[] TRUE = { 't', 'r', 'u', 'e' };
+	private static final byte[] FALSE = { 'f', 'a', 'l', 's', 'e' };
+	
+	private final ExportFormat format;
+	private final boolean gzip;
+	private final boolean header;
+	private final byte delimiter;
+	private final int bufferSize;
+	
+	private ResultExporter(Builder builder) {
+		this.format = builder.format;
+		this.gzip = builder.gzip;
+		this.header = builder.header;
+		this.delimiter = (byte) builder.delimiter;
+		this.bufferSize = builder.bufferSize;
+	}
+	
+	/**
+	 * The way a column is read and written.
+	 */
+	private enum ColumnKind {
+		LONG, DECIMAL, DOUBLE, BOOLEAN, DATE, TIMESTAMP, TEXT
+	}
+	
+	private static ColumnKind kind(ResultSetMetaData metaData, int column) throws SQLException {
+		switch(metaData.getColumnType(column)) {
+			case Types.TINYINT: case Types.SMALLINT: case Types.INTEGER: case Types.BIGINT:
+				return ColumnKind.LONG;
+			case Types.NUMERIC: case Types.DECIMAL:
+				int precision = metaData.getPrecision(column);
+				return metaData.getScale(column) == 0 && precision > 0 && precision <= 18 ? ColumnKind.LONG : ColumnKind.DECIMAL;
+			case Types.REAL: case Types.FLOAT: case Types.DOUBLE:
+				return ColumnKind.DOUBLE;
+			case Types.BOOLEAN: case Types.BIT:
+				return ColumnKind.BOOLEAN;
+			case Types.DATE:
+				return ColumnKind.DATE;
+			case Types.TIMESTAMP:
+				return ColumnKind.TIMESTAMP;
+			default:
+				return ColumnKind.TEXT;
+		}
+	}
+	
+	/**
+	 * The quoted key of a column with the separator before it, encoded once per export.
+	 */
+	private static byte[] jsonKey(String label, boolean first) {
+		StringBuilder sb = new StringBuilder(label.length() + 4).append(first ? "{\"" : ",\"");
+		for(int i = 0; i < label.length(); i++) {
+			char c = label.charAt(i);
+			if(c == '"' || c == '\\') {
+				sb.append('\\').append(c);
+			} else if(c < 0x20) {
+				sb.append(String.format("\\u%04x", (int) c));
+			} else {
+				sb.append(c);
+			}
+		}
+		return sb.append("\":").toString().getBytes(StandardCharsets.UTF_8);
+	}
+	
+	/**
+	 * Exports the rows of the query into the file, which is replaced if it exists.
+	 *
+	 * @param sql The query
+	 * @param conn The connection, it stays open
+	 * @param file The file
+	 * @return The number of rows and bytes, and the throughput
+	 * @throws SQLException
+	 * @throws IOException
+	 */
+	public ExportResult export(NativeSqlBuilder sql, Connection conn, Path file) throws SQLException, IOException {
+		long start = System.nanoTime();
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			long rows = 0;
+			ByteSink sink = new ByteSink(channel, bufferSize, gzip);
+			try(sink) {
+				Encoder encoder = new Encoder(sink);
+				try(ResultSetIterator<Boolean> it = sql.iterate(conn, encoder)) {
+					encoder.start(it.getMetaData());
+					while(it.hasNext()) {
+						it.next();
+						rows++;
+					}
+				} catch (UncheckedIOException e) {
+					throw e.getCause();
+				}
+			}
+			return new ExportResult(file, rows, sink.getBytes(), channel.size(), System.nanoTime() - start);
+		}
+	}
+	
+	/**
+	 * Like {@link #export(NativeSqlBuilder, Connection, Path)}, on a connection of the DataSource.
+	 *
+	 * @param sql The query
+	 * @param dataSource The DataSource
+	 * @param file The file
+	 * @return The number of rows and bytes, and the throughput
+	 * @throws SQLException
+	 * @throws IOException
+	 */
+	public ExportResult export(NativeSqlBuilder sql, DataSource dataSource, Path file) throws SQLException, IOException {
+		try(Connection conn = dataSource.getConnection()) {
+			return export(sql, conn, file);
+		}
+	}
+	
+	/**
+	 * Encodes the current row, as the row mapper of the query.
+	 */
+	private final class Encoder implements RowMapper<Boolean> {
+		
+		private final ByteSink sink;
+		private ColumnKind[] kinds;
+		private byte[][] keys;
+		
+		Encoder(ByteSink sink) {
+			this.sink = sink;
+		}
+		
+		/**
+		 * Reads the columns and writes the CSV header, or encodes the JSON keys once.
+		 */
+		void start(ResultSetMetaData metaData) throws SQLException, IOException {
+			int count = metaData.getColumnCount();
+			kinds = new ColumnKind[count];
+			keys = new byte[count][];
+			for(int i = 0; i < count; i++) {
+				kinds[i] = kind(metaData, i + 1);
+				String label = metaData.getColumnLabel(i + 1);
+				if(format == ExportFormat.JSON_LINES) {
+					keys[i] = jsonKey(label, i == 0);
+				} else if(header) {
+					if(i > 0) {
+						sink.put(delimiter);
+					}
+					putCsv(label);
+				}
+			}
+			if(format == ExportFormat.CSV && header) {
+				sink.put((byte) '\n');
+			}
+		}
+		
+		@Override
+		public Boolean map(ResultSet rs) throws SQLException {
+			try {
+				if(format == ExportFormat.JSON_LINES) {
+					for(int i = 0; i < kinds.length; i++) {
+						sink.put(keys[i]);
+						putValue(rs, i);
+					}
+					if(kinds.length == 0) {
+						sink.put((byte) '{');
+					}
+					sink.put((byte) '}');
+				} else {
+					for(int i = 0; i < kinds.length; i++) {
+						if(i > 0) {
+							sink.put(delimiter);
+						}
+						putValue(rs, i);
+					}
+				}
+				sink.put((byte) '\n');
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			return Boolean.TRUE;
+		}
+		
+		private void putValue(ResultSet rs, int i) throws SQLException, IOException {
+			int column = i + 1;
+			boolean json = format == ExportFormat.JSON_LINES;
+			switch(kinds[i]) {
+				case LONG:
+					long number = rs.getLong(column);
+					if(rs.wasNull()) {
+						putNull(json);
+					} else {
+						sink.putLong(number);
+					}
+					break;
+				case DECIMAL:
+					BigDecimal decimal = rs.getBigDecimal(column);
+					if(decimal == null) {
+						putNull(json);
+					} else if(decimal.scale() == 0 && decimal.precision() <= 18) {
+						// NUMBER columns without precision and scale hold mostly integers
+						sink.putLong(decimal.longValue());
+					} else {
+						sink.putUtf8(decimal.toPlainString());
+					}
+					break;
+				case DOUBLE:
+					double d = rs.getDouble(column);
+					if(rs.wasNull() || json && (Double.isNaN(d) || Double.isInfinite(d))) {
+						putNull(json);
+					} else {
+						sink.putUtf8(Double.toString(d));
+					}
+					break;
+				case BOOLEAN:
+					boolean b = rs.getBoolean(column);
+					if(rs.wasNull()) {
+						putNull(json);
+					} else {
+						sink.put(b ? TRUE : FALSE);
+					}
+					break;
+				case DATE:
+					LocalDate date = rs.getObject(column, LocalDate.class);
+					if(date == null) {
+						putNull(json);
+					} else {
+						putDate(date, json);
+					}
+					break;
+				case TIMESTAMP:
+					LocalDateTime timestamp = rs.getObject(column, LocalDateTime.class);
+					if(timestamp == null) {
+						putNull(json);
+					} else {
+						putTimestamp(timestamp, json);
+					}
+					break;
+				default:
+					String text = rs.getString(column);
+					if(text == null) {
+						putNull(json);
+					} else if(json) {
+						putJson(text);
+					} else {
+						putCsv(text);
+					}
+			}
+		}
+		
+		private void putNull(boolean json) throws IOException {
+			if(json) {
+				sink.put(NULL);
+			}
+		}
+		
+		private void putDate(LocalDate date, boolean json) throws IOException {
+			if(json) {
+				sink.put((byte) '"');
+			}
+			putDate(date);
+			if(json) {
+				sink.put((byte) '"');
+			}
+		}
+		
+		private void putDate(LocalDate date) throws IOException {
+			putYear(date.getYear());
+			sink.put((byte) '-');
+			sink.putDigits(date.getMonthValue(), 2);
+			sink.put((byte) '-');
+			sink.putDigits(date.getDayOfMonth(), 2);
+		}
+		
+		/**
+		 * At least 4 digits, with a minus sign before the years BC.
+		 */
+		private void putYear(int year) throws IOException {
+			if(year < 0) {
+				sink.put((byte) '-');
+				year = -year;
+			}
+			if(year > 9999) {
+				sink.putLong(year);
+			} else {
+				sink.putDigits(year, 4);
+			}
+		}
+		
+		/**
+		 * The format of timestamp literals, see {@link TimestampType}: the fraction has as many digits as needed.
+		 */
+		private void putTimestamp(LocalDateTime timestamp, boolean json) throws IOException {
+			if(json) {
+				sink.put((byte) '"');
+			}
+			putDate(timestamp.toLocalDate());
+			sink.put((byte) ' ');
+			sink.putDigits(timestamp.getHour(), 2);
+			sink.put((byte) ':');
+			sink.putDigits(timestamp.getMinute(), 2);
+			sink.put((byte) ':');
+			sink.putDigits(timestamp.getSecond(), 2);
+			int nanos = timestamp.getNano();
+			if(nanos > 0) {
+				int digits = 9;
+				while(nanos % 10 == 0) {
+					nanos /= 10;
+					digits--;
+				}
+				sink.put((byte) '.');
+				sink.putDigits(nanos, digits);
+			}
+			if(json) {
+				sink.put((byte) '"');
+			}
+		}
+		
+		private void putCsv(String text) throws IOException {
+			boolean quote = false;
+			for(int i = 0; i < text.length() && !quote; i++) {
+				char c = text.charAt(i);
+				quote = c == delimiter || c == '"' || c == '\n' || c == '\r';
+			}
+			if(!quote) {
+				sink.putUtf8(text);
+				return;
+			}
+			sink.put((byte) '"');
+			for(int i = 0; i < text.length(); i++) {
+				char c = text.charAt(i);
+				if(c == '"') {
+					sink.put((byte) '"');
+					sink.put((byte) '"');
+				} else if(c < 0x80) {
+					sink.put((byte) c);
+				} else {
+					i = sink.putUtf8(text, i, c);
+				}
+			}
+			sink.put((byte) '"');
+		}
+		
+		private void putJson(String text) throws IOException {
+			sink.put((byte) '"');
+			for(int i = 0; i < text.length(); i++) {
+				char c = text.charAt(i);
+				if(c == '"' || c == '\\') {
+					sink.put((byte) '\\');
+					sink.put((byte) c);
+				} else if(c == '\n') {
+					sink.put((byte) '\\');
+					sink.put((byte) 'n');
+				} else if(c == '\r') {
+					sink.put((byte) '\\');
+					sink.put((byte) 'r');
+				} else if(c == '\t') {
+					sink.put((byte) '\\');
+					sink.put((byte) 't');
+				} else if(c < 0x20) {
+					sink.putUnicodeEscape(c);
+				} else if(c < 0x80) {
+					sink.put((byte) c);
+				} else {
+					i = sink.putUtf8(text, i, c);
+				}
+			}
+			sink.put((byte) '"');
+		}
+	}
+	
+	/**
+	 *
+	 * @param format The file format
+	 * @return A builder without gzip, with a header line for CSV, a comma as delimiter and a buffer of 256 KB as defaults
+	 */
+	public static Builder builder(ExportFormat format) {
+		return new Builder(format);
+	}
+	
+	/**
+	 * Options for a {@link ResultExporter}.
+	 */
+	public static final class Builder {
+		
+		private final ExportFormat format;
+		private boolean gzip;
+		private boolean header = true;
+		private char delimiter = ',';
+		private int bufferSize = 256 * 1024;
+		
+		private Builder(ExportFormat format) {
+			this.format = format;
+		}
+		
+		/**
+		 *
+		 * @param gzip true to compress the file in the gzip format
+		 * @return Builder
+		 */
+		public Builder gzip(boolean gzip) {
+			this.gzip = gzip;
+			return this;
+		}
+		
+		/**
+		 *
+		 * @param header false to leave out the CSV header line
+		 * @return Builder
+		 */
+		public Builder header(boolean header) {
+			this.header = header;
+			return this;
+		}
+		
+		/**
+		 *
+		 * @param delimiter The CSV delimiter, an ASCII character, for example ';' or '\t'
+		 * @return Builder
+		 */
+		public Builder delimiter(char delimiter) {
+			if(delimiter >= 0x80 || delimiter == '"' || delimiter == '\n' || delimiter == '\r') {
+				throw new IllegalArgumentException("The delimiter must be an ASCII character other than a quote or line break");
+			}
+			this.delimiter = delimiter;
+			return this;
+		}
+		
+		/**
+		 *
+		 * @param bufferSize The size of the direct buffers, at least 64 bytes
+		 * @return Builder
+		 */
+		public Builder bufferSize(int bufferSize) {
+			if(bufferSize < 64) {
+				throw new IllegalArgumentException("The buffer size must be at least 64 bytes");
+			}
+			this.bufferSize = bufferSize;
+			return this;
+		}
+		
+		/**
+		 *
+		 * @return ResultExporter
+		 */
+		public ResultExporter build() {
+			return new ResultExporter(this);
+		}
+	}
+}
@@ -0,0 +1,175 @@
+package native;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.querydsl.sql.Configuration;
+
+/**
+ * Pulls rows lazily from an open ResultSet and maps them one at a time, so that only the rows of the current 
+ * fetch are held in memory. The statement, and the connection if the iterator owns it, are closed on 
+ * {@link #close()} or when the last row has been read, after the values the query loaded into the temporary table
+ * have been removed.
+ * 
+ * @param <T> The type of a mapped row
+ */
+public final class ResultSetIterator<T> implements Iterator<T>, AutoCloseable {
+
+	private final Configuration config;
+	private final Connection ownedConnection;
+	private final PreparedStatement stmt;
+	private final ResultSet rs;
+	private final RowMapper<T> mapper;
+	private final List<TempTableLoad> tempTableLoads;
+	private final QueryListener listener;
+	private final ExecutionEvent event;
+	private boolean advanced;
+	private boolean hasNext;
+	private boolean closed;
+	
+	/**
+	 * 
+	 * @param ownedConnection The connection to close together with the statement, or null if the caller owns it
+	 * @param tempTableLoads The values to remove from the temporary table on {@link #close()}
+	 */
+	ResultSetIterator(Configuration config, Connection ownedConnection, PreparedStatement stmt, ResultSet rs, RowMapper<T> mapper, 
+			List<TempTableLoad> tempTableLoads) {
+		this(config, ownedConnection, stmt, rs, mapper, tempTableLoads, null, null);
+	}
+	
+	/**
+	 * 
+	 * @param listener Receives the event with the fetch time and row count on {@link #close()}, or null
+	 */
+	ResultSetIterator(Configuration config, Connection ownedConnection, PreparedStatement stmt, ResultSet rs, RowMapper<T> mapper, 
+			List<TempTableLoad> tempTableLoads, QueryListener listener, ExecutionEvent event) {
+		this.config = config;
+		this.ownedConnection = ownedConnection;
+		this.stmt = stmt;
+		this.rs = rs;
+		this.mapper = mapper;
+		this.tempTableLoads = tempTableLoads;
+		this.listener = listener;
+		this.event = event;
+	}
+	
+	@Override
+	public boolean hasNext() {
+		if(closed) {
+			return false;
+		}
+		if(!advanced) {
+			try {
+				if(event == null) {
+					hasNext = rs.next();
+				} else {
+					long start = System.nanoTime();
+					hasNext = rs.next();
+					event.fetched(System.nanoTime() - start, hasNext);
+				}
+			} catch (SQLException e) {
+				close();
+				throw config.translate(e);
+			}
+			advanced = true;
+			if(!hasNext) {
+				close();
+			}
+		}
+		return hasNext;
+	}
+	
+	@Override
+	public T next() {
+		if(!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		advanced = false;
+		try {
+			return mapper.map(rs);
+		} catch (SQLException e) {
+			close();
+			throw config.translate(e);
+		}
+	}
+	
+	/**
+	 * The columns of the result, also when it has no rows.
+	 */
+	ResultSetMetaData getMetaData() throws SQLException {
+		return rs.getMetaData();
+	}
+	
+	/**
+	 * 
+	 * @return A sequential stream over the remaining rows, closing the stream closes this iterator
+	 */
+	public Stream<T> stream() {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED), false)
+				.onClose(this::close);
+	}
+	
+	/**
+	 * Closes the ResultSet and the statement, removes the loaded values from the temporary table and closes the owned 
+	 * connection. Can be called more than once.
+	 */
+	@Override
+	public void close() {
+		if(closed) {
+			return;
+		}
+		closed = true;
+		hasNext = false;
+		SQLException failure = null;
+		try {
+			rs.close();
+		} catch (SQLException e) {
+			failure = e;
+		}
+		// the connection of the statement is only needed to clear the temporary tables, the statement is closed anyway
+		Connection conn = null;
+		try {
+			if(!tempTableLoads.isEmpty()) {
+				conn = stmt.getConnection();
+			}
+		} catch (SQLException e) {
+			failure = failure == null ? e : failure;
+		} finally {
+			try {
+				stmt.close();
+			} catch (SQLException e) {
+				failure = failure == null ? e : failure;
+			}
+		}
+		if(conn != null) {
+			try {
+				TempTableLoad.clear(conn, tempTableLoads);
+			} catch (SQLException e) {
+				failure = failure == null ? e : failure;
+			}
+		}
+		if(ownedConnection != null) {
+			try {
+				ownedConnection.close();
+			} catch (SQLException e) {
+				failure = failure == null ? e : failure;
+			}
+		}
+		if(listener != null) {
+			listener.executed(event);
+		}
+		if(failure != null) {
+			throw config.translate(failure);
+		}
+	}
+}
@@ -0,0 +1,48 @@
+package native;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Maps the current row of a ResultSet, used by {@link NativeSqlBuilder#stream(java.sql.Connection, RowMapper)}.
+ * A mapper must not move the cursor.
+ * 
+ * <pre>rs -&gt; rs.getString("field")</pre>
+ * 
+ * @param <T> The type of a mapped row
+ */
+@FunctionalInterface
+public interface RowMapper<T> {
+
+	/**
+	 * 
+	 * @param rs The ResultSet, positioned on the row to map
+	 * @return The mapped row
+	 * @throws SQLException
+	 */
+	T map(ResultSet rs) throws SQLException;
+	
+	/**
+	 * Maps every row to an array with the values of all columns.
+	 * 
+	 * @return RowMapper
+	 */
+	static RowMapper<Object[]> toArray() {
+		return new RowMapper<Object[]>() {
+			
+			private int columnCount = -1;
+			
+			@Override
+			public Object[] map(ResultSet rs) throws SQLException {
+				if(columnCount < 0) {
+					columnCount = rs.getMetaData().getColumnCount();
+				}
+				Object[] row = new Object[columnCount];
+				for(int i = 0; i < columnCount; i++) {
+					row[i] = rs.getObject(i + 1);
+				}
+				return row;
+			}
+		};
+	}
+}
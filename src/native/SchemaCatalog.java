@@ -0,0 +1,446 @@
+package native;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+/**
+ * The tables, columns and indexes of a schema, loaded once from the {@link DatabaseMetaData} of a connection or from
+ * a snapshot file written before, which avoids the metadata queries at startup. Builders of a factory with a catalog
+ * compare values with the type of the column, and report the columns that are not in the catalog, see
+ * {@link NativeSqlBuilder#getUnknownColumns()}. Names are case insensitive. A catalog is immutable.
+ *
+ * <pre>
+ * SchemaCatalog catalog = Files.exists(snapshot) ? SchemaCatalog.read(snapshot) : SchemaCatalog.load(dataSource, "APP");
+ * catalog.write(snapshot);
+ * NativeSqlFactory factory = NativeSqlFactory.builder().catalog(catalog).build();
+ * </pre>
+ */
+public final class SchemaCatalog {
+
+	private static final int MAGIC = 0x4e534331;
+	
+	private final List<Table> tableList;
+	private final Map<String, Table> tables = new LinkedHashMap<>();
+	
+	private SchemaCatalog(List<Table> tables) {
+		this.tableList = Collections.unmodifiableList(tables);
+		for(Table table : tables) {
+			this.tables.putIfAbsent(key(table.name), table);
+			if(table.schema != null) {
+				this.tables.put(key(table.schema + "." + table.name), table);
+			}
+		}
+	}
+	
+	private static String key(String name) {
+		return name.toLowerCase(Locale.ROOT);
+	}
+	
+	/**
+	 * Loads the tables and views of a schema.
+	 *
+	 * @param dataSource The DataSource to get a connection from
+	 * @param schemaPattern The schema name pattern, or null for all schemas the connection can see
+	 * @return SchemaCatalog
+	 * @throws SQLException
+	 */
+	public static SchemaCatalog load(DataSource dataSource, String schemaPattern) throws SQLException {
+		try(Connection conn = dataSource.getConnection()) {
+			return load(conn, schemaPattern);
+		}
+	}
+	
+	/**
+	 * Loads the tables and views of a schema. The columns are read with one metadata query, the indexes with one per table.
+	 *
+	 * @param conn The connection
+	 * @param schemaPattern The schema name pattern, or null for all schemas the connection can see
+	 * @return SchemaCatalog
+	 * @throws SQLException
+	 */
+	public static SchemaCatalog load(Connection conn, String schemaPattern) throws SQLException {
+		DatabaseMetaData metaData = conn.getMetaData();
+		Map<String, Table> tables = new LinkedHashMap<>();
+		try(ResultSet rs = metaData.getTables(null, schemaPattern, "%", new String[] { "TABLE", "VIEW" })) {
+			while(rs.next()) {
+				Table table = new Table(rs.getString("TABLE_SCHEM"), rs.getString("TABLE_NAME"));
+				tables.put(table.schema + "." + table.name, table);
+			}
+		}
+		try(ResultSet rs = metaData.getColumns(null, schemaPattern, "%", "%")) {
+			while(rs.next()) {
+				Table table = tables.get(rs.getString("TABLE_SCHEM") + "." + rs.getString("TABLE_NAME"));
+				if(table != null) {
+					table.add(new Column(rs.getString("COLUMN_NAME"), rs.getInt("DATA_TYPE"), rs.getString("TYPE_NAME"),
+							rs.getInt("NULLABLE") != DatabaseMetaData.columnNoNulls));
+				}
+			}
+		}
+		for(Table table : tables.values()) {
+			Map<String, List<String>> indexColumns = new LinkedHashMap<>();
+			Map<String, Boolean> unique = new LinkedHashMap<>();
+			try(ResultSet rs = metaData.getIndexInfo(null, table.schema, table.name, false, true)) {
+				while(rs.next()) {
+					String indexName = rs.getString("INDEX_NAME");
+					String columnName = rs.getString("COLUMN_NAME");
+					if(indexName == null || columnName == null || rs.getShort("TYPE") == DatabaseMetaData.tableIndexStatistic) {
+						continue;
+					}
+					// the rows are ordered by index and position
+					indexColumns.computeIfAbsent(indexName, name -> new ArrayList<>()).add(columnName);
+					unique.put(indexName, !rs.getBoolean("NON_UNIQUE"));
+				}
+			}
+			for(Map.Entry<String, List<String>> index : indexColumns.entrySet()) {
+				table.add(new Index(index.getKey(), unique.get(index.getKey()), index.getValue()));
+			}
+		}
+		return new SchemaCatalog(new ArrayList<>(tables.values()));
+	}
+	
+	/**
+	 * Reads a snapshot written by {@link #write(Path)}.
+	 *
+	 * @param file The snapshot
+	 * @return SchemaCatalog
+	 * @throws IOException If the file can't be read or is not a snapshot
+	 */
+	public static SchemaCatalog read(Path file) throws IOException {
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			if(in.readInt() != MAGIC) {
+				throw new IOException(file + " is not a schema catalog snapshot");
+			}
+			int tableCount = in.readInt();
+			List<Table> tables = new ArrayList<>(tableCount);
+			for(int t = 0; t < tableCount; t++) {
+				String schema = in.readBoolean() ? in.readUTF() : null;
+				Table table = new Table(schema, in.readUTF());
+				int columnCount = in.readInt();
+				for(int c = 0; c < columnCount; c++) {
+					table.add(new Column(in.readUTF(), in.readInt(), in.readUTF(), in.readBoolean()));
+				}
+				int indexCount = in.readInt();
+				for(int i = 0; i < indexCount; i++) {
+					String name = in.readUTF();
+					boolean unique = in.readBoolean();
+					int size = in.readInt();
+					List<String> columns = new ArrayList<>(size);
+					for(int c = 0; c < size; c++) {
+						columns.add(in.readUTF());
+					}
+					table.add(new Index(name, unique, columns));
+				}
+				tables.add(table);
+			}
+			return new SchemaCatalog(tables);
+		}
+	}
+	
+	/**
+	 * Writes a snapshot of the catalog, to be read with {@link #read(Path)}.
+	 *
+	 * @param file The snapshot, replaced if it exists
+	 * @throws IOException
+	 */
+	public void write(Path file) throws IOException {
+		try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(tableList.size());
+			for(Table table : tableList) {
+				out.writeBoolean(table.schema != null);
+				if(table.schema != null) {
+					out.writeUTF(table.schema);
+				}
+				out.writeUTF(table.name);
+				out.writeInt(table.columns.size());
+				for(Column column : table.columns.values()) {
+					out.writeUTF(column.name);
+					out.writeInt(column.jdbcType);
+					out.writeUTF(column.typeName);
+					out.writeBoolean(column.nullable);
+				}
+				out.writeInt(table.indexes.size());
+				for(Index index : table.indexes) {
+					out.writeUTF(index.name);
+					out.writeBoolean(index.unique);
+					out.writeInt(index.columns.size());
+					for(String column : index.columns) {
+						out.writeUTF(column);
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 *
+	 * @param tableName The table name, with or without schema
+	 * @return The table, or null if it is not in the catalog
+	 */
+	public Table getTable(String tableName) {
+		return tables.get(key(tableName));
+	}
+	
+	/**
+	 *
+	 * @return The tables in the order they were loaded
+	 */
+	public List<Table> getTables() {
+		return tableList;
+	}
+	
+	/**
+	 * A table or view.
+	 */
+	public static final class Table {
+		
+		private final String schema;
+		private final String name;
+		private final Map<String, Column> columns = new LinkedHashMap<>();
+		private final List<Index> indexes = new ArrayList<>();
+		
+		private Table(String schema, String name) {
+			this.schema = schema;
+			this.name = name;
+		}
+		
+		private void add(Column column) {
+			columns.put(key(column.name), column);
+		}
+		
+		private void add(Index index) {
+			indexes.add(index);
+			Column leading = getColumn(index.columns.get(0));
+			if(leading != null) {
+				leading.indexed = true;
+			}
+		}
+		
+		/**
+		 *
+		 * @return The schema, or null if the database has none
+		 */
+		public String getSchema() {
+			return schema;
+		}
+		
+		/**
+		 *
+		 * @return The table name as stored in the database
+		 */
+		public String getName() {
+			return name;
+		}
+		
+		/**
+		 *
+		 * @param columnName The column name
+		 * @return The column, or null if the table doesn't have it
+		 */
+		public Column getColumn(String columnName) {
+			return columns.get(key(columnName));
+		}
+		
+		/**
+		 *
+		 * @return The columns in table order
+		 */
+		public Collection<Column> getColumns() {
+			return Collections.unmodifiableCollection(columns.values());
+		}
+		
+		/**
+		 *
+		 * @return The indexes, including the index of the primary key
+		 */
+		public List<Index> getIndexes() {
+			return Collections.unmodifiableList(indexes);
+		}
+		
+		@Override
+		public String toString() {
+			return schema != null ? schema + "." + name : name;
+		}
+	}
+	
+	/**
+	 * A column of a table.
+	 */
+	public static final class Column {
+		
+		private final String name;
+		private final int jdbcType;
+		private final String typeName;
+		private final boolean nullable;
+		private boolean indexed;
+		
+		private Column(String name, int jdbcType, String typeName, boolean nullable) {
+			this.name = name;
+			this.jdbcType = jdbcType;
+			this.typeName = typeName != null ? typeName : "";
+			this.nullable = nullable;
+		}
+		
+		/**
+		 *
+		 * @return The column name as stored in the database
+		 */
+		public String getName() {
+			return name;
+		}
+		
+		/**
+		 *
+		 * @return The JDBC type, see {@link Types}
+		 */
+		public int getJdbcType() {
+			return jdbcType;
+		}
+		
+		/**
+		 *
+		 * @return The type name of the database, for example "VARCHAR2"
+		 */
+		public String getTypeName() {
+			return typeName;
+		}
+		
+		/**
+		 *
+		 * @return true if the column can be null
+		 */
+		public boolean isNullable() {
+			return nullable;
+		}
+		
+		/**
+		 *
+		 * @return true if the column is the first column of an index, so a predicate on it alone can use the index
+		 */
+		public boolean isIndexed() {
+			return indexed;
+		}
+		
+		/**
+		 *
+		 * @return true for character columns
+		 */
+		public boolean isCharacter() {
+			switch(jdbcType) {
+				case Types.CHAR: case Types.VARCHAR: case Types.LONGVARCHAR: case Types.NCHAR: case Types.NVARCHAR:
+				case Types.LONGNVARCHAR: case Types.CLOB: case Types.NCLOB:
+					return true;
+				default:
+					return false;
+			}
+		}
+		
+		/**
+		 *
+		 * @return true for numeric columns
+		 */
+		public boolean isNumeric() {
+			switch(jdbcType) {
+				case Types.TINYINT: case Types.SMALLINT: case Types.INTEGER: case Types.BIGINT: case Types.REAL:
+				case Types.FLOAT: case Types.DOUBLE: case Types.NUMERIC: case Types.DECIMAL:
+					return true;
+				default:
+					return false;
+			}
+		}
+		
+		/**
+		 *
+		 * @return The Java type the values of the column are compared with: String, BigDecimal, LocalDate,
+		 * LocalDateTime or Object
+		 */
+		public Class<?> getJavaType() {
+			if(isCharacter()) {
+				return String.class;
+			}
+			if(isNumeric()) {
+				return BigDecimal.class;
+			}
+			switch(jdbcType) {
+				case Types.DATE:
+					return LocalDate.class;
+				case Types.TIMESTAMP:
+					return LocalDateTime.class;
+				default:
+					return Object.class;
+			}
+		}
+		
+		@Override
+		public String toString() {
+			return name + " " + typeName;
+		}
+	}
+	
+	/**
+	 * An index of a table.
+	 */
+	public static final class Index {
+		
+		private final String name;
+		private final boolean unique;
+		private final List<String> columns;
+		
+		private Index(String name, boolean unique, List<String> columns) {
+			this.name = name;
+			this.unique = unique;
+			this.columns = Collections.unmodifiableList(columns);
+		}
+		
+		/**
+		 *
+		 * @return The index name
+		 */
+		public String getName() {
+			return name;
+		}
+		
+		/**
+		 *
+		 * @return true if the index is unique
+		 */
+		public boolean isUnique() {
+			return unique;
+		}
+		
+		/**
+		 *
+		 * @return The column names in index order
+		 */
+		public List<String> getColumns() {
+			return columns;
+		}
+		
+		@Override
+		public String toString() {
+			return name + columns;
+		}
+	}
+}
@@ -0,0 +1,162 @@
+package native;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.Expressions;
+
+/**
+ * Divides the rows of a query into disjoint slices for {@link ParallelQueryExecutor}: each slice is the query with
+ * one more predicate. Together the slices return every row of the query exactly once. A split is immutable.
+ *
+ * <pre>
+ * Split.range("id", 1, 400_000_000, 8)   // id &gt;= ? and id &lt; ?
+ * Split.hash("customer_id", 8)            // ora_hash(customer_id, 7) = 3
+ * Split.rowids("rowid", ranges)           // rowid between chartorowid(?) and chartorowid(?)
+ * </pre>
+ */
+public final class Split {
+
+	private enum Kind {
+		RANGE, HASH, ROWID
+	}
+	
+	private final Kind kind;
+	private final String column;
+	private final int slices;
+	private final long min;
+	private final long width;
+	private final List<String[]> rowidRanges;
+	
+	private Split(Kind kind, String column, int slices, long min, long width, List<String[]> rowidRanges) {
+		checkSlices(slices);
+		this.kind = kind;
+		this.column = column;
+		this.slices = slices;
+		this.min = min;
+		this.width = width;
+		this.rowidRanges = rowidRanges;
+	}
+	
+	private static void checkSlices(int slices) {
+		if(slices < 1) {
+			throw new IllegalArgumentException("A split needs at least one slice");
+		}
+	}
+	
+	/**
+	 * Equal ranges of a numeric key, best for a dense key like a sequence with an index or partitions on it. Rows below
+	 * min belong to the first slice, rows above max to the last, and rows with a null key to the first. The bounds of the
+	 * slices must fit in a long, a range from near Long.MIN_VALUE to near Long.MAX_VALUE is rejected.
+	 *
+	 * @param column The numeric key column, with optional table name
+	 * @param min The lowest key, for example from select min(id)
+	 * @param max The highest key
+	 * @param slices The number of slices
+	 * @return Split
+	 */
+	public static Split range(String column, long min, long max, int slices) {
+		if(max < min) {
+			throw new IllegalArgumentException("max " + max + " is less than min " + min);
+		}
+		checkSlices(slices);
+		long width;
+		try {
+			width = Math.addExact(Math.subtractExact(max, min) / slices, 1);
+			// the highest bound of a slice, the others are lower
+			Math.addExact(min, Math.multiplyExact(slices - 1, width));
+		} catch (ArithmeticException e) {
+			throw new IllegalArgumentException("The range from " + min + " to " + max + " overflows", e);
+		}
+		return new Split(Kind.RANGE, column, slices, min, width, null);
+	}
+	
+	/**
+	 * Oracle hash buckets of a column, for keys that are sparse or skewed. Every slice reads the whole table, so this
+	 * fits full scans; rows with a null key belong to the first slice.
+	 *
+	 * @param column The column, with optional table name
+	 * @param slices The number of slices
+	 * @return Split
+	 */
+	public static Split hash(String column, int slices) {
+		return new Split(Kind.HASH, column, slices, 0, 0, null);
+	}
+	
+	/**
+	 * Oracle ROWID ranges, one slice per range, for example the chunks of DBMS_PARALLEL_EXECUTE.CREATE_CHUNKS_BY_ROWID
+	 * or ranges computed from the extents of the table. The ranges must not overlap and must cover the table.
+	 *
+	 * @param rowidColumn The rowid pseudo column, with the table alias if the query has joins, for example "t.rowid"
+	 * @param ranges The first and last rowid of each range, as text
+	 * @return Split
+	 */
+	public static Split rowids(String rowidColumn, List<String[]> ranges) {
+		List<String[]> copy = new ArrayList<>(ranges.size());
+		for(String[] range : ranges) {
+			if(range.length != 2) {
+				throw new IllegalArgumentException("A rowid range has a first and a last rowid");
+			}
+			copy.add(range.clone());
+		}
+		return new Split(Kind.ROWID, rowidColumn, copy.size(), 0, 0, Collections.unmodifiableList(copy));
+	}
+	
+	/**
+	 *
+	 * @return The number of slices
+	 */
+	public int getSlices() {
+		return slices;
+	}
+	
+	/**
+	 * The predicate of a slice, created by the builder of the slice so that it is rendered and bound like its other
+	 * predicates.
+	 *
+	 * @param sql The builder of the slice
+	 * @param slice The slice, from 0
+	 * @return Predicate, or null if the split has one slice of all rows
+	 */
+	Predicate slice(NativeSqlBuilder sql, int slice) {
+		switch(kind) {
+			case RANGE:
+				BooleanExpression predicate = null;
+				if(slice > 0) {
+					predicate = sql.goe(column, min + slice * width);
+				}
+				if(slice < slices - 1) {
+					BooleanExpression upper = sql.lt(column, min + (slice + 1) * width);
+					predicate = predicate == null ? upper : predicate.and(upper);
+				}
+				return withNulls(sql, slice, predicate);
+			case HASH:
+				return withNulls(sql, slice, Expressions.booleanTemplate("ora_hash({0}, " + (slices - 1) + ") = " + slice, sql.field(column)));
+			default:
+				String[] range = rowidRanges.get(slice);
+				// as text, a path would quote the reserved word rowid
+				return Expressions.booleanTemplate(column + " between chartorowid({0}) and chartorowid({1})",
+						Expressions.constant(range[0]), Expressions.constant(range[1]));
+		}
+	}
+	
+	/**
+	 * The first slice also has the rows with a null key, a null predicate means the only slice has all rows.
+	 */
+	private BooleanExpression withNulls(NativeSqlBuilder sql, int slice, BooleanExpression predicate) {
+		if(slice > 0 || predicate == null) {
+			return predicate;
+		}
+		BooleanExpression isNull = sql.field(column).isNull();
+		return predicate.or(isNull);
+	}
+	
+	@Override
+	public String toString() {
+		return kind.name().toLowerCase(Locale.ROOT) + "(" + column + ") " + slices + " slices";
+	}
+}
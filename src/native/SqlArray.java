@@ -0,0 +1,44 @@
+package native;
+
+import java.util.List;
+
+/**
+ * A list of values bound as one SQL array of a named collection type, used by {@link InListStrategy#COLLECTION}.
+ */
+final class SqlArray {
+
+	private final String typeName;
+	private final List<?> values;
+	
+	SqlArray(String typeName, List<?> values) {
+		this.typeName = typeName;
+		this.values = values;
+	}
+	
+	String getTypeName() {
+		return typeName;
+	}
+	
+	List<?> getValues() {
+		return values;
+	}
+	
+	@Override
+	public int hashCode() {
+		return typeName.hashCode() * 31 + values.hashCode();
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		if(!(obj instanceof SqlArray)) {
+			return false;
+		}
+		SqlArray other = (SqlArray) obj;
+		return typeName.equals(other.typeName) && values.equals(other.values);
+	}
+	
+	@Override
+	public String toString() {
+		return typeName + values;
+	}
+}
@@ -0,0 +1,121 @@
+package native;
+
+import java.lang.reflect.InvocationTargetException;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.querydsl.sql.Configuration;
+import com.querydsl.sql.types.AbstractType;
+
+/**
+ * Binds a {@link SqlArray} as a JDBC array, reads it back from a JDBC array, and renders it as a collection 
+ * constructor when literals are used.
+ * 
+ * <pre>SYS.ODCIVARCHAR2LIST('a', 'b')</pre>
+ */
+final class SqlArrayType extends AbstractType<SqlArray> {
+
+	private final Configuration config;
+	
+	SqlArrayType(Configuration config) {
+		super(Types.ARRAY);
+		this.config = config;
+	}
+	
+	@Override
+	public Class<SqlArray> getReturnedClass() {
+		return SqlArray.class;
+	}
+	
+	@Override
+	public String getLiteral(SqlArray value) {
+		StringBuilder sb = new StringBuilder(value.getTypeName()).append('(');
+		boolean first = true;
+		for(Object element : value.getValues()) {
+			if(!first) {
+				sb.append(", ");
+			}
+			sb.append(config.asLiteral(element));
+			first = false;
+		}
+		return sb.append(')').toString();
+	}
+	
+	/**
+	 * The type name is the name of the collection type for Oracle, for other drivers the name of the element type.
+	 */
+	@Override
+	public SqlArray getValue(ResultSet rs, int startIndex) throws SQLException {
+		Array array = rs.getArray(startIndex);
+		if(array == null) {
+			return null;
+		}
+		try {
+			Object elements = array.getArray();
+			// drivers may return an array of primitives
+			int length = java.lang.reflect.Array.getLength(elements);
+			List<Object> values = new ArrayList<>(length);
+			for(int i = 0; i < length; i++) {
+				values.add(java.lang.reflect.Array.get(elements, i));
+			}
+			return new SqlArray(typeName(array), Collections.unmodifiableList(values));
+		} finally {
+			try {
+				array.free();
+			} catch (SQLFeatureNotSupportedException e) {
+				// JDBC 3 drivers free the array with the result set
+			}
+		}
+	}
+	
+	private static String typeName(Array array) throws SQLException {
+		try {
+			Class<?> oracleArray = Class.forName("oracle.jdbc.OracleArray");
+			if(oracleArray.isInstance(array)) {
+				return (String) oracleArray.getMethod("getSQLTypeName").invoke(array);
+			}
+		} catch (ClassNotFoundException | NoSuchMethodException | IllegalAccessException e) {
+			// not the Oracle driver
+		} catch (InvocationTargetException e) {
+			if(e.getCause() instanceof SQLException) {
+				throw (SQLException) e.getCause();
+			}
+			throw new SQLException(e.getCause());
+		}
+		return array.getBaseTypeName();
+	}
+	
+	@Override
+	public void setValue(PreparedStatement st, int startIndex, SqlArray value) throws SQLException {
+		st.setArray(startIndex, createArray(st.getConnection(), value));
+	}
+	
+	private static Array createArray(Connection conn, SqlArray value) throws SQLException {
+		Object[] elements = value.getValues().toArray();
+		try {
+			return conn.createArrayOf(value.getTypeName(), elements);
+		} catch (SQLFeatureNotSupportedException e) {
+			// the Oracle driver only creates named collection types through OracleConnection.createOracleArray
+			try {
+				Class<?> oracleConnection = Class.forName("oracle.jdbc.OracleConnection");
+				Object oracle = conn.unwrap(oracleConnection);
+				return (Array) oracleConnection.getMethod("createOracleArray", String.class, Object.class).invoke(oracle, value.getTypeName(), elements);
+			} catch (ClassNotFoundException | NoSuchMethodException | IllegalAccessException ex) {
+				throw e;
+			} catch (InvocationTargetException ex) {
+				if(ex.getCause() instanceof SQLException) {
+					throw (SQLException) ex.getCause();
+				}
+				throw new SQLException(ex.getCause());
+			}
+		}
+	}
+}
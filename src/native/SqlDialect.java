@@ -0,0 +1,32 @@
+package native;
+
+import com.querydsl.sql.SQLTemplates;
+
+/**
+ * A database dialect for {@link NativeSqlFactory}: the QueryDSL templates that render the SQL, including the 
+ * row-limiting clause, and the dialect specific choices of the builder. See {@link StandardDialect} for the built-in dialects.
+ */
+public interface SqlDialect {
+
+	/**
+	 * Called once per {@link NativeSqlFactory}. The templates render {@link NativeSqlBuilder#limit(long)} and 
+	 * {@link NativeSqlBuilder#offset(long)}, for example with rownum, 'fetch first n rows only' or 'limit n'.
+	 * 
+	 * @return New templates for this dialect
+	 */
+	SQLTemplates createTemplates();
+	
+	/**
+	 * 
+	 * @return true if the database compares row values, as in (k1, k2) > (1, 2)
+	 */
+	boolean supportsRowValueComparison();
+	
+	/**
+	 * 
+	 * @return The default IN-list settings, with the collection types of this dialect
+	 */
+	default InListPolicy getInListPolicy() {
+		return InListPolicy.DEFAULT;
+	}
+}
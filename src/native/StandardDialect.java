@@ -0,0 +1,79 @@
+package native;
+
+import com.querydsl.sql.H2Templates;
+import com.querydsl.sql.OracleTemplates;
+import com.querydsl.sql.PostgreSQLTemplates;
+import com.querydsl.sql.SQLTemplates;
+
+/**
+ * The built-in dialects. All of them render unquoted identifiers and single line SQL.
+ */
+public enum StandardDialect implements SqlDialect {
+
+	/**
+	 * Oracle before 12c, a limit wraps the query in a rownum sub-query.
+	 */
+	ORACLE_11(false) {
+		@Override
+		public SQLTemplates createTemplates() {
+			// Oracle doesn't recommend quoted identifiers, single line output saves a copy of the SQL in toString()
+			return OracleTemplates.builder().newLineToSingleSpace().build();
+		}
+	},
+	
+	/**
+	 * Oracle 12c and later, with the 'offset n rows fetch first n rows only' clause that allows top-N plans.
+	 */
+	ORACLE_12(false) {
+		@Override
+		public SQLTemplates createTemplates() {
+			return new Oracle12Templates();
+		}
+	},
+	
+	/**
+	 * PostgreSQL with 'limit n offset n'.
+	 */
+	POSTGRESQL(true) {
+		@Override
+		public SQLTemplates createTemplates() {
+			return PostgreSQLTemplates.builder().newLineToSingleSpace().build();
+		}
+		
+		@Override
+		public InListPolicy getInListPolicy() {
+			return ANY_ARRAY;
+		}
+	},
+	
+	/**
+	 * H2 with 'limit n offset n'.
+	 */
+	H2(true) {
+		@Override
+		public SQLTemplates createTemplates() {
+			return H2Templates.builder().newLineToSingleSpace().build();
+		}
+		
+		@Override
+		public InListPolicy getInListPolicy() {
+			return ANY_ARRAY;
+		}
+	};
+	
+	private static final InListPolicy ANY_ARRAY = InListPolicy.builder()
+			.collectionTypes("varchar", "numeric")
+			.collectionTemplate("{0} = any({1})")
+			.build();
+	
+	private final boolean rowValueComparison;
+	
+	private StandardDialect(boolean rowValueComparison) {
+		this.rowValueComparison = rowValueComparison;
+	}
+	
+	@Override
+	public boolean supportsRowValueComparison() {
+		return rowValueComparison;
+	}
+}
@@ -0,0 +1,86 @@
+package native;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.querydsl.core.types.Constant;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.FactoryExpression;
+import com.querydsl.core.types.Operation;
+import com.querydsl.core.types.ParamExpression;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.SubQueryExpression;
+import com.querydsl.core.types.TemplateExpression;
+import com.querydsl.core.types.Visitor;
+
+/**
+ * Collects the builders of the {@link BuilderSubQuery}s of an expression. The sub-queries of a sub-query are
+ * not collected, its builder registers them itself.
+ */
+final class SubQueryCollector implements Visitor<Void, Void> {
+
+	private final List<NativeSqlBuilder> builders = new ArrayList<>();
+	
+	static List<NativeSqlBuilder> collect(Expression<?>... exprs) {
+		SubQueryCollector collector = new SubQueryCollector();
+		for(Expression<?> expr : exprs) {
+			collector.add(expr);
+		}
+		return collector.builders;
+	}
+	
+	private void add(Expression<?> expr) {
+		if(expr != null) {
+			expr.accept(this, null);
+		}
+	}
+	
+	@Override
+	public Void visit(Constant<?> expr, Void context) {
+		return null;
+	}
+	
+	@Override
+	public Void visit(FactoryExpression<?> expr, Void context) {
+		for(Expression<?> arg : expr.getArgs()) {
+			add(arg);
+		}
+		return null;
+	}
+	
+	@Override
+	public Void visit(Operation<?> expr, Void context) {
+		for(Expression<?> arg : expr.getArgs()) {
+			add(arg);
+		}
+		return null;
+	}
+	
+	@Override
+	public Void visit(ParamExpression<?> expr, Void context) {
+		return null;
+	}
+	
+	@Override
+	public Void visit(Path<?> expr, Void context) {
+		return null;
+	}
+	
+	@Override
+	public Void visit(SubQueryExpression<?> expr, Void context) {
+		if(expr instanceof BuilderSubQuery) {
+			builders.add(((BuilderSubQuery<?>) expr).getBuilder());
+		}
+		return null;
+	}
+	
+	@Override
+	public Void visit(TemplateExpression<?> expr, Void context) {
+		for(Object arg : expr.getArgs()) {
+			if(arg instanceof Expression) {
+				add((Expression<?>) arg);
+			}
+		}
+		return null;
+	}
+}
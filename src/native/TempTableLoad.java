@@ -0,0 +1,113 @@
+package native;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+import com.querydsl.sql.Configuration;
+
+/**
+ * The values of one {@link InListStrategy#TEMP_TABLE} predicate, loaded in batches into the temporary table 
+ * under their own set id, and removed again when the query that reads them has run.
+ */
+final class TempTableLoad {
+
+	private final Configuration config;
+	private final InListPolicy policy;
+	private final long setId;
+	private final List<?> rows;
+	private final int arity;
+	
+	/**
+	 * 
+	 * @param rows The values when arity is 1, otherwise an Object[] per tuple
+	 * @param arity The number of fields per row
+	 */
+	TempTableLoad(Configuration config, InListPolicy policy, long setId, List<?> rows, int arity) {
+		this.config = config;
+		this.policy = policy;
+		this.setId = setId;
+		this.rows = rows;
+		this.arity = arity;
+	}
+	
+	static void load(Connection conn, List<TempTableLoad> loads) throws SQLException {
+		for(TempTableLoad load : loads) {
+			load.load(conn);
+		}
+	}
+	
+	static void clear(Connection conn, List<TempTableLoad> loads) throws SQLException {
+		for(TempTableLoad load : loads) {
+			load.clear(conn);
+		}
+	}
+	
+	/**
+	 * Clears the loads after the query failed, without hiding the failure.
+	 */
+	static void clear(Connection conn, List<TempTableLoad> loads, Exception failure) {
+		try {
+			clear(conn, loads);
+		} catch (SQLException | RuntimeException e) {
+			failure.addSuppressed(e);
+		}
+	}
+	
+	/**
+	 * Inserts the values in batches.
+	 * 
+	 * @param conn The connection the query will run on
+	 * @throws SQLException
+	 */
+	void load(Connection conn) throws SQLException {
+		String table = policy.getTempTableName();
+		String setIdColumn = policy.getTempTableSetIdColumn();
+		StringBuilder sql = new StringBuilder("insert into ").append(table).append(" (").append(setIdColumn);
+		for(int i = 0; i < arity; i++) {
+			sql.append(", ").append(policy.getTempTableValueColumns().get(i));
+		}
+		sql.append(") values (?");
+		for(int i = 0; i < arity; i++) {
+			sql.append(", ?");
+		}
+		sql.append(')');
+		try(PreparedStatement insert = conn.prepareStatement(sql.toString())) {
+			int batched = 0;
+			for(Object row : rows) {
+				insert.setLong(1, setId);
+				if(arity == 1) {
+					config.set(insert, null, 2, row);
+				} else {
+					Object[] tuple = (Object[]) row;
+					for(int i = 0; i < arity; i++) {
+						config.set(insert, null, i + 2, tuple[i]);
+					}
+				}
+				insert.addBatch();
+				if(++batched == policy.getBatchSize()) {
+					insert.executeBatch();
+					batched = 0;
+				}
+			}
+			if(batched > 0) {
+				insert.executeBatch();
+			}
+		}
+	}
+	
+	/**
+	 * Deletes the values of this set id. The set ids are never reused, so rows that aren't deleted stay in a temporary
+	 * table with on commit preserve rows until the session ends.
+	 * 
+	 * @param conn The connection the query ran on
+	 * @throws SQLException
+	 */
+	void clear(Connection conn) throws SQLException {
+		try(PreparedStatement delete = conn.prepareStatement("delete from " + policy.getTempTableName() + " where " + policy.getTempTableSetIdColumn() + " = ?")) {
+			delete.setLong(1, setId);
+			delete.executeUpdate();
+		}
+	}
+}
@@ -0,0 +1,105 @@
+package native;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.function.Function;
+
+import com.querydsl.sql.types.AbstractType;
+
+/**
+ * Binds java.time values as timestamps, and renders them as timestamp literals with their fractional seconds, which
+ * the QueryDSL defaults drop. The literal is wrapped by the timestamp template of the dialect.
+ * 
+ * <pre>timestamp '2018-01-01 10:00:00.125'</pre>
+ * 
+ * @param <T> LocalDateTime, or Instant in UTC
+ */
+final class TimestampType<T> extends AbstractType<T> {
+
+	static final TimestampType<LocalDateTime> LOCAL_DATE_TIME = new TimestampType<>(LocalDateTime.class, ldt -> ldt, ldt -> ldt);
+	static final TimestampType<Instant> INSTANT = new TimestampType<>(Instant.class, 
+			instant -> LocalDateTime.ofInstant(instant, ZoneOffset.UTC), ldt -> ldt.toInstant(ZoneOffset.UTC));
+	
+	private final Class<T> type;
+	private final Function<T, LocalDateTime> toLocalDateTime;
+	private final Function<LocalDateTime, T> fromLocalDateTime;
+	
+	private TimestampType(Class<T> type, Function<T, LocalDateTime> toLocalDateTime, Function<LocalDateTime, T> fromLocalDateTime) {
+		super(Types.TIMESTAMP);
+		this.type = type;
+		this.toLocalDateTime = toLocalDateTime;
+		this.fromLocalDateTime = fromLocalDateTime;
+	}
+	
+	@Override
+	public Class<T> getReturnedClass() {
+		return type;
+	}
+	
+	@Override
+	public String getLiteral(T value) {
+		return format(toLocalDateTime.apply(value));
+	}
+	
+	/**
+	 * Formats without a DateTimeFormatter, the fraction has as many digits as needed.
+	 * 
+	 * <pre>2018-01-01 10:00:00.125</pre>
+	 */
+	static String format(LocalDateTime ldt) {
+		StringBuilder sb = new StringBuilder(29);
+		pad(sb, ldt.getYear(), 4).append('-');
+		pad(sb, ldt.getMonthValue(), 2).append('-');
+		pad(sb, ldt.getDayOfMonth(), 2).append(' ');
+		pad(sb, ldt.getHour(), 2).append(':');
+		pad(sb, ldt.getMinute(), 2).append(':');
+		pad(sb, ldt.getSecond(), 2);
+		int nanos = ldt.getNano();
+		if(nanos > 0) {
+			int digits = 9;
+			while(nanos % 10 == 0) {
+				nanos /= 10;
+				digits--;
+			}
+			pad(sb.append('.'), nanos, digits);
+		}
+		return sb.toString();
+	}
+	
+	/**
+	 * Pads with zeros after the sign of a negative value: -0044.
+	 */
+	private static StringBuilder pad(StringBuilder sb, int value, int digits) {
+		if(value < 0) {
+			sb.append('-');
+		}
+		String s = Integer.toString(Math.abs(value));
+		for(int i = s.length(); i < digits; i++) {
+			sb.append('0');
+		}
+		return sb.append(s);
+	}
+	
+	/**
+	 * Reads a LocalDateTime from the driver, a Timestamp would be in the default time zone and shift the wall-clock
+	 * times of a daylight saving gap.
+	 */
+	@Override
+	public T getValue(ResultSet rs, int startIndex) throws SQLException {
+		LocalDateTime ldt = rs.getObject(startIndex, LocalDateTime.class);
+		return ldt != null ? fromLocalDateTime.apply(ldt) : null;
+	}
+	
+	/**
+	 * Binds a LocalDateTime, for the same reason.
+	 */
+	@Override
+	public void setValue(PreparedStatement st, int startIndex, T value) throws SQLException {
+		st.setObject(startIndex, toLocalDateTime.apply(value), Types.TIMESTAMP);
+	}
+}
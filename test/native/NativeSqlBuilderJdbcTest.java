@@ -0,0 +1,559 @@
+package native;
+
+import static org.junit.Assert.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Runs queries of the builder against an embedded H2 database in Oracle mode.
+ */
+public class NativeSqlBuilderJdbcTest {
+
+	private static final String URL = "jdbc:h2:mem:nativesql;MODE=Oracle;DB_CLOSE_DELAY=-1";
+	
+	private Connection conn;
+	
+	@Before
+	public void setUp() throws SQLException {
+		conn = DriverManager.getConnection(URL);
+		try(Statement stmt = conn.createStatement()) {
+			stmt.execute("create table tt (id number(10) primary key, field varchar2(20), kind varchar2(20))");
+			stmt.execute("insert into tt select x, 'value' || x, case when mod(x, 2) = 0 then 'even' else 'odd' end from system_range(1, 1000)");
+			stmt.execute("create table in_list_values (set_id number(19), v1 varchar2(4000), v2 varchar2(4000))");
+		}
+	}
+	
+	@After
+	public void tearDown() throws SQLException {
+		try(Statement stmt = conn.createStatement()) {
+			stmt.execute("drop all objects");
+		}
+		conn.close();
+	}
+	
+	@Test
+	public void stream_rows() throws SQLException {
+		NativeSqlBuilder sql = NativeSqlBuilder.create();
+		sql.select("field").from("tt").where(sql.eq("kind", "even"), sql.in("field", "value2", "value3", "value4")).fetchSize(10);
+		try(Stream<String> rows = sql.stream(conn, rs -> rs.getString(1))) {
+			assertEquals(Arrays.asList("value2", "value4"), rows.sorted().collect(Collectors.toList()));
+		}
+	}
+	
+	@Test
+	public void iterate_is_lazy_and_closes() throws SQLException {
+		NativeSqlBuilder sql = NativeSqlBuilder.create();
+		sql.select("id", "field").from("tt");
+		int[] mapped = { 0 };
+		ResultSetIterator<Object[]> rows = sql.iterate(conn, rs -> {
+			mapped[0]++;
+			return RowMapper.toArray().map(rs);
+		});
+		assertTrue(rows.hasNext());
+		assertEquals(0, mapped[0]);
+		assertEquals(2, rows.next().length);
+		assertEquals(1, mapped[0]);
+		rows.close();
+		assertFalse(rows.hasNext());
+		assertFalse(conn.isClosed());
+	}
+	
+	@Test
+	public void stream_from_dataSource() throws SQLException {
+		JdbcDataSource dataSource = new JdbcDataSource();
+		dataSource.setURL(URL);
+		NativeSqlBuilder sql = NativeSqlBuilder.create();
+		sql.countAll().from("tt").where(sql.eq("kind", "odd"));
+		try(Stream<Long> rows = sql.stream(dataSource, rs -> rs.getLong(1))) {
+			assertEquals(Long.valueOf(500), rows.findFirst().get());
+		}
+	}
+	
+	@Test
+	public void stream_temp_table() throws SQLException {
+		InListPolicy policy = InListPolicy.builder().tempTable("in_list_values", "set_id", "v1", "v2").batchSize(7).build();
+		NativeSqlBuilder sql = NativeSqlFactory.builder().inListPolicy(policy).build().create();
+		List<String> values = Arrays.asList("value1", "value2", "value3", "nothing");
+		sql.select("field").from("tt").where(sql.in("field", values, InListStrategy.TEMP_TABLE));
+		try(Stream<String> rows = sql.stream(conn, rs -> rs.getString(1))) {
+			assertEquals(Arrays.asList("value1", "value2", "value3"), rows.sorted().collect(Collectors.toList()));
+		}
+		assertEquals(3, sql.list(conn, rs -> rs.getString(1)).size());
+		// the values are removed when the query has run
+		try(Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery("select count(*) from in_list_values")) {
+			rs.next();
+			assertEquals(0, rs.getInt(1));
+		}
+	}
+	
+	@Test
+	public void limit() throws SQLException {
+		NativeSqlBuilder sql = NativeSqlBuilder.create();
+		sql.select("id").from("tt").limit(5);
+		Iterator<Integer> rows = sql.iterate(conn, rs -> rs.getInt(1));
+		int count = 0;
+		while(rows.hasNext()) {
+			rows.next();
+			count++;
+		}
+		assertEquals(5, count);
+	}
+	@Test
+	public void keyset_pages() throws SQLException {
+		Keyset keyset = Keyset.of("kind", "id");
+		Object[] lastKey = null;
+		int pages = 0;
+		int rows = 0;
+		Object previousId = null;
+		while(true) {
+			NativeSqlBuilder sql = NativeSqlBuilder.create();
+			sql.select("kind", "id").from("tt").keysetPage(keyset, lastKey, 300);
+			int pageRows = 0;
+			try(ResultSetIterator<Object[]> page = sql.iterate(conn, RowMapper.toArray())) {
+				while(page.hasNext()) {
+					Object[] row = page.next();
+					assertNotEquals(previousId, row[1]);
+					previousId = row[1];
+					lastKey = row;
+					pageRows++;
+				}
+			}
+			if(pageRows == 0) {
+				break;
+			}
+			rows += pageRows;
+			pages++;
+		}
+		assertEquals(1000, rows);
+		assertEquals(4, pages);
+	}
+	
+	@Test
+	public void query_statistics() throws SQLException {
+		QueryStatistics stats = new QueryStatistics();
+		NativeSqlFactory factory = NativeSqlFactory.builder().listener(stats).build();
+		for(String kind : new String[] { "even", "odd" }) {
+			NativeSqlBuilder sql = factory.create();
+			sql.select("id").from("tt").where(sql.eq("kind", kind));
+			try(Stream<Long> rows = sql.stream(conn, rs -> rs.getLong(1))) {
+				assertEquals(500, rows.count());
+			}
+		}
+		assertEquals(2, stats.getCreated());
+		assertEquals(1, stats.getEntries().size());
+		QueryStatistics.Entry entry = stats.getEntries().values().iterator().next();
+		assertEquals("select id from tt where kind = ?", entry.getSql());
+		assertEquals(2, entry.getExecutions());
+		assertEquals(1000, entry.getRows());
+		assertEquals(2, entry.getRender().getCount());
+		assertTrue(entry.getFetch().getPercentile(50) > 0);
+	}
+	
+	@Test
+	public void result_cache() throws SQLException {
+		ResultCache cache = ResultCache.builder().maxEntries(2).build();
+		RowMapper<String> field = rs -> rs.getString(1);
+		for(int i = 0; i < 3; i++) {
+			NativeSqlBuilder sql = NativeSqlBuilder.create().cache(cache);
+			sql.select("field").from("tt", "t").where(sql.in("id", "1", "2"));
+			assertEquals(Arrays.asList("value1", "value2"), sql.list(conn, field));
+		}
+		assertEquals(1, cache.getMisses());
+		assertEquals(2, cache.getHits());
+		
+		for(String kind : new String[] { "even", "odd" }) {
+			NativeSqlBuilder sql = NativeSqlBuilder.create().cache(cache);
+			sql.countAll().from("tt").where(sql.eq("kind", kind));
+			assertEquals(Arrays.asList(500L), sql.list(conn, rs -> rs.getLong(1)));
+		}
+		assertEquals(1, cache.getEvictions());
+		assertEquals(2, cache.size());
+		assertEquals(2, cache.invalidate("TT"));
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getBytes());
+		
+		NativeSqlBuilder expiring = NativeSqlBuilder.create().cache(cache, Duration.ZERO);
+		expiring.select("field").from("tt").where(expiring.eq("id", 1));
+		expiring.list(conn, field);
+		expiring.list(conn, field);
+		assertEquals(1, cache.getExpirations());
+		
+		// mappers of the same class don't share results
+		for(String prefix : new String[] { "a:", "b:" }) {
+			NativeSqlBuilder sql = NativeSqlBuilder.create().cache(cache);
+			sql.select("field").from("tt").where(sql.eq("id", 1));
+			assertEquals(Arrays.asList(prefix + "value1"), sql.list(conn, rs -> prefix + rs.getString(1)));
+		}
+		
+		// rows read before an invalidation aren't cached
+		NativeSqlBuilder stale = NativeSqlBuilder.create();
+		stale.select("field").from("tt").where(stale.eq("id", 2));
+		ResultCache.Key key = new ResultCache.Key(stale.fingerprint(), stale.toBoundSql(), field);
+		long generation = cache.generation(stale.getTables());
+		cache.invalidate("tt");
+		cache.put(key, Arrays.asList("value2"), stale.getTables(), null, generation);
+		assertNull(cache.get(key));
+		
+		// other tables don't stop caching
+		generation = cache.generation(stale.getTables());
+		cache.invalidate("tt2");
+		cache.put(key, Arrays.asList("value2"), stale.getTables(), null, generation);
+		assertEquals(Arrays.asList("value2"), cache.get(key));
+		
+		try {
+			ResultCache.builder().ttl(Duration.ZERO);
+			fail();
+		} catch (IllegalArgumentException e) {
+			assertEquals("ttl must be positive: PT0S", e.getMessage());
+		}
+	}
+	
+	@Test
+	public void async_list_all() throws Exception {
+		JdbcDataSource dataSource = new JdbcDataSource();
+		dataSource.setURL(URL);
+		AtomicInteger active = new AtomicInteger();
+		AtomicInteger maxActive = new AtomicInteger();
+		try(AsyncQueryExecutor async = AsyncQueryExecutor.builder(dataSource).maxConcurrency(2).build()) {
+			List<NativeSqlBuilder> queries = new ArrayList<>();
+			for(int i = 1; i <= 10; i++) {
+				NativeSqlBuilder sql = NativeSqlBuilder.create();
+				sql.select("field").from("tt").where(sql.eq("id", i));
+				queries.add(sql);
+			}
+			List<List<String>> results = async.listAll(queries, rs -> {
+				maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+				try {
+					Thread.sleep(20);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				active.decrementAndGet();
+				return rs.getString(1);
+			}).get(10, TimeUnit.SECONDS);
+			assertEquals(10, results.size());
+			assertEquals(Arrays.asList("value7"), results.get(6));
+			assertTrue(maxActive.get() <= 2);
+			assertEquals(2, async.getAvailableSlots());
+		}
+	}
+	
+	@Test
+	public void async_timeout_cancels() throws Exception {
+		JdbcDataSource dataSource = new JdbcDataSource();
+		dataSource.setURL(URL);
+		try(AsyncQueryExecutor async = AsyncQueryExecutor.builder(dataSource).maxConcurrency(1).build()) {
+			NativeSqlBuilder slow = NativeSqlBuilder.create();
+			slow.countAll().from("tt", "a").from("tt", "b").from("tt", "c");
+			long start = System.nanoTime();
+			try {
+				async.list(slow, rs -> rs.getLong(1), Duration.ofMillis(200)).get(10, TimeUnit.SECONDS);
+				fail("The query should time out");
+			} catch (ExecutionException e) {
+				assertTrue(e.getCause() instanceof TimeoutException);
+			}
+			assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+			
+			NativeSqlBuilder fast = NativeSqlBuilder.create();
+			fast.countAll().from("tt");
+			assertEquals(Arrays.asList(1000L), async.list(fast, rs -> rs.getLong(1)).get(10, TimeUnit.SECONDS));
+		}
+	}
+	
+	@Test
+	public void timestamp_range_keeps_fractions() throws SQLException {
+		try(Statement stmt = conn.createStatement()) {
+			stmt.execute("create table events (id number(10), created timestamp)");
+			stmt.execute("insert into events values (1, timestamp '2018-01-01 10:00:00'), (2, timestamp '2018-01-01 10:00:00.5'), "
+					+ "(3, timestamp '2018-01-01 10:00:01')");
+		}
+		NativeSqlBuilder sql = NativeSqlBuilder.create();
+		sql.select("id").from("events").where(sql.range("created", LocalDateTime.of(2018, 1, 1, 10, 0, 0, 500_000_000), LocalDateTime.of(2018, 1, 1, 10, 0, 1)));
+		assertEquals(Arrays.asList(2), sql.list(conn, rs -> rs.getInt(1)));
+		
+		sql = NativeSqlBuilder.create();
+		sql.select("id").from("events").where(sql.range("created", null, LocalDateTime.of(2018, 1, 1, 10, 0, 0, 500_000_000)));
+		BoundSql bound = sql.toBoundSql();
+		try(PreparedStatement stmt = bound.prepare(conn)) {
+			try(ResultSet rs = stmt.executeQuery()) {
+				assertTrue(rs.next());
+				assertEquals(1, rs.getInt(1));
+				assertFalse(rs.next());
+			}
+		}
+	}
+	
+	@Test
+	public void schema_catalog() throws Exception {
+		try(Statement stmt = conn.createStatement()) {
+			stmt.execute("create index tt_kind_idx on tt (kind, field)");
+		}
+		SchemaCatalog loaded = SchemaCatalog.load(conn, "PUBLIC");
+		Path snapshot = Files.createTempFile("catalog", ".bin");
+		try {
+			loaded.write(snapshot);
+			SchemaCatalog catalog = SchemaCatalog.read(snapshot);
+			SchemaCatalog.Table tt = catalog.getTable("public.TT");
+			assertEquals(loaded.getTables().size(), catalog.getTables().size());
+			assertEquals(Arrays.asList("ID", "FIELD", "KIND"), tt.getColumns().stream().map(SchemaCatalog.Column::getName).collect(Collectors.toList()));
+			assertTrue(tt.getColumn("id").isNumeric());
+			assertTrue(tt.getColumn("id").isIndexed());
+			assertTrue(tt.getColumn("kind").isIndexed());
+			assertFalse(tt.getColumn("field").isIndexed());
+			assertEquals(String.class, tt.getColumn("field").getJavaType());
+			assertTrue(tt.getIndexes().stream().anyMatch(index -> index.getColumns().equals(Arrays.asList("KIND", "FIELD"))));
+			
+			NativeSqlFactory factory = NativeSqlFactory.builder().catalog(catalog).build();
+			NativeSqlBuilder sql = factory.create();
+			sql.select("t.id", "fieldx").from("tt", "t").where(sql.in("t.field", 5, 7), sql.eq("t.field", 5), sql.ne("id", "4"), sql.lt("t.kindx", 8));
+			assertEquals("select t.id, fieldx from tt t where t.field in ('5', '7') and t.field = '5' and id != 4 and t.kindx < 8", sql.toString());
+			assertEquals(Arrays.asList("fieldx", "t.kindx"), sql.getUnknownColumns());
+			
+			sql = factory.create();
+			NativeSqlBuilder sub = factory.create();
+			sub.select("id").from("tt").where(sub.eq("kind", "odd"));
+			sql.select("field").from("tt").where(sql.in("id", sub), sql.lt("id", 4));
+			assertEquals(Collections.emptyList(), sql.getUnknownColumns());
+			assertEquals(Arrays.asList("value1", "value3"), sql.list(conn, rs -> rs.getString(1)));
+			
+			try {
+				sql.eq("id", "abc");
+				fail();
+			} catch (IllegalArgumentException e) {
+				assertEquals("id is NUMERIC, 'abc' is not a number", e.getMessage());
+			}
+		} finally {
+			Files.delete(snapshot);
+		}
+	}
+	
+	@Test
+	public void strict_lint() throws SQLException {
+		SchemaCatalog catalog = SchemaCatalog.load(conn, "PUBLIC");
+		NativeSqlFactory strict = NativeSqlFactory.builder().catalog(catalog).strict(LintWarning.Severity.ERROR).build();
+		NativeSqlBuilder sql = strict.create();
+		sql.select("a.field").from("tt", "a").innerJoin("tt", "b").on("a.field", "b.id").where(sql.like("a.field", "%5"), sql.eq("a.kindx", "odd"));
+		List<LintWarning> warnings = QueryLinter.lint(sql);
+		assertEquals(Arrays.asList(LintWarning.Rule.TYPE_MISMATCH, LintWarning.Rule.LEADING_WILDCARD, LintWarning.Rule.UNKNOWN_COLUMN), 
+				warnings.stream().map(LintWarning::getRule).collect(Collectors.toList()));
+		try {
+			sql.list(conn, rs -> rs.getString(1));
+			fail();
+		} catch (QueryLintException e) {
+			assertEquals(1, e.getWarnings().size());
+			assertEquals("a.kindx", e.getWarnings().get(0).getTarget());
+		}
+		
+		sql.where(sql.eq("a.kind", "odd"));
+		try {
+			sql.list(conn, rs -> rs.getString(1));
+			fail();
+		} catch (QueryLintException e) {
+			assertEquals(LintWarning.Rule.UNKNOWN_COLUMN, e.getWarnings().get(0).getRule());
+		}
+		
+		NativeSqlBuilder valid = strict.create();
+		valid.select("field").from("tt").where(valid.like("field", "%5"), valid.eq("kind", "odd"), valid.lt("id", 10));
+		assertEquals(Arrays.asList("value5"), valid.list(conn, rs -> rs.getString(1)));
+	}
+	
+	@Test
+	public void with_queries_bind_in_order() throws SQLException {
+		NativeSqlFactory factory = NativeSqlFactory.builder().useLiterals(false).build();
+		NativeSqlBuilder even = factory.create();
+		even.select("id").from("tt").where(even.eq("kind", "even"), even.lt("id", 20));
+		NativeSqlBuilder sql = factory.create();
+		sql.with("small", even).select("t.field").from("small", "s").innerJoin("tt", "t").on("t.id", "s.id")
+			.where(sql.gt("t.id", 10), sql.in("t.id", even), sql.exists(even));
+		BoundSql bound = sql.toBoundSql();
+		assertTrue(bound.getSQL(), bound.getSQL().startsWith("with small as (select id from tt where kind = ? and id < ?) select"));
+		assertEquals(Arrays.asList("value12", "value14", "value16", "value18"), sql.list(conn, rs -> rs.getString(1)).stream().sorted().collect(Collectors.toList()));
+	}
+	
+	@Test
+	public void aggregates_on_the_server() throws SQLException {
+		NativeSqlBuilder sql = NativeSqlBuilder.create();
+		sql.select(sql.field("kind"), sql.sum("id").as("total"), sql.count("id").as("n"), sql.min("field", String.class).as("lowest"))
+			.from("tt").groupBy("kind").having(sql.countDistinct("field").gt(1L)).orderBy(sql.desc("total"));
+		List<String> rows = sql.list(conn, rs -> rs.getString(1) + " " + rs.getLong(2) + " " + rs.getLong(3) + " " + rs.getString(4));
+		assertEquals(Arrays.asList("even 250500 500 value10", "odd 250000 500 value1"), rows);
+		
+		NativeSqlBuilder odd = NativeSqlBuilder.create();
+		odd.select("id", "kind").from("tt").where(odd.eq("kind", "odd"));
+		NativeSqlBuilder top = NativeSqlBuilder.create();
+		top.select("o.id").from(odd, "o").orderBy(top.desc("o.id")).limit(3);
+		assertEquals(Arrays.asList(999, 997, 995), top.list(conn, rs -> rs.getInt(1)));
+	}
+	
+	@Test
+	public void dml_batches() throws SQLException {
+		try(Statement stmt = conn.createStatement()) {
+			stmt.execute("create table items (id number(10) primary key, name varchar2(20), qty number(10))");
+		}
+		List<Object[]> rows = new ArrayList<>();
+		for(int i = 1; i <= 2500; i++) {
+			rows.add(new Object[] { i, "item" + i, i % 7 == 0 ? null : i % 10 });
+		}
+		assertEquals(2500, NativeDmlBuilder.insertInto("items").columns("id", "name", "qty").batchSize(1000).executeBatch(conn, rows));
+		
+		NativeSqlBuilder count = NativeSqlBuilder.create();
+		count.countAll().from("items").where(count.field("qty").isNull());
+		assertEquals(Arrays.asList(357), count.list(conn, rs -> rs.getInt(1)));
+		
+		List<Object[]> renames = Arrays.asList(new Object[] { "first", 1 }, new Object[] { "second", 2 });
+		assertEquals(2, NativeDmlBuilder.update("items").columns("name").keys("id").executeBatch(conn, renames));
+		assertEquals(357, NativeDmlBuilder.update("items").set("qty", 0).where(sql -> sql.field("qty").isNull()).execute(conn));
+		
+		List<Object[]> upserts = Arrays.asList(new Object[] { "merged", 5, 1 }, new Object[] { "new", 6, 3000 });
+		assertEquals(2, NativeDmlBuilder.mergeInto("items").columns("name", "qty").keys("id").executeBatch(conn, upserts));
+		NativeSqlBuilder names = NativeSqlBuilder.create();
+		names.select("name").from("items").where(names.in("id", 1, 2, 3000)).orderBy("id");
+		assertEquals(Arrays.asList("merged", "second", "new"), names.list(conn, rs -> rs.getString(1)));
+		
+		assertEquals(1, NativeDmlBuilder.deleteFrom("items").keys("id").executeBatch(conn, Collections.singletonList(new Object[] { 3000 })));
+		assertEquals(1250, NativeDmlBuilder.deleteFrom("items").where(sql -> sql.gt("id", 1250)).execute(conn));
+	}
+	
+	@Test
+	public void parallel_slices() throws SQLException {
+		JdbcDataSource dataSource = new JdbcDataSource();
+		dataSource.setURL(URL);
+		try(ParallelQueryExecutor parallel = ParallelQueryExecutor.builder(dataSource).queueSize(8).build()) {
+			NativeSqlBuilder sql = NativeSqlBuilder.create();
+			sql.select("id").from("tt").where(sql.eq("kind", "odd"));
+			try(Stream<Integer> ids = parallel.stream(sql, Split.range("id", 1, 1000, 4), rs -> rs.getInt(1))) {
+				List<Integer> sorted = ids.sorted().collect(Collectors.toList());
+				assertEquals(500, sorted.size());
+				assertEquals(Integer.valueOf(999), sorted.get(499));
+				assertEquals(500, new HashSet<>(sorted).size());
+			}
+			
+			NativeSqlBuilder ordered = NativeSqlBuilder.create();
+			ordered.select("id").from("tt").orderBy("id");
+			try(Stream<Integer> ids = parallel.streamOrdered(ordered, Split.hash("field", 3), rs -> rs.getInt(1), Comparator.naturalOrder())) {
+				List<Integer> expected = new ArrayList<>();
+				for(int i = 1; i <= 1000; i++) {
+					expected.add(i);
+				}
+				assertEquals(expected, ids.collect(Collectors.toList()));
+			}
+			
+			try(Stream<Integer> ids = parallel.stream(ordered, Split.hash("field", 4), rs -> rs.getInt(1))) {
+				assertEquals(10, ids.limit(10).count());
+			}
+			
+			NativeSqlBuilder broken = NativeSqlBuilder.create();
+			broken.select("missing").from("tt");
+			try(Stream<Integer> ids = parallel.stream(broken, Split.range("id", 1, 1000, 2), rs -> rs.getInt(1))) {
+				ids.count();
+				fail();
+			} catch (RuntimeException e) {
+				// the error of a slice reaches the reader
+			}
+			
+			NativeSqlBuilder all = NativeSqlBuilder.create();
+			all.select("id").from("tt");
+			try(Stream<Integer> ids = parallel.stream(all, Split.range("id", 1, 1000, 2), rs -> {
+				throw new AssertionError("mapper failed");
+			})) {
+				ids.count();
+				fail();
+			} catch (AssertionError e) {
+				// an Error of a slice ends the stream as well
+				assertEquals("mapper failed", e.getMessage());
+			}
+		}
+	}
+	
+	@Test
+	public void export_csv_and_json_lines() throws Exception {
+		try(Statement stmt = conn.createStatement()) {
+			stmt.execute("create table exports (id number(10), name varchar2(40), price number(10,2), created timestamp)");
+			stmt.execute("insert into exports values (1, 'plain', 1.50, timestamp '2024-01-02 03:04:05.120')");
+			stmt.execute("insert into exports values (2, 'a, \"quoted\" caf\u00e9', null, null)");
+		}
+		NativeSqlBuilder sql = NativeSqlBuilder.create();
+		sql.select("id", "name", "price", "created").from("exports").orderBy("id");
+		Path csv = Files.createTempFile("export", ".csv");
+		Path json = Files.createTempFile("export", ".jsonl");
+		Path gzip = Files.createTempFile("export", ".csv.gz");
+		try {
+			ExportResult result = ResultExporter.builder(ExportFormat.CSV).bufferSize(64).build().export(sql, conn, csv);
+			String expected = "ID,NAME,PRICE,CREATED\n"
+					+ "1,plain,1.50,2024-01-02 03:04:05.12\n"
+					+ "2,\"a, \"\"quoted\"\" caf\u00e9\",,\n";
+			assertEquals(expected, new String(Files.readAllBytes(csv), StandardCharsets.UTF_8));
+			assertEquals(2, result.getRows());
+			assertEquals(Files.size(csv), result.getBytes());
+			assertTrue(result.getMegabytesPerSecond() >= 0);
+			
+			ResultExporter.builder(ExportFormat.JSON_LINES).build().export(sql, conn, json);
+			assertEquals("{\"ID\":1,\"NAME\":\"plain\",\"PRICE\":1.50,\"CREATED\":\"2024-01-02 03:04:05.12\"}\n"
+					+ "{\"ID\":2,\"NAME\":\"a, \\\"quoted\\\" caf\u00e9\",\"PRICE\":null,\"CREATED\":null}\n",
+					new String(Files.readAllBytes(json), StandardCharsets.UTF_8));
+			
+			NativeSqlBuilder all = NativeSqlBuilder.create();
+			all.select("id", "field", "kind").from("tt").orderBy("id");
+			ExportResult compressed = ResultExporter.builder(ExportFormat.CSV).gzip(true).bufferSize(1024).build().export(all, conn, gzip);
+			ResultExporter.builder(ExportFormat.CSV).build().export(all, conn, csv);
+			try(InputStream in = new GZIPInputStream(Files.newInputStream(gzip))) {
+				assertArrayEquals(Files.readAllBytes(csv), in.readAllBytes());
+			}
+			assertEquals(1000, compressed.getRows());
+			assertEquals(Files.size(csv), compressed.getBytes());
+			assertTrue(compressed.getFileBytes() < compressed.getBytes());
+			
+			try(Statement stmt = conn.createStatement()) {
+				stmt.execute("create table eras (id number(10), started date, amount number)");
+			}
+			try(PreparedStatement insert = conn.prepareStatement("insert into eras values (?, ?, ?)")) {
+				Object[][] rows = { { 1, LocalDate.of(-44, 3, 15), 42 }, { 2, LocalDate.of(10000, 1, 1), 1.5 } };
+				for(Object[] row : rows) {
+					for(int i = 0; i < row.length; i++) {
+						insert.setObject(i + 1, row[i]);
+					}
+					insert.executeUpdate();
+				}
+			}
+			NativeSqlBuilder eras = NativeSqlBuilder.create();
+			eras.select("id", "started", "amount").from("eras").orderBy("id");
+			ResultExporter.builder(ExportFormat.CSV).header(false).build().export(eras, conn, csv);
+			assertEquals("1,-0044-03-15 00:00:00,42\n2,10000-01-01 00:00:00,1.5\n", new String(Files.readAllBytes(csv), StandardCharsets.UTF_8));
+		} finally {
+			Files.delete(csv);
+			Files.delete(json);
+			Files.delete(gzip);
+		}
+	}
+}
@@ -2,12 +2,30 @@ package native;
 
 import static org.junit.Assert.*;
 
+import java.io.IOException;
+import java.math.BigDecimal;
 import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 import org.joda.time.DateTime;
 import org.junit.Test;
 
+import com.querydsl.core.types.ParamNotSetException;
+import com.querydsl.core.types.dsl.Expressions;
+
 public class NativeSqlBuilderTest {
 
 	@Test
@@ -367,6 +385,7 @@ public class NativeSqlBuilderTest {
 	}
 	
 	@Test
+	@SuppressWarnings("deprecation")
 	public void convertTimeStampToJodaDateTime() {
 		String theDateTime = "2017-11-20 20:45:23.123";
 		Timestamp ts1 = Timestamp.valueOf(theDateTime);
@@ -378,4 +397,681 @@ public class NativeSqlBuilderTest {
 	}
 	
 	
+	@Test
+	public void bound_eq_and_in() {
+		NativeSqlBuilder sql = NativeSqlBuilder.create();
+		sql.select("field").from("tt").where(sql.eq("field", "value"), sql.in("other", "a", "b"), sql.eq("num", 123));
+		BoundSql bound = sql.toBoundSql();
+		assertEquals("select field from tt where field = ? and other in (?, ?) and num = ?", bound.getSQL());
+		assertEquals(4, bound.getParameters().size());
+		assertEquals("value", bound.getParameters().get(0).getValue());
+		assertEquals("b", bound.getParameters().get(2).getValue());
+		assertEquals(Integer.class, bound.getParameters().get(3).getType());
+		assertEquals(4, bound.getParameters().get(3).getIndex());
+		// the literal rendering is unchanged
+		assertEquals("select field from tt where field = 'value' and other in ('a', 'b') and num = 123", sql.toString());
+	}
+	
+	@Test
+	public void bound_numbered_like_to_timestamp() {
+		NativeSqlBuilder sql = NativeSqlBuilder.create();
+		sql.select("field").from("tt").where(sql.like("field", "%v?%"), sql.gt("ts", sql.to_timestamp(new DateTime(2018, 12, 31, 22, 45, 31))), sql.eq("x", sql.expr("'?'")));
+		BoundSql bound = sql.toBoundSql(BindStyle.NUMBERED);
+		assertEquals("select field from tt where field like :1 escape '\\' and ts > to_timestamp(:2, :3) and x = '?'", bound.getSQL());
+		assertEquals("%v?%", bound.getParameters().get(0).getValue());
+		assertEquals("12/31/2018 22:45:31.0", bound.getParameters().get(1).getValue());
+		assertEquals("mm/dd/yyyy hh24:mi:ss.ff3", bound.getParameters().get(2).getValue());
+	}
+	
+	@Test
+	public void compiled_template() {
+		NativeSqlBuilder sql = NativeSqlBuilder.create();
+		sql.select("field").from("tt").where(sql.eq("field", sql.param("value")), sql.in("other", sql.listParam("others")),
+				sql.eq("num", sql.param("num", Long.class)), sql.like("name", sql.param("pattern")),
+				sql.gt("ts", sql.to_timestamp(sql.param("from", DateTime.class))), sql.lt("ts", sql.param("until")));
+		NativeSqlTemplate template = sql.compile();
+		
+		Map<String, Object> values = new HashMap<>();
+		values.put("value", "it's");
+		values.put("others", Arrays.asList("a", "b"));
+		values.put("num", 12L);
+		values.put("pattern", "%x%");
+		values.put("from", new DateTime(2018, 12, 31, 22, 45, 31));
+		values.put("until", "z");
+		
+		String expected = "select field from tt where field = 'it''s' and other in ('a', 'b') and num = 12 and name like '%x%' escape '\\' "
+						+ "and ts > to_timestamp('12/31/2018 22:45:31.0', 'mm/dd/yyyy hh24:mi:ss.ff3') and ts < 'z'";
+		assertEquals(expected, template.render(values));
+		
+		BoundSql bound = template.bind(values);
+		String expectedBound = "select field from tt where field = ? and other in (?, ?) and num = ? and name like ? escape '\\' "
+						+ "and ts > to_timestamp(?, 'mm/dd/yyyy hh24:mi:ss.ff3') and ts < ?";
+		assertEquals(expectedBound, bound.getSQL());
+		assertEquals(7, bound.getParameters().size());
+		assertEquals("12/31/2018 22:45:31.0", bound.getParameters().get(5).getValue());
+	}
+	
+	@Test(expected = ParamNotSetException.class)
+	public void compiled_template_missing_value() {
+		NativeSqlBuilder sql = NativeSqlBuilder.create();
+		sql.select("field").from("tt").where(sql.eq("field", sql.param("value")));
+		sql.compile().render(new HashMap<>());
+	}
+	
+	@Test
+	public void factory_bind_mode() {
+		NativeSqlFactory factory = NativeSqlFactory.builder().useLiterals(false).build();
+		NativeSqlBuilder sql = NativeSqlBuilder.create(factory);
+		sql.select("field").from("tt").where(sql.eq("field", "value"));
+		assertEquals("select field from tt where field = ?", sql.toString());
+		assertEquals("select field from tt where field = ?", sql.clone().toString());
+		
+		NativeSqlBuilder literal = NativeSqlFactory.DEFAULT.create();
+		literal.select("field").from("tt").where(literal.eq("field", "value"));
+		assertEquals("select field from tt where field = 'value'", literal.toString());
+	}
+	
+	@Test
+	public void toString_is_cached_until_changed() {
+		NativeSqlBuilder subQ = NativeSqlBuilder.create();
+		subQ.select("a").from("tb");
+		NativeSqlBuilder sql = NativeSqlBuilder.create();
+		sql.select("field").from("tt").where(sql.in("field", subQ));
+		String first = sql.toString();
+		assertSame(first, sql.toString());
+		
+		sql.where(sql.eq("f", "v"));
+		assertEquals("select field from tt where field in (select a from tb) and f = 'v'", sql.toString());
+		
+		subQ.where(subQ.eq("b", 1));
+		assertEquals("select field from tt where field in (select a from tb where b = 1) and f = 'v'", sql.toString());
+	}
+	
+	@Test
+	public void sub_query_of_other_builder_invalidates_cache() {
+		NativeSqlBuilder sub = NativeSqlBuilder.create();
+		sub.select("a").from("tb");
+		NativeSqlBuilder inner = NativeSqlBuilder.create();
+		NativeSqlBuilder outer = NativeSqlBuilder.create();
+		outer.select("field").from("tt").where(inner.in("field", sub), inner.exists(sub));
+		assertEquals("with cte_1 as (select a from tb) select field from tt where field in (select * from cte_1) and exists (select * from cte_1)", outer.toString());
+		assertEquals(1, outer.getSubQueries().size());
+		assertTrue(inner.getSubQueries().isEmpty());
+		
+		sub.where(sub.eq("b", 1));
+		assertEquals("with cte_1 as (select a from tb where b = 1) select field from tt where field in (select * from cte_1) and exists (select * from cte_1)", 
+				outer.toString());
+		
+		StringBuilder sb = new StringBuilder();
+		sub.where(sub.eq("c", 2));
+		outer.appendTo(sb);
+		assertEquals(outer.toString(), sb.toString());
+	}
+	
+	@Test
+	public void append_to_buffer() {
+		NativeSqlBuilder sql = NativeSqlBuilder.create();
+		sql.select("field").from("tt").where(sql.eq("field", "value"));
+		StringBuilder sb = new StringBuilder("sql: ");
+		sql.appendTo(sb);
+		assertEquals("sql: select field from tt where field = 'value'", sb.toString());
+	}
+	
+	@Test
+	public void schema_table_column() {
+		NativeSqlBuilder sql = NativeSqlBuilder.create();
+		sql.select("app.tt.field").from("app.tt").innerJoin("app.jt").on("app.jt.id", "app.tt.id").where(sql.eq("app.tt.field", "value"), sql.eq("tt.id", 1L));
+		String expected = "select app.tt.field from app.tt inner join app.jt on app.jt.id = app.tt.id where app.tt.field = 'value' and tt.id = 1";
+		assertEquals(expected, sql.toString());
+	}
+	
+	@Test
+	public void in_chunked() {
+		NativeSqlFactory factory = NativeSqlFactory.builder().inListPolicy(InListPolicy.builder().chunkSize(2).build()).build();
+		NativeSqlBuilder sql = factory.create();
+		sql.select("field").from("tt").where(sql.eq("f", "v"), sql.in("field", Arrays.asList("a", "b", "c")));
+		// System.out.println(sql.toString());
+		String expected = "select field from tt where f = 'v' and (field in ('a', 'b') or field = 'c')";
+		assertEquals(expected, sql.toString());
+	}
+	
+	@Test
+	public void in_collection() {
+		NativeSqlBuilder sql = NativeSqlBuilder.create();
+		sql.select("field").from("tt").where(sql.in("field", Arrays.asList("a", "b"), InListStrategy.COLLECTION));
+		// System.out.println(sql.toString());
+		String expected = "select field from tt where field in (select column_value from table(SYS.ODCIVARCHAR2LIST('a', 'b')))";
+		assertEquals(expected, sql.toString());
+		BoundSql bound = sql.toBoundSql();
+		assertEquals("select field from tt where field in (select column_value from table(?))", bound.getSQL());
+		assertEquals(1, bound.getParameters().size());
+	}
+	
+	@Test
+	public void in_temp_table() {
+		InListPolicy policy = InListPolicy.builder().tempTable("in_list_values", "set_id", "v1", "v2").build();
+		NativeSqlBuilder sql = NativeSqlFactory.builder().inListPolicy(policy).build().create();
+		sql.select("field").from("tt").where(sql.in("field", Arrays.asList("a", "b"), InListStrategy.TEMP_TABLE));
+		// System.out.println(sql.toString());
+		String expected = "select field from tt where field in (select v1 from in_list_values where set_id = ";
+		assertTrue(sql.toString(), sql.toString().startsWith(expected));
+	}
+	
+	@Test
+	public void in_tuples() {
+		NativeSqlBuilder sql = NativeSqlBuilder.create();
+		sql.select("field").from("tt").where(sql.in(sql.listFields("x", "y"), Arrays.asList(new Object[] { "a", 1 }, new Object[] { "b", 2 })));
+		// System.out.println(sql.toString());
+		String expected = "select field from tt where (x, y) in (('a', 1), ('b', 2))";
+		assertEquals(expected, sql.toString());
+		
+		NativeSqlBuilder chunked = NativeSqlBuilder.create();
+		chunked.select("field").from("tt").where(chunked.in(chunked.listFields("x", "y"), Arrays.asList(new Object[] { "a", 1 }, new Object[] { "b", 2 }), InListStrategy.CHUNKED));
+		assertEquals(expected, chunked.toString());
+		
+		try {
+			sql.in(sql.listFields("x", "y"), Arrays.asList(new Object[] { "a", 1 }, new Object[] { "b" }));
+			fail("the second tuple has one value for two fields");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+	
+	@Test
+	public void keyset_page() {
+		NativeSqlBuilder first = NativeSqlBuilder.create();
+		first.select("field").from("tt").keysetPage(Keyset.of("tt.created", "tt.id"), null, 10);
+		// System.out.println(first.toString());
+		String expectedFirst = "select * from (   select field from tt order by tt.created asc, tt.id asc ) where rownum <= 10";
+		assertEquals(expectedFirst, first.toString());
+		
+		NativeSqlBuilder next = NativeSqlBuilder.create();
+		next.select("field").from("tt").where(next.eq("kind", "a")).keysetPage(Keyset.of("tt.created", "tt.id"), new Object[] { "2018", 7L }, 10);
+		// System.out.println(next.toString());
+		String expectedNext = "select * from (   select field from tt where kind = 'a' and (tt.created >= '2018' and (tt.created > '2018' or tt.created = '2018' and tt.id > 7)) "
+							+ "order by tt.created asc, tt.id asc ) where rownum <= 10";
+		assertEquals(expectedNext, next.toString());
+	}
+	
+	@Test
+	public void dialect_limit() {
+		NativeSqlBuilder oracle12 = NativeSqlBuilder.create(StandardDialect.ORACLE_12);
+		oracle12.select("field").from("tt").where(oracle12.eq("field", "value")).limit(10);
+		// System.out.println(oracle12.toString());
+		assertEquals("select field from tt where field = 'value' fetch first 10 rows only", oracle12.toString());
+		assertEquals("select field from tt where field = ? fetch first ? rows only", oracle12.toBoundSql().getSQL());
+		oracle12.offset(20);
+		assertEquals("select field from tt where field = 'value' offset 20 rows fetch next 10 rows only", oracle12.toString());
+		
+		NativeSqlBuilder postgres = NativeSqlBuilder.create(StandardDialect.POSTGRESQL);
+		postgres.select("field").from("tt").where(postgres.eq("field", "value")).limit(10);
+		assertEquals("select field from tt where field = 'value' limit 10", postgres.toString());
+		
+		NativeSqlBuilder h2 = NativeSqlBuilder.create(StandardDialect.H2);
+		h2.select("field").from("tt").keysetPage(Keyset.of("a", "b"), new Object[] { "x", 1 }, 10);
+		assertEquals("select field from tt where (a, b) > ('x', 1) order by a asc, b asc limit 10", h2.toString());
+		
+		assertSame(NativeSqlFactory.DEFAULT, NativeSqlFactory.of(StandardDialect.ORACLE_11));
+	}
+	
+	@Test
+	public void hints() {
+		NativeSqlBuilder sub = NativeSqlBuilder.create();
+		sub.select("field").from("app.tt2").hint(Hint.index("tt2", "tt2_field_idx"));
+		NativeSqlBuilder sql = NativeSqlBuilder.create();
+		sql.select("a.field").from("tt", "a").innerJoin("tt3", "b").on("a.id", "b.id")
+			.where(sql.in("a.field", sub))
+			.hint(Hint.leading("a", "b"), Hint.useHash("B"))
+			.hint(Hint.firstRows(10));
+		// System.out.println(sql.toString());
+		String expected = "select /*+ LEADING(a b) USE_HASH(B) FIRST_ROWS(10) */ a.field from tt a inner join tt3 b on a.id = b.id "
+						+ "where a.field in (select /*+ INDEX(tt2 tt2_field_idx) */ field from app.tt2)";
+		assertEquals(expected, sql.toString());
+		
+		try {
+			sql.hint(Hint.full("tt"));
+			fail("tt is only declared with alias a");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		
+		try {
+			Hint.index("a", "idx */ delete from tt --");
+			fail("Index names must be identifiers");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		try {
+			Hint.leading("a", "b*/");
+			fail("Aliases must be identifiers");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		assertEquals("INDEX(app.tt2 tt2_field_idx)", Hint.index("app.tt2", "tt2_field_idx").toString());
+	}
+	
+	@Test
+	public void render_events() {
+		List<RenderEvent> events = new ArrayList<>();
+		NativeSqlFactory factory = NativeSqlFactory.builder().listener(new QueryListener() {
+			@Override
+			public void rendered(RenderEvent event) {
+				events.add(event);
+			}
+		}).build();
+		NativeSqlBuilder sub = factory.create();
+		sub.select("field").from("tt2").where(sub.in("kind", "a", "b"));
+		NativeSqlBuilder sql = factory.create();
+		sql.select("field").from("tt").where(sql.in("field", sub), sql.in("kind", "c", "d", "e"));
+		sql.toString();
+		sql.toString();
+		assertEquals(1, events.size());
+		RenderEvent event = events.get(0);
+		assertEquals(sql.toString().length(), event.getSqlLength());
+		assertEquals(5, event.getInValueCount());
+		assertEquals(1, event.getSubQueryDepth());
+		long fingerprint = sql.fingerprint();
+		assertEquals(fingerprint, event.getFingerprint());
+		sql.where(sql.eq("kind", "f"));
+		assertEquals(fingerprint, event.getFingerprint());
+		
+		NativeSqlBuilder other = factory.create();
+		other.select("field").from("tt2").where(other.in("kind", "x", "y"));
+		assertEquals(sub.fingerprint(), other.fingerprint());
+		assertNotEquals(sub.fingerprint(), sql.fingerprint());
+	}
+	
+	@Test
+	public void query_statistics_bounded() {
+		QueryStatistics stats = new QueryStatistics(1);
+		NativeSqlFactory factory = NativeSqlFactory.builder().listener(stats).build();
+		NativeSqlBuilder a = factory.create();
+		a.select("field").from("tt").where(a.eq("kind", "a"));
+		a.toString();
+		NativeSqlBuilder b = factory.create();
+		b.select("field").from("tt2");
+		b.toString();
+		assertEquals(1, stats.getEntries().size());
+		assertNotNull(stats.get(a.fingerprint()));
+		assertNull(stats.get(b.fingerprint()));
+		assertEquals(1, stats.getDropped());
+		
+		stats.clear();
+		b.where(b.eq("kind", "b")).toString();
+		assertNotNull(stats.get(b.fingerprint()));
+	}
+	
+	@Test
+	public void latency_histogram() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for(long i = 1; i <= 1000; i++) {
+			histogram.record(i * 1000);
+		}
+		assertEquals(1000, histogram.getCount());
+		assertEquals(1_000_000, histogram.getMax());
+		assertEquals(500_000, histogram.getPercentile(50), 500_000 / 16);
+		assertEquals(990_000, histogram.getPercentile(99), 990_000 / 16);
+		assertEquals(1_000_000, histogram.getPercentile(100));
+	}
+	
+	@Test
+	public void fingerprint() {
+		NativeSqlBuilder a = NativeSqlBuilder.create();
+		a.select("field").from("tt").where(a.eq("kind", "a"), a.in("field", "v1", "v2"), 
+				a.in(a.listFields("f1", "f2"), Arrays.asList(new Object[] { "x", 1 }, new Object[] { "y", 2 })));
+		NativeSqlBuilder b = NativeSqlBuilder.create();
+		b.select("field").from("tt").where(b.eq("kind", "b"), b.in("field", "v3", "v4", "v5"), 
+				b.in(b.listFields("f1", "f2"), Arrays.asList(new Object[] { "x", 1 }, new Object[] { "y", 2 }, new Object[] { "z", 3 })));
+		assertEquals(a.fingerprint(), b.fingerprint());
+		assertEquals("select field from tt where kind = ? and field in (?) and (f1, f2) in ((?, ?))", a.normalizedSql());
+		assertEquals(a.normalizedSql(), b.normalizedSql());
+		
+		long before = b.fingerprint();
+		b.limit(10);
+		assertNotEquals(before, b.fingerprint());
+		
+		NativeSqlBuilder c = NativeSqlBuilder.create();
+		c.select("field").from("tt").where(c.eq("type_", "a"), c.in("field", "v1", "v2"));
+		assertNotEquals(a.fingerprint(), c.fingerprint());
+	}
+	
+	@Test
+	public void fingerprint_in_list_lengths() {
+		List<NativeSqlBuilder> queries = new ArrayList<>();
+		for(int size : new int[] { 1, 3, 1500 }) {
+			List<String> values = new ArrayList<>();
+			for(int i = 0; i < size; i++) {
+				values.add("v" + i);
+			}
+			NativeSqlBuilder sql = NativeSqlBuilder.create();
+			sql.select("field").from("tt").where(sql.eq("kind", "a"), sql.in("field", values), sql.in(sql.listFields("f1", "f2"), rows(size)));
+			queries.add(sql);
+		}
+		assertTrue(queries.get(0).toString().startsWith("select field from tt where kind = 'a' and field = 'v0' and "));
+		assertTrue(queries.get(2).toString().contains(" and (field in ('v0', "));
+		for(NativeSqlBuilder sql : queries) {
+			assertEquals(queries.get(0).fingerprint(), sql.fingerprint());
+			assertEquals("select field from tt where kind = ? and field in (?) and (f1, f2) in ((?, ?))", sql.normalizedSql());
+		}
+		
+		NativeSqlBuilder eq = NativeSqlBuilder.create();
+		eq.select("field").from("tt").where(eq.eq("kind", "a"), eq.eq("field", "v0"), eq.in(eq.listFields("f1", "f2"), rows(1)));
+		assertNotEquals(queries.get(0).fingerprint(), eq.fingerprint());
+	}
+	
+	private static List<Object[]> rows(int size) {
+		List<Object[]> rows = new ArrayList<>();
+		for(int i = 0; i < size; i++) {
+			rows.add(new Object[] { "x" + i, i });
+		}
+		return rows;
+	}
+	
+	@Test
+	public void immutable_branches() throws IOException {
+		ImmutableSqlBuilder base = ImmutableSqlBuilder.create().select("field").from("tt");
+		ImmutableSqlBuilder even = base.where(sql -> sql.eq("kind", "even"));
+		ImmutableSqlBuilder sub = ImmutableSqlBuilder.create().select("field").from("tt2");
+		ImmutableSqlBuilder in = base.where(sql -> sql.in("field", sub.toBuilder()));
+		
+		assertEquals("select field from tt", base.toString());
+		assertEquals("select field from tt where kind = 'even'", even.toString());
+		assertEquals("select count(*) from tt where kind = 'even'", even.countAll().toString());
+		assertEquals("select * from (   select field from tt where kind = 'even' ) where rownum <= 10", even.limit(10).toString());
+		assertEquals("select field from tt where field in (select field from tt2)", in.toString());
+		assertEquals(new HashSet<>(Arrays.asList("tt", "tt2")), in.getTables());
+		assertEquals("select field from tt where kind = 'even'", even.toString());
+		
+		// each clause is applied once, not again for every use of the instance or its branches
+		AtomicInteger applied = new AtomicInteger();
+		ImmutableSqlBuilder odd = base.where(sql -> {
+			applied.incrementAndGet();
+			return sql.eq("kind", "odd");
+		});
+		odd.toString();
+		odd.toBoundSql();
+		odd.fingerprint();
+		odd.orderBy("field").toString();
+		odd.limit(10).getTables();
+		assertEquals(1, applied.get());
+		
+		NativeSqlBuilder copy = odd.toBuilder();
+		copy.where(copy.eq("field", "x"));
+		assertEquals("select field from tt where kind = 'odd'", odd.toString());
+		
+		// the instances in between aren't materialized, the chain is applied to the builder of the rendered instance
+		AtomicInteger between = new AtomicInteger();
+		ImmutableSqlBuilder chain = base.where(sql -> {
+			between.incrementAndGet();
+			return sql.eq("kind", "odd");
+		}).groupBy(Expressions.stringPath("field")).orderBy("field");
+		assertEquals("select field from tt where kind = 'odd' group by field order by field asc", chain.toString());
+		assertEquals("select field from tt where kind = ? group by field order by field asc", chain.normalizedSql());
+		StringBuilder rendered = new StringBuilder();
+		chain.appendTo(rendered);
+		assertEquals(chain.toString(), rendered.toString());
+		assertEquals(1, between.get());
+	}
+	
+	@Test
+	public void typed_comparisons() {
+		NativeSqlBuilder sql = NativeSqlBuilder.create();
+		sql.select("field").from("tt").where(sql.gt("id", 10), sql.loe("amount", new BigDecimal("99.50")), sql.ne("kind", "a"), 
+				sql.between("created", LocalDate.of(2018, 1, 1), LocalDate.of(2018, 12, 31)), sql.in("id", 1L, 2L, 3L));
+		// System.out.println(sql.toString());
+		String expected = "select field from tt where id > 10 and amount <= 99.50 and kind != 'a' "
+						+ "and created between date '2018-01-01' and date '2018-12-31' and id in (1, 2, 3)";
+		assertEquals(expected, sql.toString());
+		
+		List<BindParameter> parameters = sql.toBoundSql().getParameters();
+		assertEquals(Integer.class, parameters.get(0).getType());
+		assertEquals(BigDecimal.class, parameters.get(1).getType());
+		assertEquals(LocalDate.class, parameters.get(3).getType());
+		assertEquals(Long.class, parameters.get(5).getType());
+		
+		NativeSqlBuilder chunked = NativeSqlBuilder.create();
+		chunked.select("field").from("tt").where(chunked.in("id", Arrays.asList(1, 2, 3), InListStrategy.INLINE), 
+				chunked.goe("created", LocalDateTime.of(2018, 1, 1, 10, 0)));
+		assertEquals("select field from tt where id in (1, 2, 3) and created >= timestamp '2018-01-01 10:00:00'", chunked.toString());
+		
+		NativeSqlFactory small = NativeSqlFactory.builder().inListPolicy(InListPolicy.builder().chunkSize(2).build()).build();
+		NativeSqlBuilder dates = small.create();
+		LocalDate[] days = { LocalDate.of(2018, 1, 1), LocalDate.of(2018, 1, 2), LocalDate.of(2018, 1, 3) };
+		dates.select("field").from("tt").where(dates.in("created", days, InListStrategy.COLLECTION));
+		// the or of the chunks is only put in parentheses when it is combined with other predicates
+		assertEquals("select field from tt where created in (date '2018-01-01', date '2018-01-02') or created = date '2018-01-03'", dates.toString());
+		dates.where(dates.eq("kind", "a"));
+		assertEquals("select field from tt where (created in (date '2018-01-01', date '2018-01-02') or created = date '2018-01-03') and kind = 'a'", dates.toString());
+	}
+	
+	@Test
+	public void temporal_ranges() {
+		NativeSqlBuilder sql = NativeSqlBuilder.create();
+		sql.select("field").from("tt").where(sql.range("created", LocalDateTime.of(2018, 1, 1, 0, 0), LocalDateTime.of(2018, 1, 1, 10, 0, 0, 125_000_000)));
+		String expected = "select field from tt where created >= timestamp '2018-01-01 00:00:00' and created < timestamp '2018-01-01 10:00:00.125'";
+		assertEquals(expected, sql.toString());
+		List<BindParameter> parameters = sql.toBoundSql().getParameters();
+		assertEquals(LocalDateTime.of(2018, 1, 1, 10, 0, 0, 125_000_000), parameters.get(1).getValue());
+		
+		NativeSqlBuilder days = NativeSqlBuilder.create();
+		days.select("field").from("tt").where(days.range("created", LocalDate.of(2018, 1, 1), LocalDate.of(2018, 1, 8)), 
+				days.range("updated", Instant.parse("2018-01-01T10:00:00.000001Z"), null));
+		expected = "select field from tt where created >= timestamp '2018-01-01 00:00:00' and created < timestamp '2018-01-08 00:00:00' "
+				+ "and updated >= timestamp '2018-01-01 10:00:00.000001'";
+		assertEquals(expected, days.toString());
+		
+		NativeSqlBuilder bc = NativeSqlBuilder.create();
+		bc.select("field").from("tt").where(bc.range("created", LocalDateTime.of(-44, 3, 15, 0, 0), null));
+		assertEquals("select field from tt where created >= timestamp '-0044-03-15 00:00:00'", bc.toString());
+		
+		try {
+			days.range("created", (LocalDate) null, null);
+			fail();
+		} catch (IllegalArgumentException e) {
+			assertEquals("created needs at least one bound", e.getMessage());
+		}
+	}
+	
+	@Test
+	public void timestamps_to_local_date_times() {
+		ZoneId amsterdam = ZoneId.of("Europe/Amsterdam");
+		TimeZone defaultZone = TimeZone.getDefault();
+		TimeZone.setDefault(TimeZone.getTimeZone(amsterdam));
+		try {
+			// around the start and end of daylight saving time, before 1970 and with nanos
+			Timestamp[] timestamps = { Timestamp.valueOf("2018-03-25 01:59:59.999"), new Timestamp(1521939600000L), null,
+					Timestamp.valueOf("2018-10-28 02:30:00"), new Timestamp(1540688400000L), Timestamp.valueOf("1960-06-01 12:00:00.123456789") };
+			LocalDateTime[] converted = NativeSqlBuilder.toLocalDateTimes(timestamps);
+			for(int i = 0; i < timestamps.length; i++) {
+				assertEquals(timestamps[i] != null ? timestamps[i].toLocalDateTime() : null, converted[i]);
+			}
+			assertEquals(LocalDateTime.of(2018, 3, 25, 3, 0), converted[1]);
+		} finally {
+			TimeZone.setDefault(defaultZone);
+		}
+	}
+	
+	@Test
+	public void lint_warnings() {
+		List<String> values = new ArrayList<>();
+		for(int i = 0; i < 1500; i++) {
+			values.add("v" + i);
+		}
+		NativeSqlBuilder sql = NativeSqlBuilder.create();
+		sql.select("tt.field").from("tt").innerJoin("joinTable").leftJoin("other").on("other.id", "tt.id")
+			.where(sql.like("tt.field", "%abc"), sql.expr("upper(tt.kind)").eq("ABC"), sql.eq("trunc(tt.created)", "x"), 
+					sql.in("tt.code", values, InListStrategy.CHUNKED), sql.like("tt.name", "abc%"));
+		List<LintWarning.Rule> rules = QueryLinter.lint(sql).stream().map(LintWarning::getRule).collect(Collectors.toList());
+		assertEquals(Arrays.asList(LintWarning.Rule.JOIN_WITHOUT_ON, LintWarning.Rule.LEADING_WILDCARD, LintWarning.Rule.FUNCTION_ON_COLUMN, 
+				LintWarning.Rule.FUNCTION_ON_COLUMN, LintWarning.Rule.LARGE_IN_LIST), rules);
+		
+		NativeSqlBuilder sub = NativeSqlBuilder.create();
+		sub.select("id").from("tt2").where(sub.predicatePlaceholder());
+		NativeSqlBuilder outer = NativeSqlBuilder.create();
+		outer.select("field").from("tt").where(outer.in("id", sub), outer.eq("kind", "a"));
+		List<LintWarning> warnings = QueryLinter.lint(outer);
+		assertEquals(1, warnings.size());
+		assertEquals(LintWarning.Severity.ERROR, warnings.get(0).getSeverity());
+		assertEquals(LintWarning.Rule.PLACEHOLDER_ONLY, warnings.get(0).getRule());
+		try {
+			QueryLinter.assertClean(outer);
+			fail();
+		} catch (AssertionError e) {
+			assertTrue(e.getMessage().contains("PLACEHOLDER_ONLY"));
+		}
+		
+		// the sub-query is used by two sub-queries, it is linted once
+		NativeSqlBuilder left = NativeSqlBuilder.create();
+		left.select("id").from("tt3").where(left.in("id", sub));
+		NativeSqlBuilder right = NativeSqlBuilder.create();
+		right.select("id").from("tt4").where(right.in("id", sub));
+		NativeSqlBuilder both = NativeSqlBuilder.create();
+		both.select("field").from("tt").where(both.in("id", left), both.in("parent", right));
+		assertEquals(1, QueryLinter.lint(both).size());
+		
+		sub.where(sub.gt("id", 10));
+		QueryLinter.assertClean(outer);
+	}
+	
+	@Test
+	public void with_queries() {
+		NativeSqlBuilder odd = NativeSqlBuilder.create();
+		odd.select("id").from("tt2").where(odd.eq("kind", "odd"));
+		NativeSqlBuilder sql = NativeSqlBuilder.create();
+		sql.with("odd", odd, Hint.materialize()).select("o.id", "tt.field").from("odd", "o").innerJoin("tt").on("tt.id", "o.id")
+			.where(sql.in("tt.parent", odd));
+		String expected = "with odd as (select /*+ MATERIALIZE */ id from tt2 where kind = 'odd') "
+				+ "select o.id, tt.field from odd o inner join tt on tt.id = o.id where tt.parent in (select * from odd)";
+		assertEquals(expected, sql.toString());
+		assertEquals(new HashSet<>(Arrays.asList("tt", "tt2")), sql.getTables());
+		// the hint belongs to the declaration, not to the builder of the sub-query
+		assertEquals("select id from tt2 where kind = 'odd'", odd.toString());
+		
+		NativeSqlBuilder first = NativeSqlBuilder.create();
+		first.select("id").from("tt2").where(first.gt("id", 10));
+		NativeSqlBuilder same = NativeSqlBuilder.create();
+		same.select("id").from("tt2").where(same.gt("id", 10));
+		NativeSqlBuilder other = NativeSqlBuilder.create();
+		other.select("id").from("tt2").where(other.gt("id", 11));
+		NativeSqlBuilder repeated = NativeSqlBuilder.create();
+		repeated.select("field").from("tt").where(repeated.or(repeated.in("id", first), repeated.in("parent", same)), repeated.in("other", other));
+		expected = "with cte_1 as (select id from tt2 where id > 10) select field from tt "
+				+ "where (id in (select * from cte_1) or parent in (select * from cte_1)) and other in (select id from tt2 where id > 11)";
+		assertEquals(expected, repeated.toString());
+		
+		NativeSqlBuilder correlated = NativeSqlBuilder.create();
+		correlated.select("t2.id").from("tt2", "t2").where(correlated.eq("t2.id", correlated.expr("tt.id")));
+		NativeSqlBuilder outer = NativeSqlBuilder.create();
+		outer.select("field").from("tt").where(outer.exists(correlated), outer.exists(correlated));
+		assertFalse(outer.toString().startsWith("with"));
+		
+		try {
+			sql.with("ODD", other);
+			fail();
+		} catch (IllegalArgumentException e) {
+			assertEquals("ODD is already declared", e.getMessage());
+		}
+		
+		// the named sub-queries of sub-queries move up, a name is rendered once
+		NativeSqlBuilder left = NativeSqlBuilder.create();
+		left.with("odd", odd).select("id").from("odd");
+		NativeSqlBuilder right = NativeSqlBuilder.create();
+		right.with("odd", odd).select("parent").from("odd");
+		NativeSqlBuilder both = NativeSqlBuilder.create();
+		both.select("field").from("tt").where(both.in("id", left), both.in("parent", right));
+		expected = "with odd as (select id from tt2 where kind = 'odd') "
+				+ "select field from tt where id in (select id from odd) and parent in (select parent from odd)";
+		assertEquals(expected, both.toString());
+		
+		NativeSqlBuilder clash = NativeSqlBuilder.create();
+		clash.with("odd", other).select("id").from("odd");
+		NativeSqlBuilder clashing = NativeSqlBuilder.create();
+		clashing.select("field").from("tt").where(clashing.in("id", left), clashing.in("parent", clash));
+		try {
+			clashing.toString();
+			fail("odd names two queries");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+	}
+	
+	@Test
+	public void group_order_aggregates() {
+		NativeSqlBuilder sql = NativeSqlBuilder.create();
+		sql.select(sql.field("kind"), sql.sum("amount").as("total"), sql.countDistinct("customer").as("customers"),
+				sql.max("created", LocalDateTime.class).as("latest"))
+			.from("orders").where(sql.gt("amount", 0)).groupBy("kind").having(sql.sum("amount").gt(100))
+			.orderBy(sql.desc("total").nullsLast(), sql.asc("kind"));
+		String expected = "select kind, sum(amount) total, count(distinct customer) customers, max(created) latest from orders "
+				+ "where amount > 0 group by kind having sum(amount) > 100 order by total desc nulls last, kind asc";
+		assertEquals(expected, sql.toString());
+		
+		NativeSqlBuilder totals = NativeSqlBuilder.create();
+		totals.select(totals.field("customer"), totals.avg("amount").as("average")).from("orders").groupBy("customer");
+		NativeSqlBuilder top = NativeSqlBuilder.create();
+		top.select("t.customer", "t.average").from(totals, "t").orderBy(top.desc("t.average")).limit(3);
+		expected = "select * from (   select t.customer, t.average from (select customer, avg(amount) average from orders group by customer) t "
+				+ "order by t.average desc ) where rownum <= 3";
+		assertEquals(expected, top.toString());
+		
+		ImmutableSqlBuilder kinds = ImmutableSqlBuilder.create().select("kind").from("tt").groupBy("kind")
+				.having(s -> s.count("id").gt(1L)).orderBy("kind");
+		assertEquals("select kind from tt group by kind having count(id) > 1 order by kind asc", kinds.toString());
+	}
+	
+	@Test
+	public void dml_statements() {
+		assertEquals("insert into tt (id, field, kind) values (?, ?, 'odd')",
+				NativeDmlBuilder.insertInto("tt").columns("id", "field").set("kind", "odd").toString());
+		NativeDmlBuilder update = NativeDmlBuilder.update("tt").columns("field").set("kind", null).keys("id")
+				.where(sql -> sql.or(sql.eq("kind", "odd"), sql.gt("id", 10)));
+		assertEquals("update tt set field = ?, kind = null where id = ? and (kind = 'odd' or id > 10)", update.toString());
+		assertEquals("update tt set field = ?, kind = null where id = ? and (kind = ? or id > ?)", update.getSQL());
+		assertEquals("delete from tt where kind in ('a', 'b')",
+				NativeDmlBuilder.deleteFrom("tt").where(sql -> sql.in("kind", "a", "b")).toString());
+		String expected = "merge into tt t using dual on (t.id = ?) "
+				+ "when matched then update set t.field = ? when not matched then insert (field, id) values (?, ?)";
+		assertEquals(expected, NativeDmlBuilder.mergeInto("tt").keys("id").columns("field").toString());
+		
+		try {
+			NativeDmlBuilder.insertInto("tt").keys("id");
+			fail();
+		} catch (IllegalStateException e) {
+			assertEquals("An insert statement has no keys, use columns", e.getMessage());
+		}
+	}
+	
+	@Test
+	public void split_slices() {
+		Split range = Split.range("id", 1, 1000, 4);
+		List<String> slices = new ArrayList<>();
+		for(int i = 0; i < range.getSlices(); i++) {
+			NativeSqlBuilder sql = NativeSqlBuilder.create();
+			sql.select("field").from("tt").where(range.slice(sql, i));
+			slices.add(sql.toString());
+		}
+		List<String> expected = Arrays.asList("select field from tt where id < 251 or id is null",
+				"select field from tt where id >= 251 and id < 501", "select field from tt where id >= 501 and id < 751",
+				"select field from tt where id >= 751");
+		assertEquals(expected, slices);
+		
+		NativeSqlBuilder hashed = NativeSqlBuilder.create();
+		hashed.select("field").from("tt").where(Split.hash("kind", 8).slice(hashed, 3));
+		assertEquals("select field from tt where ora_hash(kind, 7) = 3", hashed.toString());
+		
+		NativeSqlBuilder rowids = NativeSqlBuilder.create();
+		rowids.select("field").from("tt").where(Split.rowids("rowid", Collections.singletonList(new String[] { "AAA", "AAZ" })).slice(rowids, 0));
+		assertEquals("select field from tt where rowid between chartorowid('AAA') and chartorowid('AAZ')", rowids.toString());
+		assertNull(Split.range("id", 1, 10, 1).slice(rowids, 0));
+		
+		NativeSqlBuilder high = NativeSqlBuilder.create();
+		high.select("field").from("tt").where(Split.range("id", Long.MAX_VALUE - 10, Long.MAX_VALUE, 2).slice(high, 1));
+		assertEquals("select field from tt where id >= " + (Long.MAX_VALUE - 4), high.toString());
+		try {
+			Split.range("id", Long.MIN_VALUE, Long.MAX_VALUE, 4);
+			fail();
+		} catch (IllegalArgumentException e) {
+			assertEquals("The range from " + Long.MIN_VALUE + " to " + Long.MAX_VALUE + " overflows", e.getMessage());
+		}
+	}
 }